@@ -12,14 +12,12 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.ds.avare.instruments.CDI;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.Plan;
-import com.ds.avare.utils.Helper;
 
 import android.app.Service;
 import android.content.ComponentName;
@@ -27,10 +25,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.location.Location;
-import android.location.LocationManager;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Message;
 
 /**
  * This class exposes the remote service to the client.
@@ -39,7 +34,7 @@ import android.os.Message;
  */
 public class IHelperService extends Service {
 
-    private StorageService mService;
+    private volatile StorageService mService;
     
     /**
      * We need to bind to storage service to do anything useful 
@@ -101,11 +96,24 @@ public class IHelperService extends Service {
             
             /*
              * This is where we are all messages
-             * All messages are comma separated
+             * Parsed and applied off the UI thread
              */
-            Message msg = mHandler.obtainMessage();
-            msg.obj = text;
-            mHandler.sendMessage(msg);
+            StorageService service = mService;
+            if(null != service) {
+                service.getAdsbIngest().post(text);
+            }
+        }
+
+        @Override
+        public void sendDataBytes(byte[] data) {
+            
+            /*
+             * Binary frames, same messages as text but compact
+             */
+            StorageService service = mService;
+            if(null != service) {
+                service.getAdsbIngest().post(data);
+            }
         }
 
         @Override
@@ -168,107 +176,4 @@ public class IHelperService extends Service {
             return object.toString();
         }
     };
-    
-    /**
-     * Posting a location hence do from UI thread
-     */
-    private Handler mHandler = new Handler() {
-        @Override
-        public void handleMessage(Message msg) {            
-
-            String text = (String)msg.obj;
-            
-            if(text == null || mService == null) {
-                return;
-            }
-            
-            /*
-             * Get JSON
-             */
-            try {
-                JSONObject object = new JSONObject(text);
-
-                String type = object.getString("type");
-                if(type == null) {
-                    return;
-                }
-                else if(type.equals("traffic")) {
-                    mService.getTrafficCache().putTraffic(
-                            object.getString("callsign"),
-                            object.getInt("address"),
-                            (float)object.getDouble("latitude"),
-                            (float)object.getDouble("longitude"),
-                            object.getInt("altitude"),
-                            (float)object.getDouble("bearing"),
-                            (int)object.getInt("speed"),
-                            Helper.getMillisGMT()
-                            /*XXX:object.getLong("time")*/);
-                }
-                else if(type.equals("ownship")) {
-                    Location l = new Location(LocationManager.GPS_PROVIDER);
-                    l.setLongitude(object.getDouble("longitude"));
-                    l.setLatitude(object.getDouble("latitude"));
-                    l.setSpeed((float)object.getDouble("speed"));
-                    l.setBearing((float)object.getDouble("bearing"));
-                    l.setAltitude(object.getDouble("altitude"));
-                    l.setTime(object.getLong("time"));
-                    mService.getGps().onLocationChanged(l, type);
-                }
-                else if(type.equals("nexrad")) {
-                    
-                    /*
-                     * XXX: If we are getting this from station, it must be current, fix this.
-                     */
-                    long time = Helper.getMillisGMT();//object.getLong("time");
-                    int cols = object.getInt("x");
-                    int rows = object.getInt("y");
-                    int block = object.getInt("blocknumber");
-                    boolean conus = object.getBoolean("conus");
-                    JSONArray emptyArray = object.getJSONArray("empty");
-                    JSONArray dataArray = object.getJSONArray("data");
-                    
-                    if(emptyArray == null || dataArray == null) {
-                        return;
-                    }
-                    int empty[] = new int[emptyArray.length()];
-                    for(int i = 0; i < empty.length; i++) {
-                        empty[i] = emptyArray.getInt(i);
-                    }
-                    int data[] = new int[dataArray.length()];
-                    for(int i = 0; i < data.length; i++) {
-                        data[i] = dataArray.getInt(i);
-                    }
-                    
-                    /*
-                     * Put in nexrad.
-                     */
-                    mService.getAdsbWeather().putImg(
-                            time, block, empty, conus, data, cols, rows);
-                }
-                else if(type.equals("METAR") || type.equals("SPECI")) {
-                    /*
-                     * Put METAR
-                     */
-                    mService.getAdsbWeather().putMetar(object.getLong("time"), 
-                            object.getString("location"), object.getString("data"));
-                }
-                else if(type.equals("TAF") || type.equals("TAF.AMD")) {
-                    mService.getAdsbWeather().putTaf(object.getLong("time"), 
-                            object.getString("location"), object.getString("data"));
-                }
-                else if(type.equals("WINDS")) {
-                    mService.getAdsbWeather().putWinds(object.getLong("time"), 
-                            object.getString("location"), object.getString("data"));
-                }
-                else if(type.equals("PIREP")) {
-                    mService.getAdsbWeather().putAirep(object.getLong("time"), 
-                            object.getString("location"), object.getString("data"),
-                            mService.getDBResource());
-                }
-
-            } catch (JSONException e) {
-                return;
-            }
-        }
-    };
 }
\ No newline at end of file
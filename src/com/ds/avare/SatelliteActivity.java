@@ -18,7 +18,10 @@ import java.util.Locale;
 import java.util.TimeZone;
 
 import com.ds.avare.R;
+import com.ds.avare.adsb.AdsbBenchmark;
 import com.ds.avare.gps.GpsInterface;
+import com.ds.avare.network.TFRBenchmark;
+import com.ds.avare.storage.DataBaseBenchmark;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.Helper;
@@ -27,6 +30,7 @@ import com.ds.avare.views.SatelliteView;
 
 import android.location.GpsStatus;
 import android.location.Location;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Debug;
 import android.os.IBinder;
@@ -39,6 +43,7 @@ import android.view.Display;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.Window;
+import android.widget.Button;
 import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 import android.widget.TextView;
@@ -63,6 +68,31 @@ public class SatelliteActivity extends Activity  {
     
     private TextView mGpsText;
     
+    private Preferences mPref;
+    
+    /*
+     * Benchmarks, for developers
+     */
+    private View mBenchmarkRow;
+    private Button mBenchmarkButton;
+    private TextView mBenchmarkText;
+    private BenchmarkTask mBenchmarkTask;
+    
+    /*
+     * Airports to query around in database benchmark
+     */
+    private static final int BENCHMARK_POSITIONS = 200;
+    
+    /*
+     * NEXRAD blocks, each with traffic, in ADS-B benchmark
+     */
+    private static final int BENCHMARK_MESSAGES = 2000;
+    
+    /*
+     * TFRs in synthetic file of TFR benchmark, about 2 MB
+     */
+    private static final int BENCHMARK_TFRS = 1000;
+    
     /*
      * Start GPS
      */
@@ -178,6 +208,22 @@ public class SatelliteActivity extends Activity  {
         mMemText = (TextView)view.findViewById(R.id.satellite_text_mem_details);
         mMapAreaText = (TextView)view.findViewById(R.id.satellite_text_map_details);
 
+        mPref = new Preferences(this);
+        mBenchmarkRow = view.findViewById(R.id.tools_table_row5);
+        mBenchmarkText = (TextView)view.findViewById(R.id.satellite_text_benchmark);
+        mBenchmarkButton = (Button)view.findViewById(R.id.satellite_button_benchmark);
+        mBenchmarkButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if(null != mBenchmarkTask) {
+                    return;
+                }
+                mBenchmarkText.setText(getString(R.string.BenchmarkRunning));
+                mBenchmarkTask = new BenchmarkTask();
+                mBenchmarkTask.execute();
+            }
+        });
+
         /*
          * Set brightness bar
          */        
@@ -274,6 +320,7 @@ public class SatelliteActivity extends Activity  {
         catch (Exception e) {
         }
 
+        mBenchmarkRow.setVisibility(mPref.showDiagnostics() ? View.VISIBLE : View.GONE);
     }
     
     /* (non-Javadoc)
@@ -288,4 +335,35 @@ public class SatelliteActivity extends Activity  {
             mService.unregisterGpsListener(mGpsInfc);
         }
     }    
+
+    /**
+     * Runs benchmarks away from the UI thread, one at a time
+     * @author zkhan
+     *
+     */
+    private class BenchmarkTask extends AsyncTask<Void, Void, String> {
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#doInBackground(Params[])
+         */
+        @Override
+        protected String doInBackground(Void... vals) {
+            Thread.currentThread().setName("Benchmark");
+            String dbs[] = getResources().getStringArray(R.array.ChartDbNames);
+            String maps = dbs[Integer.parseInt(mPref.getChartType())];
+            return DataBaseBenchmark.run(mPref.mapsFolder() + "/main.db", mPref.mapsFolder() + "/" + maps,
+                    BENCHMARK_POSITIONS) +
+                    AdsbBenchmark.run(BENCHMARK_MESSAGES) +
+                    TFRBenchmark.run(getCacheDir().getAbsolutePath(), BENCHMARK_TFRS);
+        }
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#onPostExecute(java.lang.Object)
+         */
+        @Override
+        protected void onPostExecute(String result) {
+            mBenchmarkText.setText(result);
+            mBenchmarkTask = null;
+        }
+    }
 }
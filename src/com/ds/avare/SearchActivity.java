@@ -20,6 +20,7 @@ import java.util.Observer;
 import com.ds.avare.adapters.SearchAdapter;
 import com.ds.avare.animation.AnimateButton;
 import com.ds.avare.gps.GpsInterface;
+import com.ds.avare.gps.GpsParams;
 import com.ds.avare.place.Destination;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.storage.StringPreference;
@@ -632,8 +633,19 @@ public class SearchActivity extends Activity implements Observer {
             synchronized (SearchActivity.class) {
                 /*
                  * This is not to be done repeatedly with new text input so sync.
+                 * A newer key press cancels this, so skip if it came while waiting.
                  */
-                mService.getDBResource().search(srch, params, false);
+                if(isCancelled()) {
+                    return false;
+                }
+                double lon = Double.NaN;
+                double lat = Double.NaN;
+                GpsParams gp = mService.getGpsParams();
+                if(null != gp) {
+                    lon = gp.getLongitude();
+                    lat = gp.getLatitude();
+                }
+                mService.getDBResource().search(srch, params, false, lon, lat);
                 mService.getUDWMgr().search(srch, params);			// From user defined points of interest
                 if(params.size() > 0) {
                     selection = new String[params.size()];
@@ -16,6 +16,7 @@ import java.util.LinkedList;
 import java.util.Timer;
 import java.util.TimerTask;
 
+import com.ds.avare.adsb.AdsbIngest;
 import com.ds.avare.adsb.TrafficCache;
 import com.ds.avare.externalFlightPlan.ExternalPlanMgr;
 import com.ds.avare.flight.Checklist;
@@ -28,6 +29,8 @@ import com.ds.avare.instruments.EdgeDistanceTape;
 import com.ds.avare.instruments.FlightTimer;
 import com.ds.avare.instruments.FuelTimer;
 import com.ds.avare.instruments.Odometer;
+import com.ds.avare.instruments.TFRMonitor;
+import com.ds.avare.instruments.TrafficMonitor;
 import com.ds.avare.instruments.VNAV;
 import com.ds.avare.instruments.VSI;
 import com.ds.avare.network.TFRFetcher;
@@ -40,10 +43,12 @@ import com.ds.avare.shapes.Draw;
 import com.ds.avare.shapes.ElevationTile;
 import com.ds.avare.shapes.PixelDraw;
 import com.ds.avare.shapes.Radar;
+import com.ds.avare.shapes.ShapeIndex;
 import com.ds.avare.shapes.TFRShape;
 import com.ds.avare.shapes.Tile;
 import com.ds.avare.shapes.TileMap;
 import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.Preferences;
 import com.ds.avare.userDefinedWaypoints.UDWMgr;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.InfoLines;
@@ -105,6 +110,8 @@ public class StorageService extends Service {
     
     private TrafficCache mTrafficCache;
     
+    private AdsbIngest mAdsbIngest;
+    
     private Radar mRadar;
     
     private String mLastPlateAirport;
@@ -217,6 +224,11 @@ public class StorageService extends Service {
     // Vertical speed indicator
     private VSI mVSI;
     
+    // TFR on or ahead of track
+    private TFRMonitor mTFRMonitor;
+    
+    private TrafficMonitor mTrafficMonitor;
+    
     // User defined points of interest
     private UDWMgr mUDWMgr;
 
@@ -304,6 +316,7 @@ public class StorageService extends Service {
         mTrafficCache = new TrafficCache();
         mLocationSem = new Mutex();
         mAdsbWeatherCache = new AdsbWeatherCache(getApplicationContext());
+        mAdsbIngest = new AdsbIngest(this);
         mLastPlateAirport = null;
         mLastPlateIndex = 0;
         mElevTile = new ElevationTile(getApplicationContext());
@@ -352,6 +365,10 @@ public class StorageService extends Service {
         // Allocate the VSI
         mVSI = new VSI();
         
+        // Watch for TFRs on and ahead of track
+        mTFRMonitor = new TFRMonitor(new Preferences(getApplicationContext()));
+        mTrafficMonitor = new TrafficMonitor(new Preferences(getApplicationContext()));
+        
         // Allocate a handler for PointsOfInterest
         mUDWMgr = new UDWMgr(this, getApplicationContext()); 
       
@@ -377,6 +394,26 @@ public class StorageService extends Service {
          */
         mTimer.scheduleAtFixedRate(gpsTime, 0, 60 * 1000);
         
+        /*
+         * Old traffic is removed in background, not while drawing
+         */
+        mTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                mTrafficCache.sweep();
+            }
+        }, TrafficCache.SWEEP_MS, TrafficCache.SWEEP_MS);
+        
+        /*
+         * Closest approach of traffic, once a second
+         */
+        mTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                mTrafficMonitor.update(getGpsParams(), mTrafficCache.getTraffic());
+            }
+        }, 1000, 1000);
+        
         /*
          * Start GPS, and call all activities registered to listen to GPS
          */
@@ -460,6 +497,12 @@ public class StorageService extends Service {
                     
                     getFlightStatus().updateLocation(mGpsParams);
                     
+                    // Rank traffic by how close it is
+                    mTrafficCache.setOwnship(mGpsParams.getLongitude(), mGpsParams.getLatitude(), mGpsParams.getAltitude());
+                    
+                    // Are we in or heading into a TFR
+                    getTFRMonitor().updateLocation(mGpsParams, getTFRShapeIndex());
+                    
                     if(mPlan.hasDestinationChanged()) {
                         /*
                          * If plan active then set destination to next not passed way point
@@ -534,6 +577,7 @@ public class StorageService extends Service {
         if(mGps != null) {
             mGps.stop();
         }
+        mAdsbIngest.stop();
         super.onDestroy();
         
         System.runFinalizersOnExit(true);
@@ -574,6 +618,13 @@ public class StorageService extends Service {
         return mTFRFetcher.getShapes();
     }
 
+    /**
+     * @return
+     */
+    public ShapeIndex<TFRShape> getTFRShapeIndex() {
+        return mTFRFetcher.getShapeIndex();
+    }
+
     /**
      * @return
      */
@@ -904,6 +955,22 @@ public class StorageService extends Service {
     public VSI getVSI() {
     	return mVSI;
     }
+
+    /**
+     * 
+     * @return
+     */
+    public TFRMonitor getTFRMonitor() {
+        return mTFRMonitor;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public TrafficMonitor getTrafficMonitor() {
+        return mTrafficMonitor;
+    }
     
     public FlightStatus getFlightStatus() {
         return mFlightStatus;
@@ -944,6 +1011,14 @@ public class StorageService extends Service {
        return mTrafficCache; 
     }
 
+    /**
+     * 
+     * @return
+     */
+    public AdsbIngest getAdsbIngest() {
+       return mAdsbIngest; 
+    }
+
     
     /**
      * 
@@ -1026,6 +1101,10 @@ public class StorageService extends Service {
      */
     public void setDownloading(boolean state) {
        mDownloading = state; 
+       /*
+        * Databases are replaced by download, let go of the open ones.
+        */
+       mImageDataSource.closeDataBases();
     }
     
     /**
@@ -0,0 +1,305 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.adsb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * @author zkhan
+ * Times the JSON and binary decoders on the same traffic and NEXRAD messages.
+ * The write methods are the reference encoder of the binary frames described in AdsbDecoder.
+ * Run from the GPS tab when the Diagnostics preference is on.
+ */
+public class AdsbBenchmark {
+
+    /*
+     * Traffic reports per NEXRAD block, about what a busy UAT feed sends
+     */
+    private static final int TRAFFIC_PER_BLOCK = 4;
+    private static final int COLS = 32;
+    private static final int ROWS = 4;
+
+    /*
+     * Timed rounds after the warm up, averaged
+     */
+    private static final int ROUNDS = 4;
+
+    /**
+     * 
+     * @param messages how many of each kind
+     * @return time and size of each decoder
+     */
+    public static String run(int messages) {
+        String text[] = new String[messages * (TRAFFIC_PER_BLOCK + 1)];
+        byte frames[][] = new byte[messages][];
+        long textBytes = 0;
+        long binaryBytes = 0;
+        int data[] = new int[COLS * ROWS];
+        
+        try {
+            int t = 0;
+            for(int i = 0; i < messages; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(AdsbDecoder.VERSION);
+                for(int j = 0; j < TRAFFIC_PER_BLOCK; j++) {
+                    int address = i * TRAFFIC_PER_BLOCK + j;
+                    float lat = 30 + (address % 1000) / 100.f;
+                    float lon = -100 + (address % 777) / 100.f;
+                    text[t] = trafficText("N" + address, address, lat, lon, 5500, 270.5f, 120);
+                    textBytes += text[t++].length();
+                    writeTraffic(out, "N" + address, address, lat, lon, 5500, 270.5f, 120);
+                }
+                
+                /*
+                 * Radar is mostly clear with a few levels
+                 */
+                for(int j = 0; j < data.length; j++) {
+                    data[j] = ((j + i) / 16) % 3 == 0 ? 0xFF00FF00 : 0;
+                }
+                int empty[] = new int[] {i + 1, i + 2};
+                text[t] = nexradText(i, false, empty, data, COLS, ROWS);
+                textBytes += text[t++].length();
+                writeNexrad(out, i, false, empty, data, COLS, ROWS);
+                
+                frames[i] = bytes.toByteArray();
+                binaryBytes += frames[i].length;
+            }
+        }
+        catch (Exception e) {
+            return e.toString();
+        }
+        
+        Counter counter = new Counter();
+        AdsbDecoder decoder = new AdsbDecoder(counter);
+
+        /*
+         * Warm up both decoders, then alternate which goes first
+         */
+        decode(decoder, text);
+        decode(decoder, frames);
+        long textTime = 0;
+        long binaryTime = 0;
+        for(int round = 0; round < ROUNDS; round++) {
+            if(0 == (round % 2)) {
+                textTime += decode(decoder, text);
+                binaryTime += decode(decoder, frames);
+            }
+            else {
+                binaryTime += decode(decoder, frames);
+                textTime += decode(decoder, text);
+            }
+        }
+        
+        counter.mCount = 0;
+        decode(decoder, text);
+        int textCount = counter.mCount;
+        counter.mCount = 0;
+        decode(decoder, frames);
+        int binaryCount = counter.mCount;
+        
+        return "JSON " + textCount + " messages " + textBytes + " bytes " + textTime / ROUNDS / 1000000 + " ms\n" +
+                "Binary " + binaryCount + " messages " + binaryBytes + " bytes " + binaryTime / ROUNDS / 1000000 + " ms\n";
+    }
+
+    /**
+     * 
+     * @return time to decode all text messages
+     */
+    private static long decode(AdsbDecoder decoder, String text[]) {
+        long start = System.nanoTime();
+        for(int i = 0; i < text.length; i++) {
+            try {
+                decoder.decode(text[i]);
+            }
+            catch (JSONException e) {
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 
+     * @return time to decode all binary frames
+     */
+    private static long decode(AdsbDecoder decoder, byte frames[][]) {
+        long start = System.nanoTime();
+        for(int i = 0; i < frames.length; i++) {
+            decoder.decode(frames[i]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Binary traffic record
+     * @throws IOException
+     */
+    public static void writeTraffic(DataOutputStream out, String callsign, int address, float lat, float lon,
+            int altitude, float heading, int speed) throws IOException {
+        int len = Math.min(callsign.length(), 255);
+        out.writeByte(AdsbDecoder.TYPE_TRAFFIC);
+        out.writeShort(21 + len);
+        out.writeInt(address);
+        out.writeInt((int)Math.round(lat * 1E7));
+        out.writeInt((int)Math.round(lon * 1E7));
+        out.writeInt(altitude);
+        out.writeShort(Math.round(heading * 100));
+        out.writeShort(speed);
+        out.writeByte(len);
+        for(int i = 0; i < len; i++) {
+            out.writeByte(callsign.charAt(i));
+        }
+    }
+
+    /**
+     * Binary ownship record
+     * @throws IOException
+     */
+    public static void writeOwnship(DataOutputStream out, long time, double lon, double lat, float speed,
+            float bearing, double altitude) throws IOException {
+        out.writeByte(AdsbDecoder.TYPE_OWNSHIP);
+        out.writeShort(24);
+        out.writeLong(time);
+        out.writeInt((int)Math.round(lat * 1E7));
+        out.writeInt((int)Math.round(lon * 1E7));
+        out.writeInt((int)Math.round(altitude * 100));
+        out.writeShort(Math.round(speed * 100));
+        out.writeShort(Math.round(bearing * 100));
+    }
+
+    /**
+     * Binary NEXRAD record, data is run length coded on a palette
+     * @throws IOException
+     */
+    public static void writeNexrad(DataOutputStream out, int block, boolean conus, int empty[], int data[],
+            int cols, int rows) throws IOException {
+        int palette[] = new int[256];
+        int colors = 0;
+        ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int num = null == data ? 0 : cols * rows;
+        int i = 0;
+        while(i < num) {
+            int run = 1;
+            while(i + run < num && data[i + run] == data[i] && run < 256) {
+                run++;
+            }
+            int index;
+            for(index = 0; index < colors; index++) {
+                if(palette[index] == data[i]) {
+                    break;
+                }
+            }
+            if(index == colors) {
+                palette[colors++] = data[i];
+            }
+            runs.write(run - 1);
+            runs.write(index);
+            i += run;
+        }
+        
+        out.writeByte(AdsbDecoder.TYPE_NEXRAD);
+        out.writeShort(4 + 3 + 2 + empty.length * 4 + 1 + colors * 4 + runs.size());
+        out.writeInt(block);
+        out.writeByte(conus ? AdsbDecoder.FLAG_CONUS : 0);
+        out.writeByte(num > 0 ? cols : 0);
+        out.writeByte(num > 0 ? rows : 0);
+        out.writeShort(empty.length);
+        for(i = 0; i < empty.length; i++) {
+            out.writeInt(empty[i]);
+        }
+        out.writeByte(colors);
+        for(i = 0; i < colors; i++) {
+            out.writeInt(palette[i]);
+        }
+        runs.writeTo(out);
+    }
+
+    /**
+     * 
+     * @throws JSONException
+     */
+    private static String trafficText(String callsign, int address, float lat, float lon,
+            int altitude, float heading, int speed) throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put("type", "traffic");
+        object.put("callsign", callsign);
+        object.put("address", address);
+        object.put("latitude", (double)lat);
+        object.put("longitude", (double)lon);
+        object.put("altitude", altitude);
+        object.put("bearing", (double)heading);
+        object.put("speed", speed);
+        object.put("time", 0L);
+        return object.toString();
+    }
+
+    /**
+     * 
+     * @throws JSONException
+     */
+    private static String nexradText(int block, boolean conus, int empty[], int data[],
+            int cols, int rows) throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put("type", "nexrad");
+        object.put("time", 0L);
+        object.put("x", cols);
+        object.put("y", rows);
+        object.put("blocknumber", block);
+        object.put("conus", conus);
+        JSONArray emptyArray = new JSONArray();
+        for(int i = 0; i < empty.length; i++) {
+            emptyArray.put(empty[i]);
+        }
+        JSONArray dataArray = new JSONArray();
+        for(int i = 0; i < cols * rows; i++) {
+            dataArray.put(data[i]);
+        }
+        object.put("empty", emptyArray);
+        object.put("data", dataArray);
+        return object.toString();
+    }
+
+    /**
+     * Counts messages, keeps nothing
+     */
+    private static class Counter implements AdsbDecoder.Sink {
+        private int mCount;
+
+        @Override
+        public void traffic(String callsign, int address, float lat, float lon, int altitude, float heading, int speed) {
+            mCount++;
+        }
+
+        @Override
+        public void ownship(long time, double lon, double lat, float speed, float bearing, double altitude) {
+            mCount++;
+        }
+
+        @Override
+        public void nexrad(int block, boolean conus, int empty[], int data[], int cols, int rows) {
+            mCount++;
+        }
+
+        @Override
+        public void weather(String type, long time, String location, String data) {
+            mCount++;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.adsb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * @author zkhan
+ * Decodes messages from ADS-B receivers, JSON text or binary frames, into calls on a Sink.
+ * Arrays handed to the sink are reused, so the sink must not keep them.
+ * 
+ * Binary frame, all numbers big endian:
+ * <pre>
+ * version        1 byte, VERSION
+ * records        till end of frame, each:
+ *   type         1 byte, TYPE_*
+ *   length       2 bytes, length of body that follows, unknown types are skipped
+ *   body
+ * 
+ * TYPE_TRAFFIC body:
+ *   address      4 bytes
+ *   latitude     4 bytes, degrees * 1E7
+ *   longitude    4 bytes, degrees * 1E7
+ *   altitude     4 bytes, feet
+ *   heading      2 bytes unsigned, degrees * 100
+ *   speed        2 bytes unsigned, knots
+ *   callsign     1 byte length, then ASCII
+ * 
+ * TYPE_OWNSHIP body:
+ *   time         8 bytes, milliseconds
+ *   latitude     4 bytes, degrees * 1E7
+ *   longitude    4 bytes, degrees * 1E7
+ *   altitude     4 bytes, centimeters
+ *   speed        2 bytes unsigned, centimeters per second
+ *   bearing      2 bytes unsigned, degrees * 100
+ * 
+ * TYPE_NEXRAD body:
+ *   block        4 bytes
+ *   flags        1 byte, FLAG_CONUS
+ *   cols         1 byte unsigned, 0 for no data
+ *   rows         1 byte unsigned
+ *   empty        2 bytes unsigned count, then 4 bytes block number each
+ *   palette      1 byte unsigned count, then 4 bytes ARGB each
+ *   runs         pairs of 1 byte (length - 1), 1 byte palette index, till cols * rows pixels
+ * </pre>
+ * AdsbBenchmark.writeTraffic(), writeOwnship() and writeNexrad() are the reference encoder for this format.
+ */
+public class AdsbDecoder {
+
+    public static final int VERSION = 1;
+    
+    public static final int TYPE_TRAFFIC = 1;
+    public static final int TYPE_OWNSHIP = 2;
+    public static final int TYPE_NEXRAD = 3;
+    
+    public static final int FLAG_CONUS = 1;
+
+    /**
+     * Gets decoded messages
+     */
+    public interface Sink {
+        public void traffic(String callsign, int address, float lat, float lon, int altitude, float heading, int speed);
+        public void ownship(long time, double lon, double lat, float speed, float bearing, double altitude);
+        public void nexrad(int block, boolean conus, int empty[], int data[], int cols, int rows);
+        public void weather(String type, long time, String location, String data);
+    }
+    
+    private Sink mSink;
+    private int mData[];
+    private int mPalette[];
+    private char mChars[];
+    
+    /**
+     * 
+     * @param sink
+     */
+    public AdsbDecoder(Sink sink) {
+        mSink = sink;
+        mData = new int[0];
+        mPalette = new int[256];
+        mChars = new char[256];
+    }
+
+    /**
+     * Decode one JSON message
+     * @param text
+     * @throws JSONException
+     */
+    public void decode(String text) throws JSONException {
+        JSONObject object = new JSONObject(text);
+
+        String type = object.getString("type");
+        if(type.equals("traffic")) {
+            mSink.traffic(
+                    object.getString("callsign"),
+                    object.getInt("address"),
+                    (float)object.getDouble("latitude"),
+                    (float)object.getDouble("longitude"),
+                    object.getInt("altitude"),
+                    (float)object.getDouble("bearing"),
+                    object.getInt("speed"));
+        }
+        else if(type.equals("ownship")) {
+            mSink.ownship(
+                    object.getLong("time"),
+                    object.getDouble("longitude"),
+                    object.getDouble("latitude"),
+                    (float)object.getDouble("speed"),
+                    (float)object.getDouble("bearing"),
+                    object.getDouble("altitude"));
+        }
+        else if(type.equals("nexrad")) {
+            int cols = object.getInt("x");
+            int rows = object.getInt("y");
+            int block = object.getInt("blocknumber");
+            boolean conus = object.getBoolean("conus");
+            JSONArray emptyArray = object.getJSONArray("empty");
+            JSONArray dataArray = object.getJSONArray("data");
+            
+            int empty[] = new int[emptyArray.length()];
+            for(int i = 0; i < empty.length; i++) {
+                empty[i] = emptyArray.getInt(i);
+            }
+            int data[] = new int[dataArray.length()];
+            for(int i = 0; i < data.length; i++) {
+                data[i] = dataArray.getInt(i);
+            }
+            mSink.nexrad(block, conus, empty, data, cols, rows);
+        }
+        else if(type.equals("METAR") || type.equals("SPECI") ||
+                type.equals("TAF") || type.equals("TAF.AMD") ||
+                type.equals("WINDS") || type.equals("PIREP")) {
+            mSink.weather(type, object.getLong("time"), 
+                    object.getString("location"), object.getString("data"));
+        }
+    }
+
+    /**
+     * Decode one binary frame
+     * @param frame
+     * @return number of records, -1 if frame is bad. Records before a bad one are still given to sink.
+     */
+    public int decode(byte frame[]) {
+        if(null == frame || frame.length < 1 || (frame[0] & 0xFF) != VERSION) {
+            return -1;
+        }
+        int records = 0;
+        int at = 1;
+        while(at < frame.length) {
+            if(at + 3 > frame.length) {
+                return -1;
+            }
+            int type = frame[at] & 0xFF;
+            int length = getShort(frame, at + 1);
+            at += 3;
+            int end = at + length;
+            if(end > frame.length) {
+                return -1;
+            }
+            boolean ok = true;
+            switch(type) {
+                case TYPE_TRAFFIC:
+                    ok = traffic(frame, at, end);
+                    break;
+                case TYPE_OWNSHIP:
+                    ok = ownship(frame, at, end);
+                    break;
+                case TYPE_NEXRAD:
+                    ok = nexrad(frame, at, end);
+                    break;
+                default:
+                    /*
+                     * Newer record, skip
+                     */
+                    break;
+            }
+            if(!ok) {
+                return -1;
+            }
+            records++;
+            at = end;
+        }
+        return records;
+    }
+
+    /**
+     * 
+     * @return false if bad
+     */
+    private boolean traffic(byte b[], int at, int end) {
+        if(at + 21 > end) {
+            return false;
+        }
+        int address = getInt(b, at);
+        float lat = (float)(getInt(b, at + 4) / 1E7);
+        float lon = (float)(getInt(b, at + 8) / 1E7);
+        int altitude = getInt(b, at + 12);
+        float heading = getShort(b, at + 16) / 100.f;
+        int speed = getShort(b, at + 18);
+        int len = b[at + 20] & 0xFF;
+        at += 21;
+        if(at + len > end) {
+            return false;
+        }
+        for(int i = 0; i < len; i++) {
+            mChars[i] = (char)(b[at + i] & 0x7F);
+        }
+        mSink.traffic(new String(mChars, 0, len), address, lat, lon, altitude, heading, speed);
+        return true;
+    }
+
+    /**
+     * 
+     * @return false if bad
+     */
+    private boolean ownship(byte b[], int at, int end) {
+        if(at + 24 > end) {
+            return false;
+        }
+        long time = ((long)getInt(b, at) << 32) | (getInt(b, at + 4) & 0xFFFFFFFFL);
+        double lat = getInt(b, at + 8) / 1E7;
+        double lon = getInt(b, at + 12) / 1E7;
+        double altitude = getInt(b, at + 16) / 100.;
+        float speed = getShort(b, at + 20) / 100.f;
+        float bearing = getShort(b, at + 22) / 100.f;
+        mSink.ownship(time, lon, lat, speed, bearing, altitude);
+        return true;
+    }
+
+    /**
+     * 
+     * @return false if bad
+     */
+    private boolean nexrad(byte b[], int at, int end) {
+        if(at + 9 > end) {
+            return false;
+        }
+        int block = getInt(b, at);
+        boolean conus = (b[at + 4] & FLAG_CONUS) != 0;
+        int cols = b[at + 5] & 0xFF;
+        int rows = b[at + 6] & 0xFF;
+        int count = getShort(b, at + 7);
+        at += 9;
+        if(at + count * 4 + 1 > end) {
+            return false;
+        }
+        int empty[] = new int[count];
+        for(int i = 0; i < count; i++) {
+            empty[i] = getInt(b, at);
+            at += 4;
+        }
+        
+        int colors = b[at++] & 0xFF;
+        if(at + colors * 4 > end) {
+            return false;
+        }
+        for(int i = 0; i < colors; i++) {
+            mPalette[i] = getInt(b, at);
+            at += 4;
+        }
+        
+        int num = cols * rows;
+        if(mData.length < num) {
+            mData = new int[num];
+        }
+        int pixel = 0;
+        while(pixel < num) {
+            if(at + 2 > end) {
+                return false;
+            }
+            int run = (b[at] & 0xFF) + 1;
+            int index = b[at + 1] & 0xFF;
+            at += 2;
+            if(index >= colors || pixel + run > num) {
+                return false;
+            }
+            int color = mPalette[index];
+            for(int i = 0; i < run; i++) {
+                mData[pixel++] = color;
+            }
+        }
+        mSink.nexrad(block, conus, empty, num > 0 ? mData : null, cols, rows);
+        return true;
+    }
+
+    /**
+     * 
+     * @return signed
+     */
+    private static int getInt(byte b[], int at) {
+        return ((b[at] & 0xFF) << 24) | ((b[at + 1] & 0xFF) << 16) | ((b[at + 2] & 0xFF) << 8) | (b[at + 3] & 0xFF);
+    }
+
+    /**
+     * 
+     * @return unsigned
+     */
+    private static int getShort(byte b[], int at) {
+        return ((b[at] & 0xFF) << 8) | (b[at + 1] & 0xFF);
+    }
+}
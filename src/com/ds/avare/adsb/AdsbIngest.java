@@ -0,0 +1,351 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.adsb;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ds.avare.StorageService;
+import com.ds.avare.utils.GenericCallback;
+import com.ds.avare.utils.Helper;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+/**
+ * @author zkhan
+ * Takes ADS-B messages from the helper app and applies them to the caches on its own thread.
+ * Messages wait in a bounded queue, the oldest are dropped when it is full.
+ * Traffic and ownship are merged per batch, and the UI is told of changes at most once a frame.
+ */
+public class AdsbIngest implements Runnable {
+
+    private static final int QUEUE_SIZE = 1024;
+    private static final int BATCH_SIZE = 256;
+    
+    /*
+     * Least time between two change signals
+     */
+    private static final long FRAME_MS = 33;
+
+    private StorageService mService;
+    private ArrayBlockingQueue<Object> mQueue;
+    private AdsbDecoder mDecoder;
+    private Thread mThread;
+    private volatile boolean mRunning;
+    private Handler mHandler;
+    
+    private volatile GenericCallback mListener;
+    private AtomicBoolean mPending;
+    private volatile long mLastSignal;
+    private Runnable mSignal;
+
+    /*
+     * Latest of each, for the batch being worked
+     */
+    private SparseArray<Update> mTraffic;
+    private Location mOwnship;
+
+    /*
+     * Counters
+     */
+    private long mMessages;
+    private long mDrops;
+    private long mErrors;
+    private int mRate;
+    private int mWindowCount;
+    private long mWindowStart;
+
+    /**
+     * Make on the main thread
+     * @param service
+     */
+    public AdsbIngest(StorageService service) {
+        mService = service;
+        mQueue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+        mDecoder = new AdsbDecoder(new Batch());
+        mHandler = new Handler(Looper.getMainLooper());
+        mPending = new AtomicBoolean(false);
+        mLastSignal = 0;
+        mTraffic = new SparseArray<Update>();
+        mOwnship = null;
+        mMessages = 0;
+        mDrops = 0;
+        mErrors = 0;
+        mRate = 0;
+        mWindowCount = 0;
+        mWindowStart = SystemClock.elapsedRealtime();
+        
+        mSignal = new Runnable() {
+            @Override
+            public void run() {
+                mLastSignal = SystemClock.uptimeMillis();
+                mPending.set(false);
+                GenericCallback listener = mListener;
+                if(null != listener) {
+                    listener.callback(AdsbIngest.this, null);
+                }
+            }
+        };
+        
+        mRunning = true;
+        mThread = new Thread(this, "AdsbIngest");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Queue a message, from any thread
+     * @param text JSON message
+     */
+    public void post(String text) {
+        offer(text);
+    }
+
+    /**
+     * Queue a message, from any thread
+     * @param frame binary frame, see AdsbDecoder
+     */
+    public void post(byte frame[]) {
+        offer(frame);
+    }
+
+    /**
+     * 
+     * @param message
+     */
+    private void offer(Object message) {
+        if(null == message || !mRunning) {
+            return;
+        }
+        while(!mQueue.offer(message)) {
+            /*
+             * Full, newest data is worth more
+             */
+            if(null != mQueue.poll()) {
+                synchronized(this) {
+                    mDrops++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called on the main thread when new data is in the caches
+     * @param listener null to stop
+     */
+    public void setListener(GenericCallback listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Stop the worker, queued messages are lost
+     */
+    public void stop() {
+        mRunning = false;
+        mThread.interrupt();
+        mQueue.clear();
+        mHandler.removeCallbacks(mSignal);
+    }
+
+    /**
+     * Messages per second, queue depth, drops and bad messages
+     * @return
+     */
+    public synchronized String getStats() {
+        int rate = mRate;
+        if(SystemClock.elapsedRealtime() - mWindowStart > 2000) {
+            /*
+             * Nothing came in lately
+             */
+            rate = 0;
+        }
+        return "ADS-B " + rate + "/s total " + mMessages + " queued " + mQueue.size() +
+                " dropped " + mDrops + " bad " + mErrors;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        ArrayList<Object> batch = new ArrayList<Object>(BATCH_SIZE);
+        while(mRunning) {
+            try {
+                batch.add(mQueue.take());
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            mQueue.drainTo(batch, BATCH_SIZE - 1);
+            
+            int errors = 0;
+            for(int i = 0; i < batch.size(); i++) {
+                Object o = batch.get(i);
+                try {
+                    if(o instanceof byte[]) {
+                        if(mDecoder.decode((byte[])o) < 0) {
+                            errors++;
+                        }
+                    }
+                    else {
+                        mDecoder.decode((String)o);
+                    }
+                }
+                catch (Exception e) {
+                    errors++;
+                }
+            }
+            apply();
+            count(batch.size(), errors);
+            batch.clear();
+            signal();
+        }
+    }
+
+    /**
+     * Takes decoded messages. Traffic and ownship are held for the end of batch, the rest goes in now.
+     */
+    private class Batch implements AdsbDecoder.Sink {
+
+        @Override
+        public void traffic(String callsign, int address, float lat, float lon, int altitude, float heading, int speed) {
+            Update u = mTraffic.get(address);
+            if(null == u) {
+                u = new Update();
+                mTraffic.put(address, u);
+            }
+            u.mCallsign = callsign;
+            u.mLat = lat;
+            u.mLon = lon;
+            u.mAltitude = altitude;
+            u.mHeading = heading;
+            u.mSpeed = speed;
+            u.mTime = Helper.getMillisGMT() /*XXX: time from receiver*/;
+        }
+
+        @Override
+        public void ownship(long time, double lon, double lat, float speed, float bearing, double altitude) {
+            Location l = new Location(LocationManager.GPS_PROVIDER);
+            l.setLongitude(lon);
+            l.setLatitude(lat);
+            l.setSpeed(speed);
+            l.setBearing(bearing);
+            l.setAltitude(altitude);
+            l.setTime(time);
+            mOwnship = l;
+        }
+
+        @Override
+        public void nexrad(int block, boolean conus, int empty[], int data[], int cols, int rows) {
+            /*
+             * XXX: If we are getting this from station, it must be current, fix this.
+             * Blocks must go in order, as empty lists clear earlier blocks
+             */
+            mService.getAdsbWeather().putImg(
+                    Helper.getMillisGMT(), block, empty, conus, data, cols, rows);
+        }
+
+        @Override
+        public void weather(String type, long time, String location, String data) {
+            if(type.equals("METAR") || type.equals("SPECI")) {
+                mService.getAdsbWeather().putMetar(time, location, data);
+            }
+            else if(type.equals("TAF") || type.equals("TAF.AMD")) {
+                mService.getAdsbWeather().putTaf(time, location, data);
+            }
+            else if(type.equals("WINDS")) {
+                mService.getAdsbWeather().putWinds(time, location, data);
+            }
+            else if(type.equals("PIREP")) {
+                mService.getAdsbWeather().putAirep(time, location, data, mService.getDBResource());
+            }
+        }
+    }
+
+    /**
+     * Put merged traffic in cache and publish it, and hand ownship to GPS on main thread
+     */
+    private void apply() {
+        if(mTraffic.size() > 0) {
+            TrafficCache cache = mService.getTrafficCache();
+            for(int i = 0; i < mTraffic.size(); i++) {
+                Update u = mTraffic.valueAt(i);
+                cache.putTraffic(u.mCallsign, mTraffic.keyAt(i), u.mLat, u.mLon, u.mAltitude,
+                        u.mHeading, u.mSpeed, u.mTime);
+            }
+            cache.publish();
+            mTraffic.clear();
+        }
+        
+        if(null != mOwnship) {
+            final Location l = mOwnship;
+            mOwnship = null;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(null != mService.getGps()) {
+                        mService.getGps().onLocationChanged(l, "ownship");
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Tell UI once, no sooner than a frame after last time
+     */
+    private void signal() {
+        if(mPending.compareAndSet(false, true)) {
+            long wait = FRAME_MS - (SystemClock.uptimeMillis() - mLastSignal);
+            mHandler.postDelayed(mSignal, Math.max(0, wait));
+        }
+    }
+
+    /**
+     * 
+     * @param messages
+     * @param errors
+     */
+    private synchronized void count(int messages, int errors) {
+        mMessages += messages;
+        mErrors += errors;
+        mWindowCount += messages;
+        long now = SystemClock.elapsedRealtime();
+        long diff = now - mWindowStart;
+        if(diff >= 1000) {
+            mRate = (int)(mWindowCount * 1000L / diff);
+            mWindowCount = 0;
+            mWindowStart = now;
+        }
+    }
+
+    /**
+     * One traffic report
+     */
+    private static class Update {
+        private String mCallsign;
+        private float mLat;
+        private float mLon;
+        private int mAltitude;
+        private float mHeading;
+        private int mSpeed;
+        private long mTime;
+    }
+}
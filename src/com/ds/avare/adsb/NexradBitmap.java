@@ -16,7 +16,8 @@ import com.ds.avare.utils.BitmapHolder;
 /**
  * 
  * @author zkhan
- *
+ * Radar has only a few levels, so a block is kept as runs of palette colors.
+ * It is made into a bitmap, in one write, only when it is drawn.
  */
 public class NexradBitmap {
     private double mCoords[];
@@ -24,6 +25,19 @@ public class NexradBitmap {
     private double mScaleY;
     private int mBlock;
     private BitmapHolder mBitmap;
+    private int mCols;
+    private int mRows;
+    
+    /*
+     * Pairs of (run length - 1, palette index). Null when block has nothing to draw.
+     */
+    private byte mRuns[];
+    private int mPalette[];
+    
+    /*
+     * Pixels of one block while making its bitmap
+     */
+    private static int mPixels[] = new int[0];
     
     public long timestamp;
     /**
@@ -98,18 +112,85 @@ public class NexradBitmap {
         else if(data.length < cols * rows) {
             return;            
         }
-        mBitmap = new BitmapHolder(cols, rows); // this creates a MUTABLE bitmap
-        for(int row = 0; row < rows; row++) {
-            for(int col = 0; col < cols; col++) {
-                mBitmap.getBitmap().setPixel(col, row, data[col + row * cols]);
+        mCols = cols;
+        mRows = rows;
+        compress(data, cols * rows);
+    }
+
+    /**
+     * Make palette and runs from pixels
+     * @param data
+     * @param num
+     */
+    private void compress(int data[], int num) {
+        int palette[] = new int[16];
+        int colors = 0;
+        byte runs[] = new byte[num * 2];
+        int len = 0;
+        boolean visible = false;
+        
+        int i = 0;
+        while(i < num) {
+            int color = data[i];
+            int run = 1;
+            while(i + run < num && data[i + run] == color && run < 256) {
+                run++;
+            }
+            
+            int index;
+            for(index = 0; index < colors; index++) {
+                if(palette[index] == color) {
+                    break;
+                }
             }
+            if(index == colors) {
+                if(colors == 256) {
+                    /*
+                     * Not radar levels, use last color kept
+                     */
+                    index = colors - 1;
+                }
+                else {
+                    if(colors == palette.length) {
+                        int p[] = new int[colors * 2];
+                        System.arraycopy(palette, 0, p, 0, colors);
+                        palette = p;
+                    }
+                    palette[colors++] = color;
+                }
+            }
+            visible |= (color >>> 24) != 0;
+            
+            runs[len++] = (byte)(run - 1);
+            runs[len++] = (byte)index;
+            i += run;
+        }
+        
+        if(!visible) {
+            /*
+             * All clear, nothing to draw
+             */
+            return;
         }
+        mRuns = new byte[len];
+        System.arraycopy(runs, 0, mRuns, 0, len);
+        mPalette = new int[colors];
+        System.arraycopy(palette, 0, mPalette, 0, colors);
     }
     
     /**
-     * 
+     * Free bitmap and data
      */
     public void discard() {
+        release();
+        mRuns = null;
+        mPalette = null;
+    }
+
+    /**
+     * Free bitmap, when out of view. It is made again from runs when drawn.
+     */
+    public void release() {
         if(mBitmap != null) {
             mBitmap.recycle();
             mBitmap = null;
@@ -158,9 +239,68 @@ public class NexradBitmap {
     
     /**
      * 
-     * @return
+     * @return number of columns of pixels
+     */
+    public int getCols() {
+        return mCols;
+    }
+
+    /**
+     * 
+     * @return number of rows of pixels
+     */
+    public int getRows() {
+        return mRows;
+    }
+
+    /**
+     * 
+     * @return bytes kept for this block when not drawn
+     */
+    public int getSize() {
+        return (null == mRuns ? 0 : mRuns.length) + (null == mPalette ? 0 : mPalette.length * 4);
+    }
+    
+    /**
+     * Pixels of block, row by row
+     * @param out at least cols * rows long
+     * @return false when there is nothing to draw, out is not changed
+     */
+    public boolean getPixels(int out[]) {
+        if(null == mRuns) {
+            return false;
+        }
+        int at = 0;
+        for(int i = 0; i < mRuns.length; i += 2) {
+            int run = (mRuns[i] & 0xFF) + 1;
+            int color = mPalette[mRuns[i + 1] & 0xFF];
+            for(int j = 0; j < run; j++) {
+                out[at++] = color;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bitmap of block, made when first asked for
+     * @return null when there is nothing to draw
      */
     public BitmapHolder getBitmap() {
+        if(null == mBitmap && null != mRuns) {
+            BitmapHolder b = new BitmapHolder(mCols, mRows); // this creates a MUTABLE bitmap
+            if(null == b.getBitmap()) {
+                return null;
+            }
+            synchronized(NexradBitmap.class) {
+                int num = mCols * mRows;
+                if(mPixels.length < num) {
+                    mPixels = new int[num];
+                }
+                getPixels(mPixels);
+                b.getBitmap().setPixels(mPixels, 0, mCols, 0, 0, mCols, mRows);
+            }
+            mBitmap = b;
+        }
         return mBitmap;
     }
     
@@ -47,10 +47,12 @@ public class NexradImageConus {
      */
     private static final int MAX_ENTRIES = 1350;
     private SparseArray<NexradBitmap> mImg;
+    private NexradMosaic mMosaic;
     private long mUpdated;
     
     public NexradImageConus() { 
         mImg = new SparseArray<NexradBitmap>();
+        mMosaic = new NexradMosaic(mImg);
         mUpdated = 0;
     }
     
@@ -60,40 +62,68 @@ public class NexradImageConus {
      */
     public void putImg(long time, int block, int empty[], boolean isConus, int data[], int cols, int rows) {
         
-        if(null != empty) {
-            /*
-             * Empty, make dummy bitmaps of all.
-             */
-            for(int i = 0; i < empty.length; i++) {
-                if(mImg.get(i) != null) {
+        /*
+         * Blocks and mosaic change together, drawing holds the same lock
+         */
+        synchronized(mMosaic) {
+            if(null != empty) {
+                /*
+                 * Empty, make dummy bitmaps of all.
+                 */
+                for(int i = 0; i < empty.length; i++) {
+                    if(mImg.get(empty[i]) != null) {
+                        /*
+                         * Clears the bitmap and discards it, since nothing draws here.
+                         */
+                        remove(empty[i]);
+                    }
+                }
+                mUpdated = time;
+            }
+            if(null != data) {
+                if(mImg.get(block) != null) {
                     /*
-                     * Clears the bitmap and discards it, since nothing draws here.
+                     * Replace same block
                      */
-                    mImg.get(i).discard();
-                    mImg.delete(i);
+                    remove(block);
                 }
+                if(mImg.size() > MAX_ENTRIES) {
+                    /*
+                     * Sorry no more space.
+                     */
+                    return;
+                }
+                NexradBitmap b = new NexradBitmap(time, data, block, isConus, cols, rows);
+                mImg.put(block, b);
+                mMosaic.put(b);
+                mUpdated = time;
             }
-            mUpdated = time;
         }
-        if(null != data) {
-            if(mImg.get(block) != null) {
-                /*
-                 * Replace same block
-                 */
-                mImg.get(block).discard();
+    }
+    
+    /**
+     * Remove a block
+     * @param block
+     */
+    public void remove(int block) {
+        synchronized(mMosaic) {
+            NexradBitmap b = mImg.get(block);
+            if(null != b) {
+                mMosaic.remove(b);
+                b.discard();
                 mImg.delete(block);
             }
-            if(mImg.size() > MAX_ENTRIES) {
-                /*
-                 * Sorry no more space.
-                 */
-                return;
-            }
-            mImg.put(block, new NexradBitmap(time, data, block, isConus, cols, rows));
-            mUpdated = time;
         }
     }
     
+    /**
+     * 
+     * @return
+     */
+    public NexradMosaic getMosaic() {
+        return mMosaic;
+    }
+    
     /**
      * 
      * @return
@@ -0,0 +1,277 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.adsb;
+
+import com.ds.avare.position.Origin;
+import com.ds.avare.position.Scale;
+import com.ds.avare.utils.BitmapHolder;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+/**
+ * @author zkhan
+ * Merges NEXRAD blocks into a few large tiles on a fixed grid, so radar is drawn with a few blits.
+ * A tile is updated in place when a block in it changes. Tiles out of view let go of their
+ * bitmaps, and are made again from blocks when they come back in view.
+ */
+public class NexradMosaic {
+
+    /*
+     * Pixels on a side of a tile
+     */
+    private static final int TILE = 256;
+    
+    /*
+     * Tile keys, rows of tiles are this far apart
+     */
+    private static final int KEY_ROW = 4096;
+
+    private SparseArray<NexradBitmap> mBlocks;
+    private SparseArray<Tile> mTiles;
+    
+    /*
+     * Degrees per pixel, from the first block
+     */
+    private double mScaleX;
+    private double mScaleY;
+    
+    private int mPixels[];
+    private int mClear[];
+
+    /**
+     * 
+     * @param blocks all blocks of this image
+     */
+    public NexradMosaic(SparseArray<NexradBitmap> blocks) {
+        mBlocks = blocks;
+        mTiles = new SparseArray<Tile>();
+        mScaleX = 0;
+        mScaleY = 0;
+        mPixels = new int[0];
+        mClear = new int[0];
+    }
+
+    /**
+     * A block was added or replaced
+     * @param b
+     */
+    public synchronized void put(NexradBitmap b) {
+        if(0 == mScaleX) {
+            mScaleX = b.getScaleX();
+            mScaleY = b.getScaleY();
+        }
+        write(b, false, true);
+    }
+
+    /**
+     * A block was removed
+     * @param b
+     */
+    public synchronized void remove(NexradBitmap b) {
+        if(0 == mScaleX) {
+            return;
+        }
+        write(b, true, false);
+    }
+
+    /**
+     * Put block pixels, or clear, in tiles it falls on
+     * @param b
+     * @param clear
+     * @param add make tiles that do not exist
+     */
+    private void write(NexradBitmap b, boolean clear, boolean add) {
+        int cols = b.getCols();
+        int rows = b.getRows();
+        if(cols <= 0 || rows <= 0) {
+            return;
+        }
+        int bx = getX(b.getLonTopLeft());
+        int by = getY(b.getLatTopLeft());
+        
+        int pixels[] = null;
+        if(!clear) {
+            if(mPixels.length < cols * rows) {
+                mPixels = new int[cols * rows];
+            }
+            if(b.getPixels(mPixels)) {
+                pixels = mPixels;
+            }
+        }
+        if(null == pixels) {
+            /*
+             * Nothing to draw, clear its place
+             */
+            if(mClear.length < cols * rows) {
+                mClear = new int[cols * rows];
+            }
+            pixels = mClear;
+            add = false;
+        }
+        
+        for(int ty = floor(by); ty <= floor(by + rows - 1); ty++) {
+            for(int tx = floor(bx); tx <= floor(bx + cols - 1); tx++) {
+                int key = ty * KEY_ROW + tx;
+                Tile t = mTiles.get(key);
+                if(null == t) {
+                    if(!add) {
+                        continue;
+                    }
+                    t = new Tile();
+                    mTiles.put(key, t);
+                }
+                if(null != t.mBitmap && null != t.mBitmap.getBitmap()) {
+                    copy(t, tx, ty, pixels, bx, by, cols, rows);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy part of a block that falls in a tile
+     */
+    private void copy(Tile t, int tx, int ty, int pixels[], int bx, int by, int cols, int rows) {
+        int x0 = Math.max(bx, tx * TILE);
+        int y0 = Math.max(by, ty * TILE);
+        int x1 = Math.min(bx + cols, (tx + 1) * TILE);
+        int y1 = Math.min(by + rows, (ty + 1) * TILE);
+        if(x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        t.mBitmap.getBitmap().setPixels(pixels, (y0 - by) * cols + (x0 - bx), cols,
+                x0 - tx * TILE, y0 - ty * TILE, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Draw tiles in view
+     * @param canvas
+     * @param origin
+     * @param scale
+     * @param px longitude per pixel of chart
+     * @param py latitude per pixel of chart
+     * @param paint
+     */
+    public synchronized void draw(Canvas canvas, Origin origin, Scale scale, double px, double py, Paint paint) {
+        if(0 == mScaleX) {
+            return;
+        }
+        float scalex = (float)(mScaleX / px) * scale.getScaleFactor();
+        float scaley = (float)(mScaleY / py) * scale.getScaleCorrected();
+        
+        for(int i = 0; i < mTiles.size(); i++) {
+            int key = mTiles.keyAt(i);
+            Tile t = mTiles.valueAt(i);
+            int ty = floor(key, KEY_ROW);
+            int tx = key - ty * KEY_ROW;
+            
+            float x = (float)origin.getOffsetX(mScaleX * tx * TILE - 180);
+            float y = (float)origin.getOffsetY(mScaleY * ty * TILE);
+            float x2 = x + scalex * TILE;
+            float y2 = y + scaley * TILE;
+            if(canvas.quickReject(Math.min(x, x2), Math.min(y, y2), Math.max(x, x2), Math.max(y, y2), Canvas.EdgeType.AA)) {
+                if(null != t.mBitmap) {
+                    t.mBitmap.recycle();
+                    t.mBitmap = null;
+                }
+                continue;
+            }
+            
+            if(null == t.mBitmap) {
+                build(t, tx, ty);
+            }
+            if(null == t.mBitmap.getBitmap()) {
+                t.mBitmap = null;
+                continue;
+            }
+            
+            t.mBitmap.getTransform().setScale(scalex, scaley);
+            t.mBitmap.getTransform().postTranslate(x, y);
+            canvas.drawBitmap(t.mBitmap.getBitmap(), t.mBitmap.getTransform(), paint);
+        }
+    }
+
+    /**
+     * Make bitmap of a tile from all blocks in it
+     * @param t
+     * @param tx
+     * @param ty
+     */
+    private void build(Tile t, int tx, int ty) {
+        t.mBitmap = new BitmapHolder(TILE, TILE);
+        if(null == t.mBitmap.getBitmap()) {
+            return;
+        }
+        for(int i = 0; i < mBlocks.size(); i++) {
+            NexradBitmap b = mBlocks.valueAt(i);
+            int bx = getX(b.getLonTopLeft());
+            int by = getY(b.getLatTopLeft());
+            if(bx + b.getCols() <= tx * TILE || bx >= (tx + 1) * TILE ||
+                    by + b.getRows() <= ty * TILE || by >= (ty + 1) * TILE) {
+                continue;
+            }
+            if(mPixels.length < b.getCols() * b.getRows()) {
+                mPixels = new int[b.getCols() * b.getRows()];
+            }
+            if(b.getPixels(mPixels)) {
+                copy(t, tx, ty, mPixels, bx, by, b.getCols(), b.getRows());
+            }
+        }
+    }
+
+    /**
+     * 
+     * @param lon
+     * @return pixel column in the grid
+     */
+    private int getX(double lon) {
+        return (int)Math.round((lon + 180) / mScaleX);
+    }
+
+    /**
+     * 
+     * @param lat
+     * @return pixel row in the grid
+     */
+    private int getY(double lat) {
+        return (int)Math.round(lat / mScaleY);
+    }
+
+    /**
+     * 
+     * @param pixel
+     * @return tile of pixel
+     */
+    private static int floor(int pixel) {
+        return floor(pixel, TILE);
+    }
+
+    /**
+     * 
+     * @param a
+     * @param b
+     * @return a / b rounded down
+     */
+    private static int floor(int a, int b) {
+        return (int)Math.floor((double)a / b);
+    }
+
+    /**
+     * One tile, bitmap is null when out of view
+     */
+    private static class Tile {
+        private BitmapHolder mBitmap;
+    }
+}
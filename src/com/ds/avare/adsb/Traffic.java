@@ -15,6 +15,15 @@ public class Traffic {
     public String mCallSign;
     private long mLastUpdate;
     
+    /*
+     * Set by TrafficMonitor in background
+     */
+    public volatile int mAlert;
+    public float mCpaSeconds;
+    public float mCpaMiles;
+    private String mAltitudeText;
+    private int mAltitudeTextOf;
+    
 
     public static final double TRAFFIC_ALTITUDE_DIFF_DANGEROUS = 1000; //ft 300m required minimum
     
@@ -66,6 +75,18 @@ public class Traffic {
         return false;
     }
     
+    /**
+     * Altitude label, made once so drawing does not allocate
+     * @return
+     */
+    public String getAltitudeText() {
+        if(null == mAltitudeText || mAltitudeTextOf != mAltitude) {
+            mAltitudeText = mAltitude + "'";
+            mAltitudeTextOf = mAltitude;
+        }
+        return mAltitudeText;
+    }
+
     /**
      * 
      * @return
@@ -17,42 +17,148 @@ import android.util.SparseArray;
 /**
  * 
  * @author zkhan
- *
+ * Traffic from ADSB. Written by the ingest thread, read by the UI without locks through
+ * a snapshot that is made again after each batch of writes.
+ * When full, the least threatening target gives way to a more threatening one.
  */
 public class TrafficCache {
     private static final int MAX_ENTRIES = 100;
+    
+    /*
+     * How often old traffic is removed
+     */
+    public static final long SWEEP_MS = 5000;
+    
+    /*
+     * When ranking threat, this many feet of altitude difference count as one mile of distance
+     */
+    private static final double FEET_PER_MILE = 1000;
+    
+    private static final Traffic EMPTY[] = new Traffic[0];
+    
     private SparseArray<Traffic> mTraffic;
+    private volatile Traffic mSnapshot[];
+    private boolean mChanged;
+    
+    private boolean mOwnship;
+    private double mLon;
+    private double mLat;
+    private double mAltitude;
     
     public TrafficCache() { 
         mTraffic = new SparseArray<Traffic>();
+        mSnapshot = EMPTY;
+        mChanged = false;
+        mOwnship = false;
     }
     
     /**
-     * 
+     * Seen by reader after next publish()
      * @param product
      */
-    public void putTraffic(String callsign, int address, float lat, float lon, int altitude, 
+    public synchronized void putTraffic(String callsign, int address, float lat, float lon, int altitude, 
             float heading, int speed, long time) {
 
         /*
          * For any new entries, check max traffic objects.
          */
-        if(mTraffic.get(address) == null) {
+        Traffic old = mTraffic.get(address);
+        if(old == null) {
             if(mTraffic.size() >= MAX_ENTRIES) {
-                return;
+                /*
+                 * Make room if this one is a bigger threat than the least one
+                 */
+                int worst = -1;
+                double worstThreat = getThreat(lon, lat, altitude);
+                for(int i = 0; i < mTraffic.size(); i++) {
+                    Traffic t = mTraffic.valueAt(i);
+                    double threat = getThreat(t.mLon, t.mLat, t.mAltitude);
+                    if(threat > worstThreat) {
+                        worstThreat = threat;
+                        worst = i;
+                    }
+                }
+                if(worst < 0) {
+                    return;
+                }
+                mTraffic.removeAt(worst);
             }            
         }
         
-        mTraffic.put(address, new Traffic(callsign, address, lat, lon, altitude, 
-                heading, speed, time));
+        Traffic t = new Traffic(callsign, address, lat, lon, altitude, 
+                heading, speed, time);
+        if(null != old) {
+            /*
+             * Keep alert till monitor runs again
+             */
+            t.mAlert = old.mAlert;
+            t.mCpaSeconds = old.mCpaSeconds;
+            t.mCpaMiles = old.mCpaMiles;
+        }
+        mTraffic.put(address, t);
+        mChanged = true;
+    }
+
+    /**
+     * Make changes since last time visible to readers
+     */
+    public synchronized void publish() {
+        if(!mChanged) {
+            return;
+        }
+        Traffic snapshot[] = new Traffic[mTraffic.size()];
+        for(int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = mTraffic.valueAt(i);
+        }
+        mSnapshot = snapshot;
+        mChanged = false;
+    }
+
+    /**
+     * Remove old traffic, run in background every SWEEP_MS
+     */
+    public synchronized void sweep() {
+        for(int i = mTraffic.size() - 1; i >= 0; i--) {
+            if(mTraffic.valueAt(i).isOld()) {
+                mTraffic.removeAt(i);
+                mChanged = true;
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Where we are, to rank traffic
+     * @param lon
+     * @param lat
+     * @param altitude feet
+     */
+    public synchronized void setOwnship(double lon, double lat, double altitude) {
+        mOwnship = true;
+        mLon = lon;
+        mLat = lat;
+        mAltitude = altitude;
+    }
+
+    /**
+     * Distance in miles with altitude difference added, smaller is more threat.
+     * All the same when we do not know where we are, so first heard is kept.
+     * @return
+     */
+    private double getThreat(double lon, double lat, double altitude) {
+        if(!mOwnship) {
+            return 0;
+        }
+        double y = (lat - mLat) * 60;
+        double x = (lon - mLon) * 60 * Math.cos(Math.toRadians(mLat));
+        return Math.sqrt(x * x + y * y) + Math.abs(altitude - mAltitude) / FEET_PER_MILE;
     }
-    
     
     /**
-     * 
+     * Do not change, may have old entries
      * @return
      */
-    public SparseArray<Traffic> getTraffic() {
-        return mTraffic;
+    public Traffic[] getTraffic() {
+        return mSnapshot;
     }    
 }
@@ -0,0 +1,221 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.instruments;
+
+import com.ds.avare.gps.GpsParams;
+import com.ds.avare.place.GameTFR;
+import com.ds.avare.shapes.ShapeIndex;
+import com.ds.avare.shapes.TFRShape;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.storage.SpatialIndex;
+
+/**
+ * @author zkhan
+ * Checks on every GPS fix if the aircraft is inside a TFR, or will be in the next few minutes
+ * on its present track. TFR shapes and game TFR circles are both looked up through an index,
+ * so this is cheap enough to run at the rate of external GPS receivers.
+ */
+public class TFRMonitor {
+
+    public static final int STATUS_NONE = 0;
+    public static final int STATUS_AHEAD = 1;
+    public static final int STATUS_INSIDE = 2;
+    
+    /*
+     * How far ahead to look on track
+     */
+    private static final double LOOKAHEAD_HOURS = 5.0 / 60.0;
+    
+    /*
+     * Below this speed, only check where we are
+     */
+    private static final double MIN_SPEED = 10;
+    
+    /*
+     * Index of game TFR centers, made once
+     */
+    private static SpatialIndex mGameIndex;
+
+    private Preferences mPref;
+    private int mStatus;
+    private String mText;
+    private int mGameFound[];
+    
+    /**
+     * 
+     * @param pref
+     */
+    public TFRMonitor(Preferences pref) {
+        mPref = pref;
+        mStatus = STATUS_NONE;
+        mText = null;
+        mGameFound = new int[16];
+    }
+
+    /**
+     * Check a new position
+     * @param params
+     * @param shapes TFR shapes, can be null
+     */
+    public void updateLocation(GpsParams params, ShapeIndex<TFRShape> shapes) {
+        if(null == params) {
+            return;
+        }
+        double lon = params.getLongitude();
+        double lat = params.getLatitude();
+        
+        /*
+         * Point on track after look ahead time
+         */
+        double lon2 = lon;
+        double lat2 = lat;
+        if(params.getSpeed() > MIN_SPEED) {
+            double dist = Math.toDegrees(params.getSpeed() * LOOKAHEAD_HOURS / Preferences.earthRadiusConversion);
+            double brg = Math.toRadians(params.getBearing());
+            lat2 = lat + dist * Math.cos(brg);
+            lon2 = lon + dist * Math.sin(brg) / Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        }
+        
+        int status = STATUS_NONE;
+        String text = null;
+        
+        if(null != shapes) {
+            TFRShape shape = shapes.findInside(lon, lat);
+            if(null != shape) {
+                status = STATUS_INSIDE;
+                text = shape.getText();
+            }
+            else if(lon2 != lon || lat2 != lat) {
+                shape = shapes.findCrossing(lon, lat, lon2, lat2);
+                if(null != shape) {
+                    status = STATUS_AHEAD;
+                    text = shape.getText();
+                }
+            }
+        }
+        
+        if(status != STATUS_INSIDE && null != mPref && mPref.showGameTFRs()) {
+            int game = checkGame(lon, lat, lon2, lat2);
+            if(game > status) {
+                status = game;
+                text = null;
+            }
+        }
+        
+        mStatus = status;
+        mText = text;
+    }
+
+    /**
+     * 
+     * @return status of last position checked
+     */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * 
+     * @return text of TFR found, null for game TFRs or when none
+     */
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * 
+     * @return short status to show
+     */
+    public String getDisplay() {
+        switch(mStatus) {
+            case STATUS_INSIDE:
+                return "IN";
+            case STATUS_AHEAD:
+                return "AHEAD";
+            default:
+                return "CLEAR";
+        }
+    }
+
+    /**
+     * Check game TFR circles near the line
+     * @param lon1
+     * @param lat1
+     * @param lon2
+     * @param lat2
+     * @return
+     */
+    private int checkGame(double lon1, double lat1, double lon2, double lat2) {
+        SpatialIndex index = getGameIndex();
+        double radius = GameTFR.RADIUS_NM * Preferences.NM_TO_LATITUDE;
+        double cos = Math.max(0.01, Math.cos(Math.toRadians(lat1)));
+        double rlon = radius / cos;
+        int found;
+        while(true) {
+            found = index.box(Math.min(lon1, lon2) - rlon, Math.min(lat1, lat2) - radius,
+                    Math.max(lon1, lon2) + rlon, Math.max(lat1, lat2) + radius, null, mGameFound);
+            if(found < mGameFound.length || mGameFound.length >= index.size()) {
+                break;
+            }
+            /*
+             * Full, so some may have been left out. Look again with room for all.
+             */
+            mGameFound = new int[mGameFound.length * 2];
+        }
+        
+        int status = STATUS_NONE;
+        for(int i = 0; i < found; i++) {
+            double clat = GameTFR.GAME_TFR_COORDS[mGameFound[i]][0];
+            double clon = GameTFR.GAME_TFR_COORDS[mGameFound[i]][1];
+            
+            /*
+             * Flat distance, in degrees of latitude, from center to the line
+             */
+            double px = (clon - lon1) * cos;
+            double py = clat - lat1;
+            if(px * px + py * py <= radius * radius) {
+                return STATUS_INSIDE;
+            }
+            double dx = (lon2 - lon1) * cos;
+            double dy = lat2 - lat1;
+            double len = dx * dx + dy * dy;
+            double t = len > 0 ? (px * dx + py * dy) / len : 0;
+            t = t < 0 ? 0 : (t > 1 ? 1 : t);
+            double ex = px - t * dx;
+            double ey = py - t * dy;
+            if(ex * ex + ey * ey <= radius * radius) {
+                status = STATUS_AHEAD;
+            }
+        }
+        return status;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    private static synchronized SpatialIndex getGameIndex() {
+        if(null == mGameIndex) {
+            int num = GameTFR.GAME_TFR_COORDS.length;
+            float lon[] = new float[num];
+            float lat[] = new float[num];
+            for(int i = 0; i < num; i++) {
+                lat[i] = (float)GameTFR.GAME_TFR_COORDS[i][0];
+                lon[i] = (float)GameTFR.GAME_TFR_COORDS[i][1];
+            }
+            mGameIndex = new SpatialIndex(lon, lat, num, 0);
+        }
+        return mGameIndex;
+    }
+}
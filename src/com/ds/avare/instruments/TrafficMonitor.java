@@ -0,0 +1,186 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.instruments;
+
+import com.ds.avare.adsb.Traffic;
+import com.ds.avare.gps.GpsParams;
+import com.ds.avare.storage.Preferences;
+
+/**
+ * @author zkhan
+ * Projects each traffic target and ownship along their tracks, and finds the time and distance
+ * of closest point of approach. Targets that come inside the alert limits get an alert level,
+ * which the map and info lines show. Runs in background about once a second, and keeps
+ * results in the Traffic objects so nothing is made per target.
+ */
+public class TrafficMonitor {
+
+    public static final int ALERT_NONE = 0;
+    public static final int ALERT_ADVISORY = 1;
+    public static final int ALERT_CONFLICT = 2;
+    
+    /*
+     * Limits by sensitivity setting: miles at CPA, feet apart, seconds to CPA.
+     * Advisory is at twice the distances.
+     */
+    private static final double LIMITS[][] = {
+        {0,   0,    0},
+        {0.5, 500,  60},
+        {1,   1000, 120},
+        {2,   1500, 180},
+    };
+
+    private Preferences mPref;
+    private int mAlert;
+    private int mSeconds;
+    private int mCount;
+    
+    /**
+     * 
+     * @param pref
+     */
+    public TrafficMonitor(Preferences pref) {
+        mPref = pref;
+        mAlert = ALERT_NONE;
+        mSeconds = 0;
+        mCount = 0;
+    }
+
+    /**
+     * Find CPA of all traffic
+     * @param params ownship
+     * @param traffic snapshot from TrafficCache
+     */
+    public void update(GpsParams params, Traffic traffic[]) {
+        if(null == params || null == traffic) {
+            return;
+        }
+        
+        int level = mPref.getTrafficAlert();
+        if(level <= 0 || level >= LIMITS.length) {
+            for(int i = 0; i < traffic.length; i++) {
+                traffic[i].mAlert = ALERT_NONE;
+            }
+            mAlert = ALERT_NONE;
+            mCount = 0;
+            return;
+        }
+        double miles = LIMITS[level][0];
+        double feet = LIMITS[level][1];
+        double hours = LIMITS[level][2] / 3600.0;
+
+        double lon = params.getLongitude();
+        double lat = params.getLatitude();
+        double altitude = params.getAltitude();
+        double cos = Math.cos(Math.toRadians(lat));
+        
+        /*
+         * Ownship velocity in knots, x east, y north
+         */
+        double speed = params.getSpeed() / Preferences.speedConversion * Preferences.MS_TO_KT;
+        double brg = Math.toRadians(params.getBearing());
+        double ovx = speed * Math.sin(brg);
+        double ovy = speed * Math.cos(brg);
+
+        int alert = ALERT_NONE;
+        double soonest = Double.MAX_VALUE;
+        int count = 0;
+        for(int i = 0; i < traffic.length; i++) {
+            Traffic t = traffic[i];
+            if(t.isOld()) {
+                t.mAlert = ALERT_NONE;
+                continue;
+            }
+            
+            /*
+             * Flat earth is good to a fraction of a mile at alert distances
+             */
+            double rx = (t.mLon - lon) * 60 * cos;
+            double ry = (t.mLat - lat) * 60;
+            double thdg = Math.toRadians(t.mHeading);
+            double vx = t.mHorizVelocity * Math.sin(thdg) - ovx;
+            double vy = t.mHorizVelocity * Math.cos(thdg) - ovy;
+            
+            double v2 = vx * vx + vy * vy;
+            double tcpa = v2 > 0 ? -(rx * vx + ry * vy) / v2 : 0;
+            if(tcpa < 0) {
+                /*
+                 * Going apart, closest is now
+                 */
+                tcpa = 0;
+            }
+            double dx = rx + vx * tcpa;
+            double dy = ry + vy * tcpa;
+            double dcpa = Math.sqrt(dx * dx + dy * dy);
+            double dalt = Math.abs(t.mAltitude - altitude);
+            
+            t.mCpaSeconds = (float)(tcpa * 3600);
+            t.mCpaMiles = (float)dcpa;
+            if(tcpa > hours) {
+                t.mAlert = ALERT_NONE;
+            }
+            else if(dcpa <= miles && dalt <= feet) {
+                t.mAlert = ALERT_CONFLICT;
+            }
+            else if(dcpa <= miles * 2 && dalt <= feet * 2) {
+                t.mAlert = ALERT_ADVISORY;
+            }
+            else {
+                t.mAlert = ALERT_NONE;
+            }
+            
+            if(t.mAlert != ALERT_NONE) {
+                count++;
+                if(t.mAlert > alert || (t.mAlert == alert && tcpa < soonest)) {
+                    alert = t.mAlert;
+                    soonest = tcpa;
+                }
+            }
+        }
+        
+        mAlert = alert;
+        mCount = count;
+        mSeconds = alert == ALERT_NONE ? 0 : (int)Math.round(soonest * 3600);
+    }
+
+    /**
+     * 
+     * @return worst alert of last update
+     */
+    public int getAlert() {
+        return mAlert;
+    }
+
+    /**
+     * 
+     * @return targets in alert
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * 
+     * @return short status to show, time to CPA of worst alert
+     */
+    public String getDisplay() {
+        if(ALERT_NONE == mAlert) {
+            return "CLEAR";
+        }
+        if(mSeconds <= 0) {
+            return "NOW";
+        }
+        return mSeconds + "s";
+    }
+}
@@ -0,0 +1,217 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.network;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Random;
+
+import com.ds.avare.shapes.TFRShape;
+
+/**
+ * @author zkhan
+ * Times TFRParser against the old way of reading tfr.txt, which read the whole file in a string,
+ * split it on commas, and made shape text with a chain of replace() calls.
+ * A synthetic file is written with TFRs of random size, read both ways, and the shapes compared.
+ * Run from the GPS tab when the Diagnostics preference is on.
+ */
+public class TFRBenchmark {
+
+    private static final String PREFIX = "@ Sat Mar 01 12:00:00 PST 2014";
+
+    /*
+     * Timed rounds after the warm up, averaged
+     */
+    private static final int ROUNDS = 4;
+
+    /**
+     * 
+     * @param folder where the synthetic file is written, it is deleted after
+     * @param tfrs how many TFRs in file
+     * @return time of each way
+     */
+    public static String run(String folder, int tfrs) {
+        File file = new File(folder, "tfrbenchmark.txt");
+        try {
+            write(file, tfrs);
+
+            /*
+             * Warm up both ways and compare, then alternate which way goes first
+             */
+            LinkedList<TFRShape> old = readOld(file);
+            LinkedList<TFRShape> parsed = readParser(file);
+            boolean same = compare(old, parsed);
+            long oldTime = 0;
+            long parserTime = 0;
+            for(int round = 0; round < ROUNDS; round++) {
+                long start;
+                if(0 == (round % 2)) {
+                    start = System.nanoTime();
+                    readOld(file);
+                    oldTime += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    readParser(file);
+                    parserTime += System.nanoTime() - start;
+                }
+                else {
+                    start = System.nanoTime();
+                    readParser(file);
+                    parserTime += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    readOld(file);
+                    oldTime += System.nanoTime() - start;
+                }
+            }
+
+            return String.format(Locale.US, "TFR %d KB %d shapes %s\nSplit %d ms\nParser %d ms\n",
+                    file.length() / 1024, parsed.size(), same ? "same" : "DIFFERENT",
+                    oldTime / ROUNDS / 1000000, parserTime / ROUNDS / 1000000);
+        }
+        catch (Exception e) {
+            return e.toString();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Synthetic TFR file, in the format the server sends
+     * @param file
+     * @param tfrs
+     * @throws Exception
+     */
+    private static void write(File file, int tfrs) throws Exception {
+        Random random = new Random(1);
+        Writer out = new OutputStreamWriter(new FileOutputStream(file));
+        try {
+            for(int i = 0; i < tfrs; i++) {
+                out.write("TFR:: FDC 4/" + i + " Top " + (1000 + random.nextInt(17000)) + " ft MSL Low SFC Eff 2030-0" +
+                        (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "T2" + random.nextInt(4) +
+                        ":00:00 Exp 2031-03-01T23:00:00,");
+                int points = 20 + random.nextInt(200);
+                for(int j = 0; j < points; j++) {
+                    out.write(String.format(Locale.US, "%.4f,%.4f,",
+                            30 + random.nextDouble() * 10, -120 + random.nextDouble() * 30));
+                }
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * The way tfr.txt was read before TFRParser
+     * @param file
+     * @return
+     * @throws Exception
+     */
+    private static LinkedList<TFRShape> readOld(File file) throws Exception {
+        LinkedList<TFRShape> shapeList = new LinkedList<TFRShape>();
+        byte b[] = new byte[(int)file.length()];
+        InputStream fi = new FileInputStream(file);
+        try {
+            fi.read(b);
+        }
+        finally {
+            fi.close();
+        }
+        String data = new String(b);
+
+        String tokens[] = data.split(",");
+        TFRShape shape = null;
+        for(int id = 0; id < tokens.length; id++) {
+            if(tokens[id].contains("TFR:: ")) {
+                if(null != shape) {
+                    shape.makePolygon();
+                    shape.makeLevels();
+                    shapeList.add(shape);
+                }
+                shape = new TFRShape(tokens[id].replace(
+                        "TFR:: ", PREFIX).
+                        replace("Top", "\n" + "Top      ").
+                        replace("Low", "\n" + "Bottom   ").
+                        replace("Eff", "\n" + "Effective").
+                        replace("Exp", "\n" + "Expires  "));
+                continue;
+            }
+            try {
+                shape.add(Double.parseDouble(tokens[id + 1]),
+                        Double.parseDouble(tokens[id]), false);
+            }
+            catch (Exception e) {
+            }
+            id++;
+        }
+        if(null != shape) {
+            shape.makePolygon();
+            shape.makeLevels();
+            shapeList.add(shape);
+        }
+        return shapeList;
+    }
+
+    /**
+     * The way tfr.txt is read now, nothing left out as expired so both ways give the same shapes
+     * @param file
+     * @return
+     * @throws Exception
+     */
+    private static LinkedList<TFRShape> readParser(File file) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+        try {
+            return TFRParser.parse(reader, PREFIX, 0);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Same text and points in same order
+     * @param a
+     * @param b
+     * @return
+     */
+    private static boolean compare(LinkedList<TFRShape> a, LinkedList<TFRShape> b) {
+        if(a.size() != b.size()) {
+            return false;
+        }
+        Iterator<TFRShape> ia = a.iterator();
+        Iterator<TFRShape> ib = b.iterator();
+        while(ia.hasNext()) {
+            TFRShape sa = ia.next();
+            TFRShape sb = ib.next();
+            if(!sa.getText().equals(sb.getText()) || sa.getNumCoords() != sb.getNumCoords()) {
+                return false;
+            }
+            for(int i = 0; i < sa.getNumCoords(); i++) {
+                if(sa.getLatitude(i) != sb.getLatitude(i) || sa.getLongitude(i) != sb.getLongitude(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
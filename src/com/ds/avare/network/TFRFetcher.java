@@ -14,6 +14,7 @@ package com.ds.avare.network;
 
 import java.util.LinkedList;
 
+import com.ds.avare.shapes.ShapeIndex;
 import com.ds.avare.shapes.TFRShape;
 import com.ds.avare.utils.Helper;
 
@@ -31,6 +32,7 @@ public class TFRFetcher {
     
     private TFRTask mTask;
     private LinkedList<TFRShape> mShapes;
+    private ShapeIndex<TFRShape> mIndex;
     private Context mContext;
     
     /**
@@ -38,6 +40,7 @@ public class TFRFetcher {
      */
     public TFRFetcher(Context ctx) {
         mShapes = null;
+        mIndex = null;
         mContext = ctx;
     }
 
@@ -69,6 +72,14 @@ public class TFRFetcher {
         return mShapes;
     }
 
+    /**
+     * Index of shapes for touch, non null with shapes
+     * @return
+     */
+    public ShapeIndex<TFRShape> getShapeIndex() {
+        return mIndex;
+    }
+
     /**
      * @author zkhan
      *
@@ -83,7 +94,9 @@ public class TFRFetcher {
         protected Boolean doInBackground(Object... vals) {
             Thread.currentThread().setName("TFR");
 
-            mShapes = Helper.getShapesInTFR(mContext);
+            LinkedList<TFRShape> shapes = Helper.getShapesInTFR(mContext);
+            mIndex = new ShapeIndex<TFRShape>(shapes);
+            mShapes = shapes;
             return true;
         }
     } 
@@ -0,0 +1,357 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.network;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedList;
+
+import com.ds.avare.shapes.TFRShape;
+
+/**
+ * @author zkhan
+ * Reads the TFR file a token at a time, straight into shapes.
+ * The file is comma separated, each TFR is a header token starting with "TFR:: " followed by
+ * latitude, longitude pairs. The header has Top, Low, Eff and Exp fields which are also parsed
+ * into numbers, so expired TFRs can be left out.
+ */
+public class TFRParser {
+
+    private static final String HEADER = "TFR:: ";
+    
+    /*
+     * Header fields, and what they are replaced with in the text shown
+     */
+    private static final String KEYS[] = {HEADER, "Top", "Low", "Eff", "Exp"};
+    private static final String TEXTS[] = {null, "\nTop      ", "\nBottom   ", "\nEffective", "\nExpires  "};
+    private static final int KEY_TOP = 1;
+    private static final int KEY_LOW = 2;
+    private static final int KEY_EFF = 3;
+    private static final int KEY_EXP = 4;
+    
+    /*
+     * Exact powers of ten for decimals up to 15 digits
+     */
+    private static final double POWERS[] = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private Reader mReader;
+    private char mBuffer[];
+    private int mPos;
+    private int mLen;
+    private char mToken[];
+    private int mTokenLen;
+    private StringBuilder mText;
+    private int mKeyAt[];
+
+    /**
+     * 
+     * @param reader
+     */
+    private TFRParser(Reader reader) {
+        mReader = reader;
+        mBuffer = new char[8192];
+        mPos = 0;
+        mLen = 0;
+        mToken = new char[256];
+        mText = new StringBuilder();
+        mKeyAt = new int[KEYS.length];
+    }
+
+    /**
+     * Make shapes from a TFR file
+     * @param reader of file
+     * @param prefix text that replaces "TFR:: " in shape text
+     * @param now time in ms UTC, TFRs that expired before this are left out
+     * @return
+     * @throws IOException
+     */
+    public static LinkedList<TFRShape> parse(Reader reader, String prefix, long now) throws IOException {
+        LinkedList<TFRShape> shapes = new LinkedList<TFRShape>();
+        TFRParser parser = new TFRParser(reader);
+        TFRShape shape = null;
+        double lat = Double.NaN;
+        boolean haveLat = false;
+        
+        while(parser.next()) {
+            if(parser.isHeader()) {
+                add(shapes, shape, now);
+                shape = parser.makeShape(prefix);
+                haveLat = false;
+                continue;
+            }
+            if(!haveLat) {
+                lat = parser.parseNumber();
+                haveLat = true;
+                continue;
+            }
+            double lon = parser.parseNumber();
+            haveLat = false;
+            if(null != shape && !Double.isNaN(lat) && !Double.isNaN(lon)) {
+                shape.add(lon, lat, false);
+            }
+        }
+        add(shapes, shape, now);
+        return shapes;
+    }
+
+    /**
+     * 
+     * @param shapes
+     * @param shape
+     * @param now
+     */
+    private static void add(LinkedList<TFRShape> shapes, TFRShape shape, long now) {
+        if(null == shape || shape.isExpired(now)) {
+            return;
+        }
+        shape.makePolygon();
+        shape.makeLevels();
+        shapes.add(shape);
+    }
+
+    /**
+     * Read next comma separated token
+     * @return false at end of file
+     * @throws IOException
+     */
+    private boolean next() throws IOException {
+        mTokenLen = 0;
+        boolean any = false;
+        while(true) {
+            if(mPos >= mLen) {
+                mLen = mReader.read(mBuffer, 0, mBuffer.length);
+                mPos = 0;
+                if(mLen <= 0) {
+                    mLen = 0;
+                    return any;
+                }
+            }
+            any = true;
+            char c = mBuffer[mPos++];
+            if(',' == c) {
+                return true;
+            }
+            if(mTokenLen == mToken.length) {
+                char token[] = new char[mToken.length * 2];
+                System.arraycopy(mToken, 0, token, 0, mTokenLen);
+                mToken = token;
+            }
+            mToken[mTokenLen++] = c;
+        }
+    }
+
+    /**
+     * 
+     * @param key
+     * @param from
+     * @return index of key in token at or after from, -1 if none
+     */
+    private int find(String key, int from) {
+        int len = key.length();
+        for(int i = from; i <= mTokenLen - len; i++) {
+            int j = 0;
+            while(j < len && mToken[i + j] == key.charAt(j)) {
+                j++;
+            }
+            if(j == len) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    private boolean isHeader() {
+        return find(HEADER, 0) >= 0;
+    }
+
+    /**
+     * Make a shape from header token. Text is the header with fields put on lines.
+     * @param prefix
+     * @return
+     */
+    private TFRShape makeShape(String prefix) {
+        mText.setLength(0);
+        for(int k = 0; k < KEYS.length; k++) {
+            mKeyAt[k] = -1;
+        }
+        int i = 0;
+        while(i < mTokenLen) {
+            int k;
+            for(k = 0; k < KEYS.length; k++) {
+                if(mToken[i] == KEYS[k].charAt(0) && find(KEYS[k], i) == i) {
+                    break;
+                }
+            }
+            if(k == KEYS.length) {
+                mText.append(mToken[i]);
+                i++;
+                continue;
+            }
+            if(mKeyAt[k] < 0) {
+                mKeyAt[k] = i + KEYS[k].length();
+            }
+            mText.append(0 == k ? prefix : TEXTS[k]);
+            i += KEYS[k].length();
+        }
+        
+        TFRShape shape = new TFRShape(mText.toString());
+        shape.setLimits(parseAltitude(mKeyAt[KEY_TOP]), parseAltitude(mKeyAt[KEY_LOW]),
+                parseTime(mKeyAt[KEY_EFF]), parseTime(mKeyAt[KEY_EXP]));
+        return shape;
+    }
+
+    /**
+     * Altitude in feet like "17999 ft MSL", or SFC
+     * @param at
+     * @return
+     */
+    private int parseAltitude(int at) {
+        if(at < 0) {
+            return TFRShape.ALTITUDE_UNKNOWN;
+        }
+        while(at < mTokenLen && Character.isWhitespace(mToken[at])) {
+            at++;
+        }
+        if(find("SFC", at) == at) {
+            return 0;
+        }
+        int value = 0;
+        int digits = 0;
+        while(at < mTokenLen && mToken[at] >= '0' && mToken[at] <= '9' && digits < 7) {
+            value = value * 10 + (mToken[at] - '0');
+            at++;
+            digits++;
+        }
+        return digits > 0 ? value : TFRShape.ALTITUDE_UNKNOWN;
+    }
+
+    /**
+     * Time like 2014-03-01T20:00:00, in UTC
+     * @param at
+     * @return
+     */
+    private long parseTime(int at) {
+        if(at < 0) {
+            return TFRShape.TIME_UNKNOWN;
+        }
+        while(at < mTokenLen && Character.isWhitespace(mToken[at])) {
+            at++;
+        }
+        if(at + 19 > mTokenLen || mToken[at + 4] != '-' || mToken[at + 7] != '-' || mToken[at + 10] != 'T' ||
+                mToken[at + 13] != ':' || mToken[at + 16] != ':') {
+            return TFRShape.TIME_UNKNOWN;
+        }
+        int year = digits(at, 4);
+        int month = digits(at + 5, 2);
+        int day = digits(at + 8, 2);
+        int hour = digits(at + 11, 2);
+        int minute = digits(at + 14, 2);
+        int second = digits(at + 17, 2);
+        if(year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || minute < 0 || second < 0) {
+            return TFRShape.TIME_UNKNOWN;
+        }
+        
+        /*
+         * Days since 1970 of civil date
+         */
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = (long)era * 146097 + doe - 719468;
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+    }
+
+    /**
+     * 
+     * @param at
+     * @param num
+     * @return -1 if not all digits
+     */
+    private int digits(int at, int num) {
+        int value = 0;
+        for(int i = at; i < at + num; i++) {
+            char c = mToken[i];
+            if(c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parse a decimal number without making a string
+     * @return NaN if not a number
+     */
+    private double parseNumber() {
+        int start = 0;
+        int end = mTokenLen;
+        while(start < end && Character.isWhitespace(mToken[start])) {
+            start++;
+        }
+        while(end > start && Character.isWhitespace(mToken[end - 1])) {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if(i < end && (mToken[i] == '-' || mToken[i] == '+')) {
+            negative = mToken[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = 0;
+        boolean dot = false;
+        for(; i < end; i++) {
+            char c = mToken[i];
+            if(c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if(dot) {
+                    fraction++;
+                }
+            }
+            else if('.' == c && !dot) {
+                dot = true;
+            }
+            else {
+                break;
+            }
+        }
+        if(i < end || digits > 15) {
+            /*
+             * Exponent or too long, let Java do it
+             */
+            try {
+                return Double.parseDouble(new String(mToken, start, end - start));
+            }
+            catch (Exception e) {
+                return Double.NaN;
+            }
+        }
+        if(0 == digits) {
+            return Double.NaN;
+        }
+        double value = (double)mantissa / POWERS[fraction];
+        return negative ? -value : value;
+    }
+}
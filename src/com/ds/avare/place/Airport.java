@@ -60,6 +60,23 @@ public class Airport {
         mProj = new Projection(cLon, cLat, mLon, mLat);
     }
 
+    /**
+     * Copy, so one can be changed while the other is shown
+     * @param a
+     */
+    public Airport(Airport a) {
+        mId = a.mId;
+        mLon = a.mLon;
+        mLat = a.mLat;
+        mVariation = a.mVariation;
+        mProj = a.mProj;
+        mName = a.mName;
+        mFuel = a.mFuel;
+        mElevation = a.mElevation;
+        mLongestRunway = a.mLongestRunway;
+        mHeight = a.mHeight;
+    }
+
     /**
      * 
      * @param cLon
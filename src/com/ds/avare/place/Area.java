@@ -13,6 +13,8 @@ Redistribution and use in source and binary forms, with or without modification,
 package com.ds.avare.place;
 
 import com.ds.avare.gps.GpsParams;
+import com.ds.avare.position.Projection;
+import com.ds.avare.storage.DataBaseHelper;
 import com.ds.avare.storage.DataSource;
 import com.ds.avare.storage.Preferences;
 
@@ -32,12 +34,37 @@ public class Area {
     private DataBaseAreaTask mDt;
     private double mLon;
     private double mLat;
-    private boolean mFound;
-    private long mLastTime;
     private double mAltitude;
     private Preferences mPref;
-    
+
+    /*
+     * Airports found last time from database, more than shown so they can be re-sorted as we move.
+     * Only touched by the area task.
+     */
+    private Airport[] mCandidates;
+    private double mCandidatesLon;
+    private double mCandidatesLat;
+    private double mCandidatesRadius;
+    private String mCandidatesKey;
+    private long mCandidatesTime;
+    private boolean mCandidatesIndexed;
+
+    /*
+     * Time when the last task was started
+     */
+    private long mLastTime;
+
     private static final int UPDATE_TIME = 10000;
+
+    /*
+     * Most often to re-sort on move
+     */
+    private static final int SORT_TIME = 2000;
+
+    /*
+     * Airports kept to re-sort on move
+     */
+    private static final int CANDIDATES = DataBaseHelper.MAX_CLOSEST_AIRPORTS;
     
     /**
      * 
@@ -47,9 +74,9 @@ public class Area {
         mDataSource = dataSource;
         mLon = mLat = 0;
         mAltitude = 0;
-        mLastTime = SystemClock.elapsedRealtime();
-        mFound = false;
         mPref = new Preferences(ctx);
+        mCandidates = null;
+        mLastTime = 0;
     }
 
     /**
@@ -90,25 +117,6 @@ public class Area {
      */
     public void updateLocation(GpsParams params) {
         
-        double lon = params.getLongitude();
-        double lat = params.getLatitude();
-
-        if(mFound) {
-            long ctime = SystemClock.elapsedRealtime();
-            ctime -= mLastTime;
-            if(Math.abs(ctime) < UPDATE_TIME) {
-                /*
-                 * Slow down on creating async tasks.
-                 */
-                return;
-            }
-        }
-        mLastTime = SystemClock.elapsedRealtime();
-        
-        mLon = lon;
-        mLat = lat;
-        mAltitude = params.getAltitude();
-        
         if(mDt != null) {
             /*
              * Do not overwhelm
@@ -117,8 +125,41 @@ public class Area {
                 return;
             }
         }
+
+        /*
+         * Slow down on creating async tasks.
+         * Re-sorting candidates is cheap so it is done more often than the database was asked before.
+         * The database is only asked again when we moved out of the candidates.
+         */
+        long now = SystemClock.elapsedRealtime();
+        if(null != mDt && Math.abs(now - mLastTime) < SORT_TIME) {
+            return;
+        }
+        mLastTime = now;
+
+        mLon = params.getLongitude();
+        mLat = params.getLatitude();
+        mAltitude = params.getAltitude();
+
         mDt = new DataBaseAreaTask();
-        mDt.execute();
+        mDt.execute(mLon, mLat, mAltitude, mPref.getLongestRunway() + mPref.shouldShowAllFacilities());
+    }
+
+    /**
+     * Sort airports on distance
+     * @param airports
+     */
+    private static void sort(Airport[] airports) {
+        for(int i = 1; i < airports.length && airports[i] != null; i++) {
+            Airport a = airports[i];
+            double d = a.getDistance();
+            int j = i - 1;
+            while(j >= 0 && airports[j].getDistance() > d) {
+                airports[j + 1] = airports[j];
+                j--;
+            }
+            airports[j + 1] = a;
+        }
     }
 
     /**
@@ -139,48 +180,93 @@ public class Area {
             if(null == mDataSource) {
                 return null;
             }
+
+            double lon = (Double)vals[0];
+            double lat = (Double)vals[1];
+            double altitude = (Double)vals[2];
+            String key = (String)vals[3];
+            
+            Airport[] candidates = mCandidates;
             
-            airports = mDataSource.findClosestAirports(mLon, mLat, mPref.getLongestRunway());
+            if(null != candidates && key.equals(mCandidatesKey)) {
+                /*
+                 * Airports not in candidates are at least radius away from where they were found,
+                 * so any candidate closer than radius less distance moved is certainly among the closest.
+                 * This only holds when candidates came sorted on great circle distance from the index.
+                 */
+                double moved = Projection.getStaticDistance(mCandidatesLon, mCandidatesLat, lon, lat);
+                for(int i = 0; i < candidates.length && candidates[i] != null; i++) {
+                    candidates[i].updateLocation(lon, lat);
+                }
+                sort(candidates);
+                int last = Preferences.MAX_AREA_AIRPORTS - 1;
+                boolean all = candidates[candidates.length - 1] == null;
+                if(all) {
+                    /*
+                     * Fewer than asked, so every airport is a candidate. Check for new data sometimes.
+                     */
+                    all = Math.abs(SystemClock.elapsedRealtime() - mCandidatesTime) < UPDATE_TIME;
+                }
+                if(all || (mCandidatesIndexed && candidates[last] != null && 
+                        candidates[last].getDistance() <= mCandidatesRadius - moved)) {
+                    airports = copy(candidates, altitude);
+                    return null;
+                }
+            }
+
+            /*
+             * Find again
+             */
+            boolean indexed[] = new boolean[1];
+            candidates = mDataSource.findClosestAirports(lon, lat, mPref.getLongestRunway(), CANDIDATES, indexed);
+            if(null == candidates || candidates.length == 0) {
+                mCandidates = null;
+                return null;
+            }
             /*
-             * Sort on distance because distance found from sqlite is less than perfect
+             * Already sorted when from index. Sort anyway in case this came from SQL.
              */
+            sort(candidates);
+            double radius = 0;
+            for(int i = 0; i < candidates.length && candidates[i] != null; i++) {
+                radius = candidates[i].getDistance();
+            }
+            mCandidatesLon = lon;
+            mCandidatesLat = lat;
+            mCandidatesRadius = radius;
+            mCandidatesKey = key;
+            mCandidatesTime = SystemClock.elapsedRealtime();
+            mCandidatesIndexed = indexed[0];
+            mCandidates = candidates;
+            airports = copy(candidates, altitude);
             return null;
         }
+
+        /**
+         * Closest ones for showing, with height for glide.
+         * Copies, as candidates are changed by the next task while these are shown.
+         * @param candidates
+         * @param altitude
+         * @return
+         */
+        private Airport[] copy(Airport[] candidates, double altitude) {
+            Airport[] ret = new Airport[Preferences.MAX_AREA_AIRPORTS];
+            for(int i = 0; i < ret.length && i < candidates.length; i++) {
+                if(candidates[i] != null) {
+                    ret[i] = new Airport(candidates[i]);
+                    ret[i].setHeight(altitude);
+                }
+            }
+            return ret;
+        }
         
         @Override
         protected void onPostExecute(Object res) {
             if(airports == null) {
-            	mFound = false;
                 return;
             }
             
-            int n = airports.length;
-            // Bubble sort
-            // Removed Collections.sort() because this function has issues with some OS versions 
-            for (int c = 0; c < (n - 1); c++) {
-                for (int d = 0; d < (n - c - 1); d++) {
-                	if(airports[d + 1] == null || airports[d] == null) {
-                		break;
-                	}
-				    if (airports[d].getDistance() > airports[d + 1].getDistance()) { /* For ascending order use < */
-					    Airport swap = airports[d];
-					    airports[d] = airports[d + 1];
-					    airports[d + 1] = swap;
-				    }
-                 }
-            }
-
-            /*
-             * Now test if all airports are at glide-able distance.
-             */
-            for(int i = 0; i < airports.length; i++) {
-                if(airports[i] != null) {
-                    airports[i].setHeight(mAltitude);
-                }
-            }
-
             mAirports = airports;
-            mFound = true;                    
         }
 
     }
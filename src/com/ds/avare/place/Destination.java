@@ -28,6 +28,7 @@ import com.ds.avare.position.Projection;
 import com.ds.avare.shapes.TrackShape;
 import com.ds.avare.storage.DataBaseHelper;
 import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.DestinationCache;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.storage.StringPreference;
 import com.ds.avare.userDefinedWaypoints.UDWMgr;
@@ -375,6 +376,79 @@ public class Destination extends Observable {
         locmDataBaseTask.execute(false, "");
     }
 
+    /**
+     * Find many destinations, like all waypoints of a plan.
+     * Facilities are looked up together first, then each destination finds itself from the cache.
+     * @param dests null ones are skipped
+     * @param dbTypes
+     */
+    public static void findAll(Destination dests[], String dbTypes[]) {
+        for(int i = 0; i < dests.length; i++) {
+            if(null != dests[i]) {
+                dests[i].mLooking = true;
+            }
+        }
+        BatchTask task = new BatchTask();
+        task.execute(dests, dbTypes);
+    }
+
+    /**
+     * @author zkhan
+     * Look up all facilities of many destinations in one go
+     */
+    private static class BatchTask extends AsyncTask<Object, Void, Boolean> {
+
+        private Destination mDests[];
+        private String mDbTypes[];
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#doInBackground(Params[])
+         */
+        @Override
+        protected Boolean doInBackground(Object... vals) {
+
+            Thread.currentThread().setName("Destinations");
+
+            mDests = (Destination[])vals[0];
+            mDbTypes = (String[])vals[1];
+
+            DataSource source = null;
+            String names[] = new String[mDests.length];
+            String types[] = new String[mDests.length];
+            for(int i = 0; i < mDests.length; i++) {
+                if(null == mDests[i]) {
+                    continue;
+                }
+                names[i] = mDests[i].mName;
+                types[i] = mDests[i].mDestType;
+                if(null == source) {
+                    source = mDests[i].mDataSource;
+                }
+            }
+            if(null == source) {
+                return false;
+            }
+
+            /*
+             * This fills the cache
+             */
+            source.findDestinations(names, types, mDbTypes);
+            return true;
+        }
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#onPostExecute(java.lang.Object)
+         */
+        @Override
+        protected void onPostExecute(Boolean result) {
+            for(int i = 0; i < mDests.length; i++) {
+                if(null != mDests[i]) {
+                    mDests[i].find(mDbTypes[i]);
+                }
+            }
+        }
+    }
+
 	/**
 	 * Database  query to find destination
 	 * @param dbType
@@ -555,7 +629,10 @@ public class Destination extends Observable {
 	        /*
 	         * For all others, find in DB
 	         */
-	        mDataSource.findDestination(mName, mDestType, dbType, mParams, mRunways, mFreq, mAwos);
+	        DestinationCache.Entry found = mDataSource.findDestination(mName, mDestType, dbType);
+	        if(null != found) {
+	            found.copyTo(mParams, mRunways, mFreq, mAwos);
+	        }
 
 	        if(mDestType.equals(BASE)) {
 
@@ -563,7 +640,7 @@ public class Destination extends Observable {
                  * Find A/FD
                  */
                 mAfdFound = null;
-                mAfdName = mDataSource.findAFD(mName);
+                mAfdName = null == found ? null : found.getAfd();
                 if(null != mAfdName) {
                     FilenameFilter filter = new FilenameFilter() {
                         public boolean accept(File directory, String fileName) {
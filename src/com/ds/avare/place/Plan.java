@@ -829,6 +829,8 @@ public class Plan implements Observer {
         }
 
         int num;
+        Destination dests[] = new Destination[jsonArr.length()];
+        String dbtypes[] = new String[jsonArr.length()];
         for (int i = 0; i < jsonArr.length(); i++) {
             try {
                 String dest = jsonArr.getString(i);
@@ -845,11 +847,17 @@ public class Plan implements Observer {
                     num = i;
                 }
                 mDestination[num] = new Destination(id, type, mPref, mService);
-                mDestination[num].find(dbtype);
+                dests[num] = mDestination[num];
+                dbtypes[num] = dbtype;
             } catch (Exception e) {
                 continue;
             }
         }
+
+        /*
+         * Find all waypoints together
+         */
+        Destination.findAll(dests, dbtypes);
     }
 
     /**
@@ -20,6 +20,11 @@ import com.ds.avare.gps.GpsParams;
  */
 public class CrumbsShape extends Shape {
 
+    /*
+     * Simplify again when this many points have been added, or a quarter of the track
+     */
+    private static final int LEVEL_POINTS = 64;
+
     /**
      * Set the destination for this track 
      */
@@ -40,13 +45,20 @@ public class CrumbsShape extends Shape {
          * Add a coordinate
          */
         super.add(loc.getLongitude(), loc.getLatitude(), false);
+        
+        /*
+         * Long tracks are drawn simplified when zoomed out
+         */
+        if(getNumCoords() - mLevelNum >= Math.max(LEVEL_POINTS, mLevelNum / 4)) {
+            makeLevels();
+        }
     }
     
     /**
      * Clear 
      */
     public void clearShape() {
-        super.mCoords.clear();
+        super.clear();
     }
     
 }
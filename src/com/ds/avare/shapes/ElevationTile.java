@@ -15,6 +15,7 @@ import android.content.Context;
 
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
+import com.ds.avare.utils.BitmapPool;
 
 /**
  * 
@@ -25,6 +26,7 @@ public class ElevationTile {
     private BitmapHolder mElevBitmap;    
     private Preferences mPref;
     private Tile mTile;
+    private BitmapPool mPool;
 
     private Context mContext;
 
@@ -37,6 +39,7 @@ public class ElevationTile {
         mContext = context;
         mPref = new Preferences(context);
         mElevBitmap = new BitmapHolder();
+        mPool = new BitmapPool(1);
     }
     
     /**
@@ -48,6 +51,7 @@ public class ElevationTile {
     	}
         mElevBitmap.recycle();
         mElevBitmap = null;
+        mPool.clear();
     }
 
     /**
@@ -91,15 +95,7 @@ public class ElevationTile {
          * New tile
          */
         mTile = t;
-        BitmapHolder b = new BitmapHolder(mContext, mPref, t.getName(), 1);
-        if(b.getName() == null) {
-            return;
-        }
-        else {
-            mElevBitmap.drawInBitmap(b, t.getName(), 0, 0);
-            b.recycle();
-            b = null;
-        }
+        mElevBitmap.decodeInBitmap(mPref, t.getName(), mPool);
 
     }
     
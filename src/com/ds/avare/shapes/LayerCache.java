@@ -0,0 +1,256 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import com.ds.avare.position.Movement;
+import com.ds.avare.position.Origin;
+import com.ds.avare.position.Scale;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+
+/**
+ * @author zkhan
+ * Overlays that change slowly are drawn once into an offscreen bitmap, and the bitmap is drawn
+ * every frame after that. The bitmap is made again when the view (origin, scale) or data of a layer changes.
+ * While the view changes every frame, as in pan, layers are drawn straight to the screen.
+ */
+public class LayerCache {
+
+    private Layer mLayers[];
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private boolean mValid;
+    private boolean mEnabled;
+    
+    /*
+     * View of last frame, and view of bitmap
+     */
+    private double mKey[];
+    private double mBitmapKey[];
+    private int mBlits;
+    private int mRenders;
+
+    /**
+     * 
+     */
+    public LayerCache() {
+        mLayers = new Layer[0];
+        mKey = new double[8];
+        mBitmapKey = new double[8];
+        mValid = false;
+        mEnabled = true;
+        mBlits = 0;
+        mRenders = 0;
+    }
+
+    /**
+     * Layers are drawn in the order added
+     * @param layer
+     */
+    public void add(Layer layer) {
+        Layer layers[] = new Layer[mLayers.length + 1];
+        System.arraycopy(mLayers, 0, layers, 0, mLayers.length);
+        layers[mLayers.length] = layer;
+        mLayers = layers;
+        mValid = false;
+    }
+
+    /**
+     * Draw all layers, from the bitmap when it is good
+     * @param canvas
+     * @param origin
+     * @param scale
+     * @param movement
+     * @param width
+     * @param height
+     * @param cache false to draw straight, for instance when canvas is rotated
+     */
+    public void draw(Canvas canvas, Origin origin, Scale scale, Movement movement, int width, int height, boolean cache) {
+        
+        /*
+         * Data of any layer changed
+         */
+        boolean changed = false;
+        for(int i = 0; i < mLayers.length; i++) {
+            changed |= mLayers[i].update();
+        }
+        
+        boolean moved = !same(origin, scale, movement, width, height);
+        if(changed || moved) {
+            mValid = false;
+        }
+        
+        if((!cache) || (!mEnabled) || moved || width <= 0 || height <= 0) {
+            /*
+             * View is changing or cannot cache, draw straight
+             */
+            render(canvas);
+            return;
+        }
+        
+        if(!mValid) {
+            if(null == mBitmap || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+                recycle();
+                try {
+                    mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    mCanvas = new Canvas(mBitmap);
+                }
+                catch(OutOfMemoryError e) {
+                    /*
+                     * No memory for it, stop caching
+                     */
+                    mBitmap = null;
+                    mCanvas = null;
+                    mEnabled = false;
+                    render(canvas);
+                    return;
+                }
+            }
+            mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            render(mCanvas);
+            System.arraycopy(mKey, 0, mBitmapKey, 0, mKey.length);
+            mValid = true;
+            mRenders++;
+        }
+        canvas.drawBitmap(mBitmap, 0, 0, null);
+        mBlits++;
+    }
+
+    /**
+     * 
+     * @param canvas
+     */
+    private void render(Canvas canvas) {
+        for(int i = 0; i < mLayers.length; i++) {
+            mLayers[i].render(canvas);
+        }
+    }
+
+    /**
+     * Compare view to last frame and remember it
+     * @return true if same as last frame
+     */
+    private boolean same(Origin origin, Scale scale, Movement movement, int width, int height) {
+        double lonL = origin.getLongitudeLeft();
+        double latU = origin.getLatitudeUpper();
+        double sx = scale.getScaleFactor();
+        double sy = scale.getScaleCorrected();
+        double mx = movement.getLongitudePerPixel();
+        double my = movement.getLatitudePerPixel();
+        boolean same = mKey[0] == lonL && mKey[1] == latU && mKey[2] == sx && mKey[3] == sy &&
+                mKey[4] == mx && mKey[5] == my && mKey[6] == width && mKey[7] == height;
+        mKey[0] = lonL;
+        mKey[1] = latU;
+        mKey[2] = sx;
+        mKey[3] = sy;
+        mKey[4] = mx;
+        mKey[5] = my;
+        mKey[6] = width;
+        mKey[7] = height;
+        return same;
+    }
+
+    /**
+     * Free the bitmap
+     */
+    public void recycle() {
+        if(null != mBitmap) {
+            mBitmap.recycle();
+        }
+        mBitmap = null;
+        mCanvas = null;
+        mValid = false;
+    }
+
+    /**
+     * Render time of each layer
+     * @return
+     */
+    public String getStats() {
+        String ret = "blits " + mBlits + " renders " + mRenders + "\n";
+        for(int i = 0; i < mLayers.length; i++) {
+            Layer l = mLayers[i];
+            ret += l.mName + " last " + (l.mTime / 1000) + "us max " + (l.mMaxTime / 1000) + "us\n";
+        }
+        return ret;
+    }
+
+    /**
+     * One overlay
+     */
+    public static abstract class Layer {
+        private String mName;
+        private Object mVersion[];
+        private Object mLast[];
+        private long mTime;
+        private long mMaxTime;
+
+        /**
+         * 
+         * @param name
+         * @param versions number of objects that tell when data changed
+         */
+        public Layer(String name, int versions) {
+            mName = name;
+            mVersion = new Object[versions];
+            mLast = new Object[versions];
+            mTime = 0;
+            mMaxTime = 0;
+        }
+
+        /**
+         * Put objects the layer is drawn from in version. A new object (by reference) means redraw.
+         * @param version
+         */
+        protected abstract void version(Object version[]);
+
+        /**
+         * 
+         * @param canvas
+         */
+        protected abstract void draw(Canvas canvas);
+
+        /**
+         * 
+         * @return true if data changed
+         */
+        private boolean update() {
+            version(mVersion);
+            boolean changed = false;
+            for(int i = 0; i < mVersion.length; i++) {
+                if(mVersion[i] != mLast[i]) {
+                    changed = true;
+                    mLast[i] = mVersion[i];
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * 
+         * @param canvas
+         */
+        private void render(Canvas canvas) {
+            long start = System.nanoTime();
+            draw(canvas);
+            mTime = System.nanoTime() - start;
+            if(mTime > mMaxTime) {
+                mMaxTime = mTime;
+            }
+        }
+    }
+}
@@ -11,29 +11,45 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.shapes;
 
-import java.util.LinkedList;
-
 import com.ds.avare.place.Plan;
-import com.ds.avare.position.Coordinate;
 import com.ds.avare.position.Movement;
 import com.ds.avare.position.Origin;
 import com.ds.avare.position.Scale;
-import com.sromku.polygon.Point;
-import com.sromku.polygon.Polygon;
-import com.sromku.polygon.Polygon.Builder;
 
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Typeface;
+import android.graphics.Rect;
 
 /**
  * @author zkhan
- *
+ * Points are kept in arrays that grow as needed, so drawing is one pass with no allocations.
+ * Segments out of view are not drawn, and all lines of a shape are drawn in one call.
+ * Shapes can be simplified (Douglas-Peucker) in levels of detail, and drawn with the level that
+ * fits the zoom, so points that fall in the same pixel are not drawn.
  */
 public abstract class Shape {
 
-    protected LinkedList<Coordinate> mCoords;
+    /*
+     * Start size of point arrays
+     */
+    private static final int INITIAL_SIZE = 16;
+    
+    /*
+     * Pixels around the view in which segments are still drawn, for circles and line width
+     */
+    private static final int VIEW_MARGIN = 16;
+
+    /*
+     * Simplification tolerance of each level of detail in degrees, about 50 meters to 30 miles
+     */
+    private static final double LEVEL_TOLERANCE[] = {0.0005, 0.002, 0.008, 0.032, 0.128, 0.512};
+
+    protected double mLon[];
+    protected double mLat[];
+    protected int mLeg[];
+    protected boolean mSeparate[];
+    protected int mNum;
     protected double mLonMin;
     protected double mLonMax;
     protected double mLatMin;
@@ -41,20 +57,60 @@ public abstract class Shape {
     
     private String mText;
     
-    private Builder mPolyBuilder;
-    private Polygon mPoly;
+    /*
+     * Closed polygon for touch, as edge arrays
+     */
+    private float mPolyLon[];
+    private float mPolyLat[];
+    private int mPolyNum;
+    
+    /*
+     * Points of each level of detail, made from the first mLevelNum points.
+     * Points added after that are drawn in full.
+     */
+    private int mLevels[][];
+    private int mLevelSize[];
+    protected int mLevelNum;
+    
+    /*
+     * Screen lines of visible segments, and the segment each came from
+     */
+    private float mLines[];
+    private int mLineSegment[];
+    private int mLineEnd[];
+    private Rect mClip;
     
     /**
      * 
      */
     public Shape(String label) {
-        mCoords = new LinkedList<Coordinate>();
+        mLon = new double[INITIAL_SIZE];
+        mLat = new double[INITIAL_SIZE];
+        mLeg = new int[INITIAL_SIZE];
+        mSeparate = new boolean[INITIAL_SIZE];
+        mLines = new float[INITIAL_SIZE * 4];
+        mLineSegment = new int[INITIAL_SIZE];
+        mLineEnd = new int[INITIAL_SIZE];
+        mClip = new Rect();
+        mText = label;
+        clear();
+    }
+
+    /**
+     * Remove all points
+     */
+    protected void clear() {
+        mNum = 0;
         mLonMin = 180;
         mLonMax = -180;
         mLatMin = 180;
         mLatMax = -180;
-        mText = label;
-        mPolyBuilder = Polygon.Builder(); 
+        mPolyLon = null;
+        mPolyLat = null;
+        mPolyNum = 0;
+        mLevels = null;
+        mLevelSize = null;
+        mLevelNum = 0;
     }
 
     /**
@@ -66,14 +122,14 @@ public abstract class Shape {
     }
     
     public void add(double lon, double lat, boolean issep, int segment) {
-        Coordinate c = new Coordinate(lon, lat);
-        if(issep) {
-            c.makeSeparate();
+        if(mNum == mLon.length) {
+            grow(mNum * 2);
         }
-        c.setSegment(segment);
-        
-        mCoords.add(c);
-        mPolyBuilder.addVertex(new Point((float)lon, (float)lat));
+        mLon[mNum] = lon;
+        mLat[mNum] = lat;
+        mLeg[mNum] = segment;
+        mSeparate[mNum] = issep;
+        mNum++;
         
         /*
          * Calculate start points
@@ -92,6 +148,25 @@ public abstract class Shape {
         }
     }
 
+    /**
+     * 
+     * @param size
+     */
+    private void grow(int size) {
+        double lon[] = new double[size];
+        double lat[] = new double[size];
+        int leg[] = new int[size];
+        boolean separate[] = new boolean[size];
+        System.arraycopy(mLon, 0, lon, 0, mNum);
+        System.arraycopy(mLat, 0, lat, 0, mNum);
+        System.arraycopy(mLeg, 0, leg, 0, mNum);
+        System.arraycopy(mSeparate, 0, separate, 0, mNum);
+        mLon = lon;
+        mLat = lat;
+        mLeg = leg;
+        mSeparate = separate;
+    }
+
     public void drawShape(Canvas c, Origin origin, Scale scale, Movement movement, Paint paint, boolean night, boolean drawTrack) {
     	drawShape(c, origin, scale,movement,paint,night, drawTrack, null);
     }
@@ -105,6 +180,55 @@ public abstract class Shape {
      * @param paint
      */
 	public void drawShape(Canvas c, Origin origin, Scale scale, Movement movement, Paint paint, boolean night, boolean drawTrack, Plan plan) {
+	    if(mNum < 2) {
+	        return;
+	    }
+	    
+        /*
+         * Find what is in view. Clip is in the coordinates of the canvas so it includes rotation of track up.
+         */
+        if(!c.getClipBounds(mClip)) {
+            return;
+        }
+        mClip.inset(-VIEW_MARGIN, -VIEW_MARGIN);
+        double viewLonMin = origin.getLongitudeOf(mClip.left);
+        double viewLonMax = origin.getLongitudeOf(mClip.right);
+        double viewLatMin = origin.getLatitudeOf(mClip.bottom);
+        double viewLatMax = origin.getLatitudeOf(mClip.top);
+        if(viewLonMin > viewLonMax) {
+            double tmp = viewLonMin;
+            viewLonMin = viewLonMax;
+            viewLonMax = tmp;
+        }
+        if(viewLatMin > viewLatMax) {
+            double tmp = viewLatMin;
+            viewLatMin = viewLatMax;
+            viewLatMax = tmp;
+        }
+        if(mLonMax < viewLonMin || mLonMin > viewLonMax || mLatMax < viewLatMin || mLatMin > viewLatMax) {
+            /*
+             * Whole shape out of view
+             */
+            return;
+        }
+
+        /*
+         * Pick the coarsest level of detail finer than a pixel
+         */
+        int level[] = null;
+        int levelSize = 0;
+        if(null != mLevels) {
+            double perPixel = Math.abs(origin.getLatitudeOf(1) - origin.getLatitudeOf(0));
+            for(int l = LEVEL_TOLERANCE.length - 1; l >= 0; l--) {
+                if(LEVEL_TOLERANCE[l] <= perPixel) {
+                    level = mLevels[l];
+                    levelSize = mLevelSize[l];
+                    break;
+                }
+            }
+        }
+        int num = null == level ? mNum : levelSize + mNum - mLevelNum;
+
         float x = (float)origin.getOffsetX(mLonMin);
         float y = (float)origin.getOffsetY(mLatMax);
         float sx = scale.getScaleFactor();
@@ -113,69 +237,216 @@ public abstract class Shape {
         float facy = sy / (float)movement.getLatitudePerPixel();
         
         /*
-         * Do a tab on top of shape
+         * Make screen lines of segments in view
          */
+        if(mLines.length < (num - 1) * 4) {
+            mLines = new float[num * 4];
+            mLineSegment = new int[num];
+            mLineEnd = new int[num];
+        }
+        int lines = 0;
+        int next = null == level ? 0 : level[0];
+        for(int point = 0; point < (num - 1); point++) {
+            int coord = next;
+            if(null == level) {
+                next = point + 1;
+            }
+            else {
+                next = point + 1 < levelSize ? level[point + 1] : mLevelNum + point + 1 - levelSize;
+            }
+            double lon1 = mLon[coord];
+            double lon2 = mLon[next];
+            double lat1 = mLat[coord];
+            double lat2 = mLat[next];
+            if((lon1 < viewLonMin && lon2 < viewLonMin) || (lon1 > viewLonMax && lon2 > viewLonMax) ||
+                    (lat1 < viewLatMin && lat2 < viewLatMin) || (lat1 > viewLatMax && lat2 > viewLatMax)) {
+                continue;
+            }
+            int index = lines * 4;
+            mLines[index]     = x + (float)(lon1 - mLonMin) * facx;
+            mLines[index + 1] = y + (float)(lat1 - mLatMax) * facy;
+            mLines[index + 2] = x + (float)(lon2 - mLonMin) * facx;
+            mLines[index + 3] = y + (float)(lat2 - mLatMax) * facy;
+            mLineSegment[lines] = coord;
+            mLineEnd[lines] = next;
+            lines++;
+        }
+        if(0 == lines) {
+            return;
+        }
+        
+        // TrackShape type is used for a flight plan destination
+        if (!(this instanceof TrackShape)) {
+            c.drawLines(mLines, 0, lines * 4, paint);
+            return;
+        }
+
+        float width = paint.getStrokeWidth();
+        int color = paint.getColor();
+
+        if(drawTrack) {
+            /*
+             * Draw background on track shapes, so draw twice
+             */
+            paint.setStrokeWidth(width + 4);
+            paint.setColor(night? Color.WHITE : Color.BLACK);
+            c.drawLines(mLines, 0, lines * 4, paint);
+            paint.setStrokeWidth(width);
+
+            if(null == plan) {
+                paint.setColor(color);
+                c.drawLines(mLines, 0, lines * 4, paint);
+            }
+            else {
+                /*
+                 * One call for each run of lines of same color
+                 */
+                int nextLeg = plan.findNextNotPassed();
+                int start = 0;
+                int runColor = TrackShape.getLegColor(nextLeg, mLeg[mLineSegment[0]]);
+                for(int line = 1; line <= lines; line++) {
+                    int lineColor = line < lines ? TrackShape.getLegColor(nextLeg, mLeg[mLineSegment[line]]) : runColor;
+                    if(line == lines || lineColor != runColor) {
+                        paint.setColor(runColor);
+                        c.drawLines(mLines, start * 4, (line - start) * 4, paint);
+                        start = line;
+                        runColor = lineColor;
+                    }
+                }
+            }
+        }
+        
         /*
          * Draw pivots at end of track
          */
-        float width = paint.getStrokeWidth();
-        int color = paint.getColor();
+        for(int line = 0; line < lines; line++) {
+            int coord = mLineSegment[line];
+            if(mSeparate[mLineEnd[line]]) {
+                drawPivot(c, paint, night, mLines[line * 4 + 2], mLines[line * 4 + 3]);
+            }
+            if(mSeparate[coord]) {
+                drawPivot(c, paint, night, mLines[line * 4], mLines[line * 4 + 1]);
+            }
+        }
+        paint.setColor(color);
+    }
+    
+    /**
+     * Make levels of detail from all points added so far.
+     * Each point gets the tolerance at which Douglas-Peucker would keep it, and a level
+     * is the points kept at the tolerance of that level.
+     */
+    public void makeLevels() {
+        int num = mNum;
+        if(num < 3) {
+            mLevels = null;
+            mLevelNum = num;
+            return;
+        }
         
-        // TrackShape type is used for a flight plan destination
-        if (this instanceof TrackShape) {
+        /*
+         * Longitude shrinks with latitude, measure in degrees of latitude
+         */
+        double cos = Math.cos(Math.toRadians((mLatMin + mLatMax) / 2));
+        
+        double keep[] = new double[num];
+        keep[0] = Double.MAX_VALUE;
+        keep[num - 1] = Double.MAX_VALUE;
+        int stack[] = new int[num * 2];
+        double stackKeep[] = new double[num];
+        stack[0] = 0;
+        stack[1] = num - 1;
+        stackKeep[0] = Double.MAX_VALUE;
+        int top = 1;
+        while(top > 0) {
+            top--;
+            int first = stack[top * 2];
+            int last = stack[top * 2 + 1];
+            double parent = stackKeep[top];
+            if(last - first < 2) {
+                continue;
+            }
             
             /*
-             * Draw background on track shapes, so draw twice
+             * Farthest point from line first-last
              */
-        	int cMax = getNumCoords();
-            for(int coord = 0; coord < (cMax - 1); coord++) {
-                float x1 = x + (float)(mCoords.get(coord).getLongitude() - mLonMin) * facx;
-                float x2 = x + (float)(mCoords.get(coord + 1).getLongitude() - mLonMin) * facx;
-                float y1 = y + (float)(mCoords.get(coord).getLatitude() - mLatMax) * facy;
-                float y2 = y + (float)(mCoords.get(coord + 1).getLatitude() - mLatMax) * facy;
-
-                if(drawTrack) {
-	                paint.setStrokeWidth(width + 4);
-	                paint.setColor(night? Color.WHITE : Color.BLACK);
-	                c.drawLine(x1, y1, x2, y2, paint);
-	                paint.setStrokeWidth(width);
-
-	                if(null == plan) {
-	                	paint.setColor(color);
-	                } else {
-	                	paint.setColor(TrackShape.getLegColor(plan.findNextNotPassed(), mCoords.get(coord).getLeg()));
-	                }
-
-	                c.drawLine(x1, y1, x2, y2, paint);
+            double ax = mLon[first] * cos;
+            double ay = mLat[first];
+            double dx = mLon[last] * cos - ax;
+            double dy = mLat[last] - ay;
+            double len = dx * dx + dy * dy;
+            int far = first + 1;
+            double farDist = -1;
+            for(int i = first + 1; i < last; i++) {
+                double px = mLon[i] * cos - ax;
+                double py = mLat[i] - ay;
+                double dist;
+                if(len <= 0) {
+                    dist = px * px + py * py;
                 }
-
-				if(mCoords.get(coord + 1).isSeparate()) {
-                    paint.setColor(night? Color.WHITE : Color.BLACK);
-                    c.drawCircle(x2, y2, 10, paint);
-                    paint.setColor(Color.GREEN);
-                    c.drawCircle(x2, y2, 8, paint);
-                    paint.setColor(color);
+                else {
+                    double t = (px * dx + py * dy) / len;
+                    t = t < 0 ? 0 : (t > 1 ? 1 : t);
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    dist = ex * ex + ey * ey;
                 }
-                if(mCoords.get(coord).isSeparate()) {
-                    paint.setColor(night? Color.WHITE : Color.BLACK);
-                    c.drawCircle(x1, y1, 10, paint);
-                    paint.setColor(Color.GREEN);
-                    c.drawCircle(x1, y1, 8, paint);
-                    paint.setColor(color);
+                if(dist > farDist) {
+                    farDist = dist;
+                    far = i;
                 }
             }
-        } else {
+            
             /*
-             * Draw the shape segment by segment
+             * A point is never kept at a larger tolerance than the point that split its parent
              */
-            for(int coord = 0; coord < (getNumCoords() - 1); coord++) {
-                float x1 = x + (float)(mCoords.get(coord).getLongitude() - mLonMin) * facx;
-                float x2 = x + (float)(mCoords.get(coord + 1).getLongitude() - mLonMin) * facx;
-                float y1 = y + (float)(mCoords.get(coord).getLatitude() - mLatMax) * facy;
-                float y2 = y + (float)(mCoords.get(coord + 1).getLatitude() - mLatMax) * facy;
-                c.drawLine(x1, y1, x2, y2, paint);
+            keep[far] = Math.min(Math.sqrt(farDist), parent);
+            stack[top * 2] = first;
+            stack[top * 2 + 1] = far;
+            stackKeep[top] = keep[far];
+            top++;
+            stack[top * 2] = far;
+            stack[top * 2 + 1] = last;
+            stackKeep[top] = keep[far];
+            top++;
+        }
+        
+        int levels[][] = new int[LEVEL_TOLERANCE.length][];
+        int sizes[] = new int[LEVEL_TOLERANCE.length];
+        for(int l = 0; l < LEVEL_TOLERANCE.length; l++) {
+            int size = 0;
+            for(int i = 0; i < num; i++) {
+                if(keep[i] >= LEVEL_TOLERANCE[l]) {
+                    size++;
+                }
+            }
+            levels[l] = new int[size];
+            size = 0;
+            for(int i = 0; i < num; i++) {
+                if(keep[i] >= LEVEL_TOLERANCE[l]) {
+                    levels[l][size++] = i;
+                }
             }
+            sizes[l] = size;
         }
+        mLevels = levels;
+        mLevelSize = sizes;
+        mLevelNum = num;
+    }
+    
+    /**
+     * 
+     * @param c
+     * @param paint
+     * @param night
+     * @param x
+     * @param y
+     */
+    private static void drawPivot(Canvas c, Paint paint, boolean night, float x, float y) {
+        paint.setColor(night? Color.WHITE : Color.BLACK);
+        c.drawCircle(x, y, 10, paint);
+        paint.setColor(Color.GREEN);
+        c.drawCircle(x, y, 8, paint);
     }
     
     /**
@@ -183,7 +454,25 @@ public abstract class Shape {
      * @return
      */
     public int getNumCoords() {
-        return mCoords.size();
+        return mNum;
+    }
+
+    /**
+     * 
+     * @param index
+     * @return
+     */
+    public double getLongitude(int index) {
+        return mLon[index];
+    }
+
+    /**
+     * 
+     * @param index
+     * @return
+     */
+    public double getLatitude(int index) {
+        return mLat[index];
     }
 
     /**
@@ -194,6 +483,16 @@ public abstract class Shape {
         return mLatMin;
     }
     
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public String getText() {
+        return mText;
+    }
+
     /**
      * 
      * @param lon
@@ -201,21 +500,130 @@ public abstract class Shape {
      * @return
      */
     public String getTextIfTouched(double lon, double lat) {
-        if(null == mPoly) {
-            return null;
-        }
-        if(mPoly.contains(new Point((float)lon, (float)lat))) {
+        if(contains(lon, lat)) {
             return mText;
         }
         return null;
     }
     
     /**
-     * 
+     * Is the point inside the polygon made with makePolygon()
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public boolean contains(double lon, double lat) {
+        if(null == mPolyLon) {
+            return false;
+        }
+        if(lon < mLonMin || lon > mLonMax || lat < mLatMin || lat > mLatMax) {
+            return false;
+        }
+        
+        /*
+         * Count edges crossed by a ray going east from the point
+         */
+        float x = (float)lon;
+        float y = (float)lat;
+        boolean inside = false;
+        for(int i = 0, j = mPolyNum - 1; i < mPolyNum; j = i++) {
+            float yi = mPolyLat[i];
+            float yj = mPolyLat[j];
+            if((yi > y) != (yj > y)) {
+                float xi = mPolyLon[i];
+                float xj = mPolyLon[j];
+                if(x < xi + (y - yi) * (xj - xi) / (yj - yi)) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+    
+    /**
+     * Does the line cross the polygon made with makePolygon(), or is it inside it
+     * @param lon1
+     * @param lat1
+     * @param lon2
+     * @param lat2
+     * @return
+     */
+    public boolean intersects(double lon1, double lat1, double lon2, double lat2) {
+        if(null == mPolyLon) {
+            return false;
+        }
+        if(Math.max(lon1, lon2) < mLonMin || Math.min(lon1, lon2) > mLonMax ||
+                Math.max(lat1, lat2) < mLatMin || Math.min(lat1, lat2) > mLatMax) {
+            return false;
+        }
+        if(contains(lon1, lat1) || contains(lon2, lat2)) {
+            return true;
+        }
+        
+        /*
+         * Line crosses an edge if ends of each are on opposite sides of the other
+         */
+        double dx = lon2 - lon1;
+        double dy = lat2 - lat1;
+        for(int i = 0, j = mPolyNum - 1; i < mPolyNum; j = i++) {
+            double ax = mPolyLon[j];
+            double ay = mPolyLat[j];
+            double bx = mPolyLon[i];
+            double by = mPolyLat[i];
+            double s1 = dx * (ay - lat1) - dy * (ax - lon1);
+            double s2 = dx * (by - lat1) - dy * (bx - lon1);
+            if((s1 > 0) == (s2 > 0)) {
+                continue;
+            }
+            double ex = bx - ax;
+            double ey = by - ay;
+            double s3 = ex * (lat1 - ay) - ey * (lon1 - ax);
+            double s4 = ex * (lat2 - ay) - ey * (lon2 - ax);
+            if((s3 > 0) != (s4 > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Make a closed polygon of the points added so far, for touch
      */
     public void makePolygon() {
-        if(getNumCoords() > 2) {
-            mPoly = mPolyBuilder.build();
+        if(mNum > 2) {
+            float lon[] = new float[mNum];
+            float lat[] = new float[mNum];
+            for(int i = 0; i < mNum; i++) {
+                lon[i] = (float)mLon[i];
+                lat[i] = (float)mLat[i];
+            }
+            mPolyLon = lon;
+            mPolyLat = lat;
+            mPolyNum = mNum;
         }
     } 
+
+    /**
+     * 
+     * @return
+     */
+    public double getLongitudeMinimum() {
+        return mLonMin;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public double getLongitudeMaximum() {
+        return mLonMax;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public double getLatitudeMaximum() {
+        return mLatMax;
+    }
 }
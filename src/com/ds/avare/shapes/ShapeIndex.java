@@ -0,0 +1,256 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @author zkhan
+ * Grid over the bounding boxes of shapes, so a touch only tests the shapes around it.
+ * Made once when a new list of shapes comes in, and not changed after.
+ */
+public class ShapeIndex<T extends Shape> {
+
+    /*
+     * Most cells in grid
+     */
+    private static final int MAX_CELLS = 4096;
+    
+    /*
+     * Smallest cell in degrees
+     */
+    private static final double MIN_CELL = 0.25;
+
+    private Object mShapes[];
+    private double mLonMin;
+    private double mLatMin;
+    private double mCell;
+    private int mCols;
+    private int mRows;
+    
+    /*
+     * Shapes of cell c are mItems[mStart[c]] to mItems[mStart[c + 1] - 1], in list order
+     */
+    private int mStart[];
+    private int mItems[];
+    
+    /**
+     * 
+     * @param shapes
+     */
+    public ShapeIndex(List<T> shapes) {
+        int num = 0;
+        mShapes = new Object[null == shapes ? 0 : shapes.size()];
+        double lonMin = 180;
+        double lonMax = -180;
+        double latMin = 90;
+        double latMax = -90;
+        if(null != shapes) {
+            for(T shape : shapes) {
+                if(null == shape || shape.getNumCoords() < 1) {
+                    continue;
+                }
+                mShapes[num++] = shape;
+                lonMin = Math.min(lonMin, shape.getLongitudeMinimum());
+                lonMax = Math.max(lonMax, shape.getLongitudeMaximum());
+                latMin = Math.min(latMin, shape.getLatitudeMinimum());
+                latMax = Math.max(latMax, shape.getLatitudeMaximum());
+            }
+        }
+        
+        if(0 == num) {
+            mCols = 0;
+            mRows = 0;
+            mStart = new int[1];
+            mItems = new int[0];
+            return;
+        }
+        
+        mLonMin = lonMin;
+        mLatMin = latMin;
+        mCell = Math.max(MIN_CELL, Math.sqrt((lonMax - lonMin) * (latMax - latMin) / MAX_CELLS));
+        mCols = Math.max(1, (int)Math.ceil((lonMax - lonMin) / mCell));
+        mRows = Math.max(1, (int)Math.ceil((latMax - latMin) / mCell));
+        while(mCols * mRows > MAX_CELLS) {
+            mCell *= 1.25;
+            mCols = Math.max(1, (int)Math.ceil((lonMax - lonMin) / mCell));
+            mRows = Math.max(1, (int)Math.ceil((latMax - latMin) / mCell));
+        }
+        
+        /*
+         * Count shapes in each cell, then fill
+         */
+        mStart = new int[mCols * mRows + 1];
+        for(int s = 0; s < num; s++) {
+            Shape shape = (Shape)mShapes[s];
+            int c0 = col(shape.getLongitudeMinimum());
+            int c1 = col(shape.getLongitudeMaximum());
+            int r0 = row(shape.getLatitudeMinimum());
+            int r1 = row(shape.getLatitudeMaximum());
+            for(int r = r0; r <= r1; r++) {
+                for(int c = c0; c <= c1; c++) {
+                    mStart[r * mCols + c + 1]++;
+                }
+            }
+        }
+        for(int c = 0; c < mCols * mRows; c++) {
+            mStart[c + 1] += mStart[c];
+        }
+        mItems = new int[mStart[mCols * mRows]];
+        int fill[] = new int[mCols * mRows];
+        for(int s = 0; s < num; s++) {
+            Shape shape = (Shape)mShapes[s];
+            int c0 = col(shape.getLongitudeMinimum());
+            int c1 = col(shape.getLongitudeMaximum());
+            int r0 = row(shape.getLatitudeMinimum());
+            int r1 = row(shape.getLatitudeMaximum());
+            for(int r = r0; r <= r1; r++) {
+                for(int c = c0; c <= c1; c++) {
+                    int cell = r * mCols + c;
+                    mItems[mStart[cell] + fill[cell]++] = s;
+                }
+            }
+        }
+    }
+
+    /**
+     * 
+     * @param lon
+     * @return
+     */
+    private int col(double lon) {
+        int c = (int)((lon - mLonMin) / mCell);
+        return c < 0 ? 0 : (c >= mCols ? mCols - 1 : c);
+    }
+
+    /**
+     * 
+     * @param lat
+     * @return
+     */
+    private int row(double lat) {
+        int r = (int)((lat - mLatMin) / mCell);
+        return r < 0 ? 0 : (r >= mRows ? mRows - 1 : r);
+    }
+
+    /**
+     * Find shapes that have the point inside them
+     * @param lon
+     * @param lat
+     * @return shapes in the order they were given
+     */
+    @SuppressWarnings("unchecked")
+    public LinkedList<T> findTouched(double lon, double lat) {
+        LinkedList<T> ret = new LinkedList<T>();
+        int cell = find(lon, lat);
+        if(cell < 0) {
+            return ret;
+        }
+        for(int i = mStart[cell]; i < mStart[cell + 1]; i++) {
+            T shape = (T)mShapes[mItems[i]];
+            if(shape.contains(lon, lat)) {
+                ret.add(shape);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Is the point inside any shape
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public boolean isInside(double lon, double lat) {
+        return null != findInside(lon, lat);
+    }
+
+    /**
+     * Find a shape that has the point inside it
+     * @param lon
+     * @param lat
+     * @return first such shape in the order they were given, or null
+     */
+    @SuppressWarnings("unchecked")
+    public T findInside(double lon, double lat) {
+        int cell = find(lon, lat);
+        if(cell < 0) {
+            return null;
+        }
+        for(int i = mStart[cell]; i < mStart[cell + 1]; i++) {
+            T shape = (T)mShapes[mItems[i]];
+            if(shape.contains(lon, lat)) {
+                return shape;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find a shape that the line crosses or is in
+     * @param lon1
+     * @param lat1
+     * @param lon2
+     * @param lat2
+     * @return first such shape in the order they were given, or null
+     */
+    @SuppressWarnings("unchecked")
+    public T findCrossing(double lon1, double lat1, double lon2, double lat2) {
+        double lonMin = Math.min(lon1, lon2);
+        double lonMax = Math.max(lon1, lon2);
+        double latMin = Math.min(lat1, lat2);
+        double latMax = Math.max(lat1, lat2);
+        if(0 == mCols || lonMax < mLonMin || latMax < mLatMin ||
+                lonMin > mLonMin + mCols * mCell || latMin > mLatMin + mRows * mCell) {
+            return null;
+        }
+        int best = -1;
+        int c1 = col(lonMax);
+        int r1 = row(latMax);
+        for(int r = row(latMin); r <= r1; r++) {
+            for(int c = col(lonMin); c <= c1; c++) {
+                int cell = r * mCols + c;
+                for(int i = mStart[cell]; i < mStart[cell + 1]; i++) {
+                    int item = mItems[i];
+                    if(best >= 0 && item >= best) {
+                        /*
+                         * Items are in order in a cell
+                         */
+                        break;
+                    }
+                    if(((Shape)mShapes[item]).intersects(lon1, lat1, lon2, lat2)) {
+                        best = item;
+                        break;
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : (T)mShapes[best];
+    }
+
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @return cell of point, or -1 if outside the grid
+     */
+    private int find(double lon, double lat) {
+        if(0 == mCols || lon < mLonMin || lat < mLatMin ||
+                lon > mLonMin + mCols * mCell || lat > mLatMin + mRows * mCell) {
+            return -1;
+        }
+        return row(lat) * mCols + col(lon);
+    }
+}
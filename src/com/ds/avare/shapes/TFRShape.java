@@ -20,10 +20,80 @@ package com.ds.avare.shapes;
  */
 public class TFRShape extends Shape {
 
+    /*
+     * Unknown altitude or time
+     */
+    public static final int ALTITUDE_UNKNOWN = -1;
+    public static final long TIME_UNKNOWN = 0;
+
+    private int mTop;
+    private int mBottom;
+    private long mEffective;
+    private long mExpires;
+
     /**
      * 
      */
     public TFRShape(String text) {
         super(text);
+        mTop = ALTITUDE_UNKNOWN;
+        mBottom = ALTITUDE_UNKNOWN;
+        mEffective = TIME_UNKNOWN;
+        mExpires = TIME_UNKNOWN;
     }    
+
+    /**
+     * 
+     * @param top feet, ALTITUDE_UNKNOWN if not known
+     * @param bottom feet, ALTITUDE_UNKNOWN if not known
+     * @param effective ms UTC, TIME_UNKNOWN if not known
+     * @param expires ms UTC, TIME_UNKNOWN if not known
+     */
+    public void setLimits(int top, int bottom, long effective, long expires) {
+        mTop = top;
+        mBottom = bottom;
+        mEffective = effective;
+        mExpires = expires;
+    }
+
+    /**
+     * 
+     * @return feet
+     */
+    public int getTop() {
+        return mTop;
+    }
+
+    /**
+     * 
+     * @return feet
+     */
+    public int getBottom() {
+        return mBottom;
+    }
+
+    /**
+     * 
+     * @return ms UTC
+     */
+    public long getEffective() {
+        return mEffective;
+    }
+
+    /**
+     * 
+     * @return ms UTC
+     */
+    public long getExpires() {
+        return mExpires;
+    }
+
+    /**
+     * 
+     * @param now ms UTC
+     * @return true only if expiry time is known and passed
+     */
+    public boolean isExpired(long now) {
+        return mExpires != TIME_UNKNOWN && mExpires < now;
+    }
 }
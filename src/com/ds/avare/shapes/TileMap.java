@@ -14,6 +14,7 @@ package com.ds.avare.shapes;
 
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
+import com.ds.avare.utils.BitmapPool;
 
 import android.content.Context;
 import android.graphics.Color;
@@ -21,12 +22,19 @@ import android.view.Display;
 import android.view.WindowManager;
 
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 /**
  * 
  * @author zkhan, SteveAtChartbundle
- * A cache of tiles
+ * A cache of tiles.
+ * Tiles are decoded on a pool of threads, closest to the aircraft first, and each shows as soon as it is decoded.
+ * More tiles are kept than are on screen, and the least recently used of them are decoded over first.
  */
 public class TileMap {
 
@@ -45,6 +53,36 @@ public class TileMap {
     
     private BitmapHolder[] mBitmapCache;
     private BitmapHolder[] mFreeList;
+
+    /*
+     * Decoders
+     */
+    private ExecutorService mDecoder;
+    private BitmapPool mPool;
+    private LinkedList<Future<?>> mJobs;
+
+    /*
+     * Changes on every reload, so decodes for an old set of tiles know to stop
+     */
+    private volatile int mGeneration;
+
+    /*
+     * Decodes submitted but not done yet
+     */
+    private int mPending;
+
+    /*
+     * Count of reloads, to find least recently used tiles
+     */
+    private long mReloads;
+
+    /**
+     * Told when a tile has been decoded and is ready to draw
+     */
+    public interface TileListener {
+        void tileLoaded();
+    }
+
     /**
      * 
      * @param x
@@ -62,7 +100,7 @@ public class TileMap {
         mXtiles = tilesdim[0];
         mYtiles = tilesdim[1];
         numTiles = mXtiles * mYtiles;
-        numTilesMax = mXtiles * mYtiles;
+        numTilesMax = numTiles + Preferences.getTilesCacheNumber();
         mapA = new BitmapHolder[numTiles];
         mapB = new BitmapHolder[numTiles];
         mBitmapCache = new BitmapHolder[numTilesMax];
@@ -70,6 +108,25 @@ public class TileMap {
         for(int tile = 0; tile < numTilesMax; tile++) {
             mBitmapCache[tile] = new BitmapHolder();
         }
+
+        /*
+         * Leave one core for UI, at least two decoders, and no more than four as tiles come from flash
+         */
+        int threads = Runtime.getRuntime().availableProcessors() - 1;
+        threads = Math.max(2, Math.min(4, threads));
+        mDecoder = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "TileDecode");
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        });
+        mJobs = new LinkedList<Future<?>>();
+        mPool = new BitmapPool(threads);
+        mGeneration = 0;
+        mPending = 0;
+        mReloads = 0;
     }
 
     /**
@@ -85,6 +142,10 @@ public class TileMap {
      * Force a reload.
      */
     public void forceReload() {
+        /*
+         * Decodes in progress must not mark their tiles loaded
+         */
+        mGeneration++;
         for(int tile = 0; tile < numTilesMax; tile++) {
             if(mBitmapCache[tile] != null) {
                 if(mBitmapCache[tile].getName() != null) {
@@ -94,19 +155,51 @@ public class TileMap {
         }
     }
 
+    /**
+     * Stop all decodes of the last reload, and wait for the ones running to let go of their bitmaps
+     * @throws InterruptedException
+     */
+    private void cancel() throws InterruptedException {
+        mGeneration++;
+        synchronized(this) {
+            for(Future<?> f : mJobs) {
+                if(f.cancel(false)) {
+                    mPending--;
+                }
+            }
+            mJobs.clear();
+            while(mPending > 0) {
+                wait();
+            }
+        }
+    }
+
     /**
      * 
      * When a new string of names are available for a new region, reload
      * will load and reuse older tiles.
+     * Tiles not already loaded are left empty and decoded in background, closest to focus tile first.
+     * Tiles just off screen are decoded after that in spare bitmaps so they are ready when we get there.
      * 
-     * @param name
-     * @return
+     * @param tileNames
+     * @param prefetchNames tiles off screen that will likely be needed next, can be null
+     * @param focusx column of tile the aircraft is on, can be outside the grid
+     * @param focusy row of tile the aircraft is on, can be outside the grid
+     * @param listener called from decode threads when a tile is ready
      * @throws InterruptedException 
      */
-    public void reload(String[] tileNames) throws InterruptedException {
+    public void reload(String[] tileNames, String[] prefetchNames, int focusx, int focusy, TileListener listener)
+            throws InterruptedException {
+        
+        /*
+         * Bitmaps of last reload are all ours after this
+         */
+        cancel();
+        mReloads++;
+        
     	HashMap<String,BitmapHolder> hm = new HashMap<String,BitmapHolder> ();
     	int freeIndex = 0;
-        mapB = new BitmapHolder[numTiles];
+        BitmapHolder[] map = new BitmapHolder[numTiles];
         /* 
          * Initial setup, mark all as candidates for the freelist.
          * Next section will mark the used ones.
@@ -129,70 +222,176 @@ public class TileMap {
         	/* 
         	 * Setup for later mark as not free.
         	 */
-            mapB[tilen] = hm.get(tileNames[tilen]);
-            if (mapB[tilen] != null) {
-            	mapB[tilen].setFree(false);
+            map[tilen] = hm.get(tileNames[tilen]);
+            if (map[tilen] != null) {
+            	map[tilen].setFree(false);
+            	map[tilen].setUsed(mReloads);
+            }
+        }
+        /*
+         * Tiles to prefetch that are already in cache are kept a while longer
+         */
+        int toPrefetch = 0;
+        String prefetch[] = new String[null == prefetchNames ? 0 : prefetchNames.length];
+        for(int tilen = 0; tilen < prefetch.length; tilen++) {
+            if(null == prefetchNames[tilen]) {
+                continue;
+            }
+            BitmapHolder h = hm.get(prefetchNames[tilen]);
+            if(null != h) {
+                if(h.getFree()) {
+                    h.setUsed(mReloads - 1);
+                }
+                continue;
             }
+            prefetch[toPrefetch++] = prefetchNames[tilen];
         }
         /*
-         * Build the list of free tiles based on the flags
+         * Build the list of free tiles based on the flags.
+         * Least recently used, or empty, at the end so they are taken first.
          */
         for (int tilen = 0 ; tilen < numTilesMax ; tilen++ ) {
         	if (mBitmapCache[tilen] != null && mBitmapCache[tilen].getFree()) {
-        		mFreeList[freeIndex] = mBitmapCache[tilen];
-        		freeIndex++;
+        	    BitmapHolder h = mBitmapCache[tilen];
+        	    long used = null == h.getName() ? Long.MIN_VALUE : h.getUsed();
+        	    int i = freeIndex++;
+        	    while(i > 0 && (null == mFreeList[i - 1].getName() ? Long.MIN_VALUE : mFreeList[i - 1].getUsed()) < used) {
+        	        mFreeList[i] = mFreeList[i - 1];
+        	        i--;
+        	    }
+        		mFreeList[i] = h;
         	}
         }
 
         /*
-         * For all tiles that will be loaded.
+         * Tiles to decode, closest to focus first
          */
+        int order[] = new int[numTiles];
+        int dist[] = new int[numTiles];
+        int toLoad = 0;
         for(int tilen = 0; tilen < numTiles; tilen++) {
-            
-            /*
-             * Move beyond the move? interrupt.
-             */
-            if(Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            
-            if(null == tileNames[tilen]) {
+            if(null == tileNames[tilen] || null != map[tilen]) {
                 /*
-                 * Map out?
+                 * Map out, or reused
                  */
                 continue;
             }
-            
-            if(null != mapB[tilen]) {
+            int dx = tilen % mXtiles - focusx;
+            int dy = tilen / mXtiles - focusy;
+            int d = dx * dx + dy * dy;
+            int i = toLoad++;
+            while(i > 0 && dist[i - 1] > d) {
+                order[i] = order[i - 1];
+                dist[i] = dist[i - 1];
+                i--;
+            }
+            order[i] = tilen;
+            dist[i] = d;
+        }
+
+        /*
+         * Move beyond the move? interrupt.
+         */
+        if(Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        int generation = mGeneration;
+        synchronized(this) {
+            mapB = map;
+            for(int i = 0; i < toLoad; i++) {
                 /*
-                 * This is reused
+                 * Pull a free bitmap off the list
                  */
-                continue;
+                BitmapHolder h = null;
+                if (freeIndex > 0 ) {
+                    freeIndex--;
+                    h = mFreeList[freeIndex];
+                }
+                if(null == h) {
+                    break;
+                }
+                /*
+                 * Not valid till decoded
+                 */
+                h.drawInBitmap(null, null, 0, 0);
+                h.setUsed(mReloads);
+                mPending++;
+                mJobs.add(mDecoder.submit(new Decode(map, order[i], tileNames[order[i]], h, generation, listener)));
             }
+
             /*
-             * Pull a free bitmap off the list
+             * Queued after all tiles on screen
              */
-            BitmapHolder h = null;
-            if (freeIndex > 0 ) {
-            	freeIndex--;
-            	h = mFreeList[freeIndex];
+            for(int i = 0; i < toPrefetch && freeIndex > 0; i++) {
+                freeIndex--;
+                BitmapHolder h = mFreeList[freeIndex];
+                h.drawInBitmap(null, null, 0, 0);
+                h.setUsed(mReloads - 1);
+                mPending++;
+                mJobs.add(mDecoder.submit(new Decode(null, 0, prefetch[i], h, generation, null)));
             }
-            if(h != null) {
+        }
+    }
+
+    /**
+     * Decode one tile into its cache bitmap, then put it in the map, if any
+     */
+    private class Decode implements Runnable {
+        private BitmapHolder[] mMap;
+        private int mTile;
+        private String mName;
+        private BitmapHolder mHolder;
+        private int mGen;
+        private TileListener mListener;
+
+        private Decode(BitmapHolder[] map, int tile, String name, BitmapHolder h, int generation, TileListener listener) {
+            mMap = map;
+            mTile = tile;
+            mName = name;
+            mHolder = h;
+            mGen = generation;
+            mListener = listener;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(mGen != mGeneration) {
+                    return;
+                }
                 /*
-                 * At max scale, down sample by down sampling 
+                 * Straight into the cache bitmap
                  */
-                BitmapHolder b = new BitmapHolder(mContext, mPref, tileNames[tilen], 1);
-                if(b.getBitmap() == null) {
-                    h.setFound(false);
+                boolean found = mHolder.decodeInBitmap(mPref, mName, mPool);
+                mHolder.setFound(found);
+                if(!found) {
+                    mHolder.getBitmap().eraseColor(Color.GRAY);
+                    mHolder.drawInBitmap(null, mName, 0, 0);
+                }
+                synchronized(TileMap.this) {
+                    if(mGen != mGeneration) {
+                        /*
+                         * Stale, do not let it be reused with half a reload behind it
+                         */
+                        mHolder.drawInBitmap(null, null, 0, 0);
+                        return;
+                    }
+                    if(null != mMap) {
+                        mMap[mTile] = mHolder;
+                    }
+                }
+                if(null != mListener) {
+                    mListener.tileLoaded();
                 }
-                else {
-                    h.setFound(true);
+            }
+            catch(Exception e) {
+            }
+            finally {
+                synchronized(TileMap.this) {
+                    mPending--;
+                    TileMap.this.notifyAll();
                 }
-                h.getBitmap().eraseColor(Color.GRAY);
-                h.drawInBitmap(b, tileNames[tilen], 0, 0);
-                b.recycle();
-                b = null;
-                mapB[tilen] = h;
             }
         }
     }
@@ -200,7 +399,7 @@ public class TileMap {
     /**
      * Call this from UI thread so that tiles can be flipped without tear
      */
-    public void flip() {
+    public synchronized void flip() {
         mapA = mapB;
     }
     
@@ -208,12 +407,27 @@ public class TileMap {
      * 
      */
     public void recycleBitmaps() {
+        try {
+            cancel();
+        }
+        catch (InterruptedException e) {
+        }
+        mDecoder.shutdownNow();
+        mPool.clear();
         for(int tile = 0; tile < numTilesMax; tile++) {
             mBitmapCache[tile].recycle();
             mBitmapCache[tile] = null;
         }
     }
     
+    /**
+     * 
+     * @return
+     */
+    public String getPoolStats() {
+        return mPool.getStats();
+    }
+
     /**
      * 
      * @return
@@ -243,7 +457,7 @@ public class TileMap {
      * @param tile
      * @return
      */
-    public BitmapHolder getTile(int tile) {
+    public synchronized BitmapHolder getTile(int tile) {
         return mapA[tile];
     }
     
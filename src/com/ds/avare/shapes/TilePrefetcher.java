@@ -0,0 +1,247 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import com.ds.avare.place.Plan;
+import com.ds.avare.position.Coordinate;
+import com.ds.avare.position.Projection;
+import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.JobScheduler;
+
+import android.content.Context;
+import android.os.Process;
+
+/**
+ * @author zkhan
+ * Reads chart tiles on the active plan ahead of the aircraft, so they are in the file system cache
+ * by the time the tile map needs to decode them.
+ * Runs at lowest priority and starts over whenever it is given a new position.
+ * Only one request runs at a time, so tiles read are not locked.
+ */
+public class TilePrefetcher extends JobScheduler.Job {
+
+    /*
+     * How far ahead to look, in hours at current speed
+     */
+    private static final double HORIZON_HOURS = 1;
+
+    /*
+     * Slowest speed to plan with, so the horizon is not empty on ground
+     */
+    private static final double MIN_SPEED = 60;
+
+    /*
+     * Distance between points where tile is looked up, in degrees. Less than a tile.
+     */
+    private static final double STEP = 0.05;
+
+    /*
+     * Most tiles to read on one go
+     */
+    private static final int MAX_TILES = 256;
+
+    private Preferences mPref;
+    private byte mBuffer[];
+
+    /*
+     * Tiles read already, so these are not read again for the same plan and level
+     */
+    private HashSet<String> mRead;
+    private int mReadLevel;
+
+    /**
+     * Where we are, to look ahead from
+     */
+    public static class Request {
+        private DataSource mDataSource;
+        private Plan mPlan;
+        private double mLon;
+        private double mLat;
+        private double mSpeed;
+        private int mLevel;
+
+        /**
+         * 
+         * @param dataSource
+         * @param plan
+         * @param lon
+         * @param lat
+         * @param speed
+         * @param level zoom level of tiles
+         */
+        public Request(DataSource dataSource, Plan plan, double lon, double lat, double speed, int level) {
+            mDataSource = dataSource;
+            mPlan = plan;
+            mLon = lon;
+            mLat = lat;
+            mSpeed = speed;
+            mLevel = level;
+        }
+    }
+
+    /**
+     * 
+     * @param context
+     */
+    public TilePrefetcher(Context context) {
+        mPref = new Preferences(context);
+        mBuffer = new byte[64 * 1024];
+        mRead = new HashSet<String>();
+        mReadLevel = -1;
+    }
+
+    /* (non-Javadoc)
+     * @see com.ds.avare.utils.JobScheduler.Job#run(java.lang.Object)
+     */
+    @Override
+    protected Object run(Object request) throws InterruptedException {
+
+        Request r = (Request)request;
+        if(null == r.mDataSource || null == r.mPlan || !r.mPlan.isActive()) {
+            return null;
+        }
+
+        int priority = Process.getThreadPriority(Process.myTid());
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+        try {
+            if(r.mLevel != mReadLevel) {
+                mRead.clear();
+                mReadLevel = r.mLevel;
+            }
+
+            LinkedHashSet<String> names = findTiles(r.mDataSource, r.mPlan, r.mLon, r.mLat, r.mSpeed, r.mLevel);
+            for(String name : names) {
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if(mRead.contains(name)) {
+                    continue;
+                }
+                read(name);
+                mRead.add(name);
+            }
+        }
+        finally {
+            Process.setThreadPriority(priority);
+        }
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see com.ds.avare.utils.JobScheduler.Job#done(java.lang.Object)
+     */
+    @Override
+    protected void done(Object result) {
+    }
+
+    /**
+     * Tiles along the plan, from the aircraft to the horizon, in order we will get to them
+     * @return
+     */
+    private LinkedHashSet<String> findTiles(DataSource dataSource, Plan plan,
+            double lon, double lat, double speed, int level) {
+
+        LinkedHashSet<String> names = new LinkedHashSet<String>();
+        Coordinate c[] = plan.getCoordinates();
+        if(null == c) {
+            return names;
+        }
+
+        /*
+         * Closest point on the legs not flown yet
+         */
+        int leg = Math.max(0, plan.findNextNotPassed() - 1);
+        int start = -1;
+        double min = Double.MAX_VALUE;
+        for(int i = 0; i < c.length; i++) {
+            if(c[i].getLeg() < leg) {
+                continue;
+            }
+            double d = Projection.getStaticDistance(lon, lat, c[i].getLongitude(), c[i].getLatitude());
+            if(d < min) {
+                min = d;
+                start = i;
+            }
+        }
+        if(start < 0) {
+            return names;
+        }
+
+        double horizon = Math.max(speed, MIN_SPEED) * HORIZON_HOURS;
+        double lon0 = lon;
+        double lat0 = lat;
+        double flown = 0;
+        for(int i = start; i < c.length && flown < horizon && names.size() < MAX_TILES; i++) {
+            double lon1 = c[i].getLongitude();
+            double lat1 = c[i].getLatitude();
+            double deg = Math.max(Math.abs(lon1 - lon0), Math.abs(lat1 - lat0));
+            int steps = Math.max(1, (int)Math.ceil(deg / STEP));
+            for(int s = 0; s < steps && names.size() < MAX_TILES; s++) {
+                if(Thread.currentThread().isInterrupted()) {
+                    return names;
+                }
+                double plon = lon0 + (lon1 - lon0) * s / steps;
+                double plat = lat0 + (lat1 - lat0) * s / steps;
+                Tile t = dataSource.findTile(plon, plat, level);
+                if(null == t) {
+                    continue;
+                }
+                /*
+                 * Tile under the route and the ones around it that will be on screen
+                 */
+                for(int row = -1; row <= 1; row++) {
+                    for(int col = -1; col <= 1; col++) {
+                        names.add(t.getNeighbor(row, col));
+                    }
+                }
+            }
+            flown += Projection.getStaticDistance(lon0, lat0, lon1, lat1);
+            lon0 = lon1;
+            lat0 = lat1;
+        }
+        return names;
+    }
+
+    /**
+     * Read a tile file so it is cached by the file system
+     * @param name
+     */
+    private void read(String name) {
+        File f = new File(mPref.mapsFolder() + "/" + name);
+        if(!f.exists()) {
+            return;
+        }
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(f);
+            while(in.read(mBuffer) > 0) {
+            }
+        }
+        catch(Exception e) {
+        }
+        if(null != in) {
+            try {
+                in.close();
+            }
+            catch(Exception e) {
+            }
+        }
+    }
+}
@@ -74,7 +74,7 @@ public class TrackShape extends Shape {
         Projection p = new Projection(lastLon, lastLat, destLon, destLat);
         int segments = (int)p.getDistance() / MILES_PER_SEGMENT + 3; // Min 3 points
         Coordinate coord[] = p.findPoints(segments);
-        super.mCoords.clear();
+        super.clear();
         
         /*
          * Now make shape from coordinates with segments
@@ -91,7 +91,7 @@ public class TrackShape extends Shape {
      */
     public void updateShapeFromPlan(Coordinate[] coord) {
     
-        super.mCoords.clear();
+        super.clear();
         
         if(null == coord) {
             return;
@@ -0,0 +1,217 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+package com.ds.avare.storage;
+
+import java.util.Locale;
+
+import com.ds.avare.place.Obstacle;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * @author zkhan
+ * Times the queries run from GPS driven tasks, with values spliced in the SQL text as they used to be,
+ * and with bound parameters so each statement is compiled once.
+ * Positions are taken from airports in main.db so queries find what they would in flight.
+ * Run from the GPS tab when the Diagnostics preference is on.
+ */
+public class DataBaseBenchmark {
+
+    private static final String QUERY_POSITIONS = "select " + DataBaseHelper.LOCATION_ID_DB + "," +
+            DataBaseHelper.LONGITUDE_DB + "," + DataBaseHelper.LATITUDE_DB + " from " +
+            DataBaseHelper.TABLE_AIRPORTS + " limit ?;";
+
+    private static final String QUERY_DESTINATION = "select * from " + DataBaseHelper.TABLE_AIRPORTS +
+            " where " + DataBaseHelper.LOCATION_ID_DB + "==?;";
+
+    private static final String QUERY_NEAREST = "select " + DataBaseHelper.LOCATION_ID_DB +
+            ", ((" + DataBaseHelper.LONGITUDE_DB + " - ?1) * (" + DataBaseHelper.LONGITUDE_DB + " - ?1) + " +
+            "(" + DataBaseHelper.LATITUDE_DB + " - ?2) * (" + DataBaseHelper.LATITUDE_DB + " - ?2)) as dist from " +
+            DataBaseHelper.TABLE_AIRPORTS + " order by dist limit 1;";
+
+    private static final String QUERY_OBSTACLES = "select * from " + DataBaseHelper.TABLE_OBSTACLES +
+            " where (Height > ?) and " +
+            "(" + DataBaseHelper.LATITUDE_DB + " > ?) and (" + DataBaseHelper.LATITUDE_DB + " < ?) and " +
+            "(" + DataBaseHelper.LONGITUDE_DB + " > ?) and (" + DataBaseHelper.LONGITUDE_DB + " < ?);";
+
+    private static final String QUERY_TILE = "select * from files where " +
+            "((latul - ?1) > 0) and " +
+            "((latll - ?1) < 0) and " +
+            "((lonul - ?2) < 0) and " +
+            "((lonur - ?2) > 0) and " +
+            "level like '%' || ?3 || '%';";
+
+    /*
+     * Zoom level of tiles asked for
+     */
+    private static final int FACTOR = 0;
+
+    /*
+     * Altitude for obstacles
+     */
+    private static final int HEIGHT = 1500;
+
+    /*
+     * Timed rounds after the warm up, averaged
+     */
+    private static final int ROUNDS = 4;
+
+    /**
+     *
+     * @param main path of main.db
+     * @param maps path of a charts database like maps.db
+     * @param positions how many airports to query around
+     * @return rows and average time of each way for one round
+     */
+    public static String run(String main, String maps, int positions) {
+        DataBaseConnections connections = new DataBaseConnections();
+        DataBaseConnections.Connection mainConn = connections.acquire(main);
+        DataBaseConnections.Connection mapsConn = connections.acquire(maps);
+        if(null == mainConn || null == mapsConn) {
+            connections.release(mainConn);
+            connections.release(mapsConn);
+            return "Databases not found";
+        }
+
+        String ids[] = new String[positions];
+        double lon[] = new double[positions];
+        double lat[] = new double[positions];
+        int num = 0;
+        Cursor c = connections.query(main, QUERY_POSITIONS, new Object[] {positions});
+        if(null != c) {
+            try {
+                while(c.moveToNext() && num < positions) {
+                    ids[num] = c.getString(0);
+                    lon[num] = c.getDouble(1);
+                    lat[num] = c.getDouble(2);
+                    num++;
+                }
+            }
+            catch (Exception e) {
+            }
+            c.close();
+        }
+
+        SQLiteDatabase mainDb = mainConn.getDataBase();
+        SQLiteDatabase mapsDb = mapsConn.getDataBase();
+
+        /*
+         * Warm up both ways so pages are cached and classes loaded before timing,
+         * then alternate which way goes first so neither always runs on a cold or a warm cache.
+         */
+        spliced(mainDb, mapsDb, ids, lon, lat, num);
+        bound(connections, main, maps, ids, lon, lat, num);
+        int splicedRows = 0;
+        int boundRows = 0;
+        long splicedTime = 0;
+        long boundTime = 0;
+        for(int round = 0; round < ROUNDS; round++) {
+            long start;
+            if(0 == (round % 2)) {
+                start = System.nanoTime();
+                splicedRows += spliced(mainDb, mapsDb, ids, lon, lat, num);
+                splicedTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                boundRows += bound(connections, main, maps, ids, lon, lat, num);
+                boundTime += System.nanoTime() - start;
+            }
+            else {
+                start = System.nanoTime();
+                boundRows += bound(connections, main, maps, ids, lon, lat, num);
+                boundTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                splicedRows += spliced(mainDb, mapsDb, ids, lon, lat, num);
+                splicedTime += System.nanoTime() - start;
+            }
+        }
+
+        connections.release(mainConn);
+        connections.release(mapsConn);
+        connections.invalidate();
+
+        return String.format(Locale.US, "Spliced %d positions %d rows %d ms\nBound %d positions %d rows %d ms\n",
+                num, splicedRows / ROUNDS, splicedTime / ROUNDS / 1000000,
+                num, boundRows / ROUNDS, boundTime / ROUNDS / 1000000);
+    }
+
+    /**
+     * Values in the SQL text, a new statement every time
+     * @return rows read
+     */
+    private static int spliced(SQLiteDatabase mainDb, SQLiteDatabase mapsDb, String ids[], double lon[], double lat[], int num) {
+        int rows = 0;
+        for(int i = 0; i < num; i++) {
+            rows += count(mainDb.rawQuery(
+                    "select * from " + DataBaseHelper.TABLE_AIRPORTS +
+                    " where " + DataBaseHelper.LOCATION_ID_DB + "=='" + ids[i] + "';", null));
+            rows += count(mainDb.rawQuery(
+                    "select " + DataBaseHelper.LOCATION_ID_DB +
+                    ", ((" + DataBaseHelper.LONGITUDE_DB + " - " + lon[i] + ") * (" + DataBaseHelper.LONGITUDE_DB + " - " + lon[i] + ") + " +
+                    "(" + DataBaseHelper.LATITUDE_DB + " - " + lat[i] + ") * (" + DataBaseHelper.LATITUDE_DB + " - " + lat[i] + ")) as dist from " +
+                    DataBaseHelper.TABLE_AIRPORTS + " order by dist limit 1;", null));
+            rows += count(mainDb.rawQuery(
+                    "select * from " + DataBaseHelper.TABLE_OBSTACLES + " where (Height > " + (HEIGHT - (int)Obstacle.HEIGHT_BELOW) + ") and " +
+                    "(" + DataBaseHelper.LATITUDE_DB + " > " + (lat[i] - Obstacle.RADIUS) + ") and (" + DataBaseHelper.LATITUDE_DB + " < " + (lat[i] + Obstacle.RADIUS) + ") and " +
+                    "(" + DataBaseHelper.LONGITUDE_DB + " > " + (lon[i] - Obstacle.RADIUS) + ") and (" + DataBaseHelper.LONGITUDE_DB + " < " + (lon[i] + Obstacle.RADIUS) + ");", null));
+            rows += count(mapsDb.rawQuery(
+                    "select * from files where " +
+                    "((latul - " + lat[i] + ") > 0) and " +
+                    "((latll - " + lat[i] + ") < 0) and " +
+                    "((lonul - " + lon[i] + ") < 0) and " +
+                    "((lonur - " + lon[i] + ") > 0) and " +
+                    "level like '%" + FACTOR + "%';", null));
+        }
+        return rows;
+    }
+
+    /**
+     * Bound parameters, compiled once
+     * @return rows read
+     */
+    private static int bound(DataBaseConnections connections, String main, String maps,
+            String ids[], double lon[], double lat[], int num) {
+        int rows = 0;
+        for(int i = 0; i < num; i++) {
+            rows += count(connections.query(main, QUERY_DESTINATION, new Object[] {ids[i]}));
+            rows += count(connections.query(main, QUERY_NEAREST, new Object[] {lon[i], lat[i]}));
+            rows += count(connections.query(main, QUERY_OBSTACLES, new Object[] {HEIGHT - (int)Obstacle.HEIGHT_BELOW,
+                    lat[i] - Obstacle.RADIUS, lat[i] + Obstacle.RADIUS, lon[i] - Obstacle.RADIUS, lon[i] + Obstacle.RADIUS}));
+            rows += count(connections.query(maps, QUERY_TILE, new Object[] {lat[i], lon[i], Integer.toString(FACTOR)}));
+        }
+        return rows;
+    }
+
+    /**
+     * Read all rows as a task would, then close
+     * @param c
+     * @return
+     */
+    private static int count(Cursor c) {
+        int rows = 0;
+        if(null == c) {
+            return rows;
+        }
+        try {
+            while(c.moveToNext()) {
+                rows++;
+            }
+        }
+        catch (Exception e) {
+        }
+        c.close();
+        return rows;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.storage;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.os.Build;
+
+/**
+ * @author zkhan
+ * Keeps every database file open for the life of the process.
+ * A file is only re-opened when it has been replaced on disk (chart cycle download) or
+ * when invalidate() is called. Old connections are closed once the last cursor on them is closed.
+ */
+public class DataBaseConnections {
+
+    /*
+     * Compiled statements kept per database
+     */
+    private static final int SQL_CACHE_SIZE = 64;
+
+    /*
+     * Open connections by path
+     */
+    private HashMap<String, Connection> mConnections;
+
+    /*
+     * Counters by path, these survive re-opens
+     */
+    private HashMap<String, Stats> mStats;
+
+    /**
+     *
+     */
+    public DataBaseConnections() {
+        mConnections = new HashMap<String, Connection>();
+        mStats = new HashMap<String, Stats>();
+    }
+
+    /**
+     * Run a query on the database in file path.
+     * The returned cursor must be closed, which releases the connection.
+     * @param path
+     * @param statement with ? parameters
+     * @param args values of parameters, bound with their type
+     * @return null if database is not present or query failed
+     */
+    public Cursor query(String path, String statement, Object args[]) {
+        Connection conn = acquire(path);
+        if(null == conn) {
+            return null;
+        }
+
+        synchronized(this) {
+            conn.mStats.mQueries++;
+        }
+
+        Cursor c = null;
+        try {
+            c = conn.mDataBase.rawQueryWithFactory(new BindingCursorFactory(args), statement, null, null);
+        }
+        catch (Exception e) {
+            c = null;
+        }
+
+        if(null == c) {
+            release(conn);
+            return null;
+        }
+        return new ConnectionCursor(c, conn);
+    }
+
+    /**
+     * Get the open database for path, opening or re-opening it as needed.
+     * The connection must be given back with release()
+     * @param path
+     * @return
+     */
+    public synchronized Connection acquire(String path) {
+        File f = new File(path);
+        Connection conn = mConnections.get(path);
+
+        if(!f.exists()) {
+            /*
+             * Deleted. Let go of it.
+             */
+            if(null != conn) {
+                retire(conn);
+                mConnections.remove(path);
+            }
+            return null;
+        }
+
+        if(null != conn) {
+            if(conn.mModified != f.lastModified() || conn.mLength != f.length() || !conn.mDataBase.isOpen()) {
+                /*
+                 * File was swapped underneath us, open it again
+                 */
+                retire(conn);
+                mConnections.remove(path);
+                conn = null;
+            }
+        }
+
+        if(null == conn) {
+            SQLiteDatabase db;
+            try {
+                db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY |
+                        SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            }
+            catch(RuntimeException e) {
+                return null;
+            }
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                /*
+                 * Every query shape of a database should stay compiled
+                 */
+                db.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+            }
+            conn = new Connection(path, db, f.lastModified(), f.length());
+            mConnections.put(path, conn);
+        }
+
+        conn.mUsers++;
+        return conn;
+    }
+
+    /**
+     * Give back a connection taken with acquire()
+     * @param conn
+     */
+    public synchronized void release(Connection conn) {
+        if(null == conn) {
+            return;
+        }
+        conn.mUsers--;
+        if(conn.mRetired && conn.mUsers <= 0) {
+            close(conn);
+        }
+    }
+
+    /**
+     * Close all connections, for instance when charts are being downloaded.
+     * Connections in use are closed when their last cursor is closed.
+     */
+    public synchronized void invalidate() {
+        Iterator<Connection> it = mConnections.values().iterator();
+        while(it.hasNext()) {
+            retire(it.next());
+        }
+        mConnections.clear();
+    }
+
+    /**
+     * Open and query counts for each database
+     * @return
+     */
+    public synchronized String getStats() {
+        String ret = "";
+        Iterator<Stats> it = mStats.values().iterator();
+        while(it.hasNext()) {
+            Stats s = it.next();
+            ret += s.mName + " opens " + s.mOpens + " queries " + s.mQueries + "\n";
+        }
+        return ret;
+    }
+
+    /**
+     *
+     * @param path
+     * @return
+     */
+    private Stats getStats(String path) {
+        Stats s = mStats.get(path);
+        if(null == s) {
+            s = new Stats(new File(path).getName());
+            mStats.put(path, s);
+        }
+        return s;
+    }
+
+    /**
+     * Close when no one is using it
+     * @param conn
+     */
+    private void retire(Connection conn) {
+        conn.mRetired = true;
+        if(conn.mUsers <= 0) {
+            close(conn);
+        }
+    }
+
+    /**
+     *
+     * @param conn
+     */
+    private void close(Connection conn) {
+        try {
+            conn.mDataBase.close();
+        }
+        catch (Exception e) {
+        }
+    }
+
+    /**
+     * Counters for one database file
+     */
+    private static class Stats {
+        private String mName;
+        private int mOpens;
+        private int mQueries;
+
+        private Stats(String name) {
+            mName = name;
+            mOpens = 0;
+            mQueries = 0;
+        }
+    }
+
+    /**
+     * One open database file
+     */
+    public class Connection {
+        private SQLiteDatabase mDataBase;
+        private long mModified;
+        private long mLength;
+        private int mUsers;
+        private boolean mRetired;
+        private Stats mStats;
+        private int mGeneration;
+
+        private Connection(String path, SQLiteDatabase db, long modified, long length) {
+            mDataBase = db;
+            mModified = modified;
+            mLength = length;
+            mUsers = 0;
+            mRetired = false;
+            mStats = getStats(path);
+            mStats.mOpens++;
+            mGeneration = mStats.mOpens;
+        }
+
+        /**
+         * Changes every time the file is opened again, so anything built from its data can tell it is stale
+         * @return
+         */
+        public int getGeneration() {
+            return mGeneration;
+        }
+
+        /**
+         *
+         * @return
+         */
+        public SQLiteDatabase getDataBase() {
+            return mDataBase;
+        }
+    }
+
+    /**
+     * Binds typed arguments to the compiled query.
+     * rawQuery() can only bind strings, which makes numbers compare as text.
+     */
+    private static class BindingCursorFactory implements SQLiteDatabase.CursorFactory {
+        private Object mArgs[];
+
+        private BindingCursorFactory(Object args[]) {
+            mArgs = args;
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery,
+                String editTable, SQLiteQuery query) {
+            if(null != mArgs) {
+                for(int i = 0; i < mArgs.length; i++) {
+                    Object arg = mArgs[i];
+                    if(null == arg) {
+                        query.bindNull(i + 1);
+                    }
+                    else if(arg instanceof Double || arg instanceof Float) {
+                        query.bindDouble(i + 1, ((Number)arg).doubleValue());
+                    }
+                    else if(arg instanceof Integer || arg instanceof Long) {
+                        query.bindLong(i + 1, ((Number)arg).longValue());
+                    }
+                    else {
+                        query.bindString(i + 1, arg.toString());
+                    }
+                }
+            }
+            return new SQLiteCursor(db, masterQuery, editTable, query);
+        }
+    }
+
+    /**
+     * Cursor that gives back its connection when closed
+     */
+    private class ConnectionCursor extends CursorWrapper {
+        private Connection mConnection;
+
+        private ConnectionCursor(Cursor c, Connection conn) {
+            super(c);
+            mConnection = conn;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            synchronized(this) {
+                if(null == mConnection) {
+                    return;
+                }
+                release(mConnection);
+                mConnection = null;
+            }
+        }
+    }
+}
@@ -39,7 +39,6 @@ import com.ds.avare.weather.WindsAloft;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.hardware.GeomagneticField;
 
 /**
@@ -49,17 +48,19 @@ import android.hardware.GeomagneticField;
 public class DataBaseHelper  {
 
     /**
-     * Cache this class to sqlite
-     */
-    private SQLiteDatabase mDataBase; 
-    private SQLiteDatabase mDataBaseFiles; 
-    private SQLiteDatabase mDataBaseElev; 
-    private SQLiteDatabase mDataBaseProcedures; 
-    private SQLiteDatabase mDataBasePlates; 
-    private SQLiteDatabase mDataBaseGeoPlates; 
-    private SQLiteDatabase mDataBaseFuel; 
-    private SQLiteDatabase mDataBaseRatings; 
-    private SQLiteDatabase mDataBaseWeather; 
+     * All database files stay open, shared by all queries
+     */
+    private DataBaseConnections mConnections;
+
+    /**
+     * Spatial indexes for box and nearest queries
+     */
+    private DataBaseIndexes mIndexes;
+
+    /**
+     * Facilities found recently
+     */
+    private DestinationCache mDestinations;
     
     /*
      * Center tile info
@@ -76,39 +77,25 @@ public class DataBaseHelper  {
      */
     private Context mContext;
     
-    /*
-     * How many users at this point. Used for closing the database
-     * Will serve as a non blocking sem with synchronized statement
-     */
-    private Integer mUsers;
-    private Integer mUsersFiles;
-    private Integer mUsersElev;
-    private Integer mUsersPlates;
-    private Integer mUsersGeoPlates;
-    private Integer mUsersWeather;
-    private Integer mUsersProcedures;
-    private Integer mUsersFuel;
-    private Integer mUsersRatings;
-    
     
     public  static final String  FACILITY_NAME = "Facility Name";
-    private static final String  FACILITY_NAME_DB = "FacilityName";
+    static final String  FACILITY_NAME_DB = "FacilityName";
     private static final int    FACILITY_NAME_COL = 4;
     public  static final String  LOCATION_ID = "Location ID";
-    private static final String  LOCATION_ID_DB = "LocationID";
+    static final String  LOCATION_ID_DB = "LocationID";
     private static final String  INFO_DB = "info";
     private static final int    LOCATION_ID_COL = 0;
     public  static final String  MAGNETIC_VARIATION = "Magnetic Variation";
     //private static final String  MAGNETIC_VARIATION_DB = "MagneticVariation";
     private static final int    MAGNETIC_VARIATION_COL = 10;
     public  static final String  TYPE= "Type";
-    private static final String  TYPE_DB = "Type";
+    static final String  TYPE_DB = "Type";
     private static final int    TYPE_COL = 3;
     public  static final String  LATITUDE = "Latitude";
-    private static final String  LATITUDE_DB = "ARPLatitude";
+    static final String  LATITUDE_DB = "ARPLatitude";
     private static final int    LATITUDE_COL = 1;
     public  static final String  LONGITUDE = "Longitude";
-    private static final String  LONGITUDE_DB = "ARPLongitude";
+    static final String  LONGITUDE_DB = "ARPLongitude";
     private static final int    LONGITUDE_COL = 2;
     public  static final String  FUEL_TYPES = "Fuel Types";
     //private static final String  FUEL_TYPES_DB = "FuelTypes";
@@ -126,18 +113,18 @@ public class DataBaseHelper  {
 
     public static final String ELEVATION = "Elevation";
     
-    private static final String TABLE_AIRPORTS = "airports";
+    static final String TABLE_AIRPORTS = "airports";
     private static final String TABLE_AIRPORT_DIAGS = "airportdiags";
     private static final String TABLE_AIRPORT_FREQ = "airportfreq";
     private static final String TABLE_AIRPORT_AWOS = "awos";
-    private static final String TABLE_AIRPORT_RUNWAYS = "airportrunways";
+    static final String TABLE_AIRPORT_RUNWAYS = "airportrunways";
     private static final String TABLE_FILES = "files";
-    private static final String TABLE_FIX = "fix";
-    private static final String TABLE_NAV = "nav";
+    static final String TABLE_FIX = "fix";
+    static final String TABLE_NAV = "nav";
     private static final String TABLE_TO = "takeoff";
     private static final String TABLE_ALT = "alternate";
     private static final String TABLE_AFD = "afd";
-    private static final String TABLE_OBSTACLES = "obs";
+    static final String TABLE_OBSTACLES = "obs";
     private static final String TABLE_SUA = "saa";
     private static final String TABLE_PROCEDURE = "procedures";
     private static final String TABLE_GEOPLATES = "geoplates";
@@ -147,7 +134,75 @@ public class DataBaseHelper  {
 
 
     private static final String TILE_NAME = "name";
+
+    /*
+     * Rows of nearest airports, one parameter for each
+     */
+    /*
+     * Most airports that can be asked for in one closest airports search
+     */
+    public static final int MAX_CLOSEST_AIRPORTS = Preferences.MAX_AREA_AIRPORTS * 2;
+
+    private static final String QUERY_AIRPORTS_BY_ROWID = getAirportsByRowIdQuery();
+
+    /*
+     * Most facilities looked up in one query, unused parameters are null
+     */
+    private static final int MAX_DESTINATIONS_QUERY = 16;
+
+    private static final String QUERY_AIRPORTS_BY_ID = getDestinationsByIdQuery(TABLE_AIRPORTS);
+    private static final String QUERY_NAVAIDS_BY_ID = getDestinationsByIdQuery(TABLE_NAV);
+    private static final String QUERY_FIXES_BY_ID = getDestinationsByIdQuery(TABLE_FIX);
+    private static final String QUERY_FREQUENCIES_BY_ID = getAirportDetailsByIdQuery(TABLE_AIRPORT_FREQ);
+    private static final String QUERY_AWOS_BY_ID = getAirportDetailsByIdQuery(TABLE_AIRPORT_AWOS);
+    private static final String QUERY_RUNWAYS_BY_ID = getAirportDetailsByIdQuery(TABLE_AIRPORT_RUNWAYS);
+    private static final String QUERY_AFD_BY_ID = "select " + LOCATION_ID_DB + ",File from " + TABLE_AFD +
+            " where " + LOCATION_ID_DB + " in " + getIdList("") + ";";
     
+    /**
+     * 
+     * @return
+     */
+    private static String getAirportsByRowIdQuery() {
+        String qry = "select *, rowid from " + TABLE_AIRPORTS + " where rowid in (?";
+        for(int i = 1; i < MAX_CLOSEST_AIRPORTS; i++) {
+            qry += ",?";
+        }
+        return qry + ");";
+    }
+
+    /**
+     * @param prefix of each id
+     * @return (?1,?2,...) with MAX_DESTINATIONS_QUERY parameters
+     */
+    private static String getIdList(String prefix) {
+        String list = "(" + prefix + "?1";
+        for(int i = 2; i <= MAX_DESTINATIONS_QUERY; i++) {
+            list += "," + prefix + "?" + i;
+        }
+        return list + ")";
+    }
+
+    /**
+     * Order by type desc will cause VOR to be ahead of NDB if both are available.
+     * @param table
+     * @return
+     */
+    private static String getDestinationsByIdQuery(String table) {
+        return "select * from " + table + " where " + LOCATION_ID_DB + " in " + getIdList("") +
+                " and Type != 'VOT' order by " + TYPE_DB + " desc;";
+    }
+
+    /**
+     * Frequencies, AWOS and runways of airports, with or without K in front of ID
+     * @param table
+     * @return
+     */
+    private static String getAirportDetailsByIdQuery(String table) {
+        return "select * from " + table + " where " + LOCATION_ID_DB + " in " + getIdList("") +
+                " or " + LOCATION_ID_DB + " in " + getIdList("'K' || ") + ";";
+    }
+
     /**
      * 
      * @return
@@ -162,7 +217,9 @@ public class DataBaseHelper  {
     public DataBaseHelper(Context context) {
         mPref = new Preferences(context);
         mCenterTile = null;
-        mUsers = mUsersFiles = mUsersWeather = mUsersElev = mUsersPlates = mUsersGeoPlates = mUsersProcedures = mUsersFuel = mUsersRatings = 0;
+        mConnections = new DataBaseConnections();
+        mIndexes = new DataBaseIndexes(mConnections);
+        mDestinations = new DestinationCache();
         mContext = context;
     }
 
@@ -178,7 +235,7 @@ public class DataBaseHelper  {
    
 
     /**
-     * Close database
+     * Close cursor, this gives back the database connection
      */
     private void closes(Cursor c) {
         if(null != c) {
@@ -189,78 +246,34 @@ public class DataBaseHelper  {
                 
             }
         }
-
-        synchronized(mUsers) {
-            mUsers--;
-            if((mDataBase != null) && (mUsers <= 0)) {
-                try {
-                    mDataBase.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBase = null;
-                mUsers = 0;
-            }
-        }
     }
 
     /**
-     * 
+     * Run a query with ? parameters bound to args.
+     * Statements must not have values spliced in them so that each query shape is compiled once
+     * and found in the statement cache of the database on later calls.
      * @param statement
+     * @param name
+     * @param args Double, Float, Integer, Long or String for each parameter
      * @return
      */
-    private Cursor doQuery(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
+    private Cursor doQuery(String statement, String name, Object... args) {
+        return mConnections.query(mPref.mapsFolder() + "/" + name, statement, args);
+    }
 
-        /*
-         * 
-         */
-        synchronized(mUsers) {
-            if(mDataBase == null) {
-                mUsers = 0;
-                try {
-                    
-                    mDataBase = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBase = null;
-                }
-            }
-            if(mDataBase == null) {
-                return c;
-            }
-            mUsers++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBase == null) {
-            return c;
-        }
-        
-        if(!mDataBase.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBase.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
+    /**
+     * Close all databases, they will be opened again on next query
+     */
+    public void closeDataBases() {
+        mConnections.invalidate();
+    }
 
-        return c;
+    /**
+     * 
+     * @return Open and query counts of databases
+     */
+    public String getDataBaseStats() {
+        return mConnections.getStats();
     }
 
     /**
@@ -276,8 +289,8 @@ public class DataBaseHelper  {
             ret[it] = 0;
         }
         
-        String qry = "select * from " + TABLE_AIRPORT_DIAGS + " where " + LOCATION_ID_DB + "=='" + name +"'";
-        Cursor cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + TABLE_AIRPORT_DIAGS + " where " + LOCATION_ID_DB + "==?";
+        Cursor cursor = doQuery(qry, getMainDb(), name);
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
@@ -400,13 +413,13 @@ public class DataBaseHelper  {
          * If none of the above then its tiles
          * Dont delete level 4
          */
-        String query = "select name from " + TABLE_FILES + " where " + INFO_DB + "=='" + name +"'"
-                + "and level != '4'";
+        String query = "select name from " + TABLE_FILES + " where " + INFO_DB + "==?"
+                + " and level != '4'";
         /*
          * Delete files from all databases
          */
         for(int i = 0; i < dbs.length; i++) {
-            Cursor cursor = doQuery(query, dbs[i]);
+            Cursor cursor = doQuery(query, dbs[i], name);
     
             try {
                 if(cursor != null) {
@@ -424,8 +437,8 @@ public class DataBaseHelper  {
         /*
          * Now plates: d-tpp / area
          */
-        query = "select " + LOCATION_ID_DB + " from " + TABLE_AIRPORTS + " where State=\"" + name.replace("Area", "") + "\";";
-        Cursor cursor = doQuery(query, getMainDb());
+        query = "select " + LOCATION_ID_DB + " from " + TABLE_AIRPORTS + " where State==?;";
+        Cursor cursor = doQuery(query, getMainDb(), name.replace("Area", ""));
 
         try {
             if(cursor != null) {
@@ -449,11 +462,122 @@ public class DataBaseHelper  {
     }
 
     /**
-     * Find airports in an particular area
+     * Find closest airports
+     * @param lon
+     * @param lat
+     * @param minRunwayLength
+     * @return
+     */
+    public Airport[] findClosestAirports(double lon, double lat, String minRunwayLength) {
+        return findClosestAirports(lon, lat, minRunwayLength, Preferences.MAX_AREA_AIRPORTS, null);
+    }
+
+    /**
+     * Find k closest airports by great circle distance, sorted on distance
+     * @param lon
+     * @param lat
+     * @param minRunwayLength
+     * @param k number of airports, no more than MAX_CLOSEST_AIRPORTS
+     * @param indexed if not null, [0] is set true when found with the index.
+     * Otherwise airports came from SQL, sorted on flat distance.
+     * @return
+     */
+    public Airport[] findClosestAirports(double lon, double lat, String minRunwayLength, int k, boolean indexed[]) {
+
+        if(k > MAX_CLOSEST_AIRPORTS) {
+            k = MAX_CLOSEST_AIRPORTS;
+        }
+
+        DataBaseIndexes.AirportIndex index = mIndexes.getAirports(mPref.mapsFolder() + "/" + getMainDb());
+        if(null != indexed) {
+            indexed[0] = null != index;
+        }
+        if(null == index) {
+            return findClosestAirportsSql(lon, lat, minRunwayLength, k);
+        }
+
+        final DataBaseIndexes.AirportIndex fIndex = index;
+        final boolean all = mPref.shouldShowAllFacilities();
+        int min = 0;
+        try {
+            min = Integer.parseInt(minRunwayLength);
+        }
+        catch (Exception e) {
+        }
+        final int fMin = min;
+
+        /*
+         * Nearest from index, then get only those rows from database
+         */
+        int ids[] = new int[k];
+        double dist[] = new double[k];
+        int found = index.getIndex().nearest(lon, lat, SpatialIndex.GREAT_CIRCLE, new SpatialIndex.Filter() {
+            @Override
+            public boolean accept(int id) {
+                return (all || fIndex.isAirport(id)) && fIndex.getRunwayLength(id) >= fMin;
+            }
+        }, ids, dist);
+
+        Object args[] = new Object[MAX_CLOSEST_AIRPORTS];
+        for(int i = 0; i < found; i++) {
+            args[i] = index.getRowId(ids[i]);
+        }
+
+        Airport airports[] = new Airport[k];
+        Cursor cursor = doQuery(QUERY_AIRPORTS_BY_ROWID, getMainDb(), args);
+        try {
+            if(cursor != null) {
+                int rowCol = cursor.getColumnCount() - 1;
+                while(cursor.moveToNext()) {
+                    long row = cursor.getLong(rowCol);
+                    /*
+                     * Keep order of distance
+                     */
+                    for(int i = 0; i < found; i++) {
+                        if(index.getRowId(ids[i]) != row) {
+                            continue;
+                        }
+                        LinkedHashMap<String, String> params = new LinkedHashMap<String, String>();
+                        params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
+                        params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
+                        params.put(FUEL_TYPES, cursor.getString(FUEL_TYPES_COL));
+                        params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
+                        params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
+                        params.put(MAGNETIC_VARIATION, cursor.getString(MAGNETIC_VARIATION_COL).trim());
+                        String parts[] = cursor.getString(9).trim().split("[.]");
+                        params.put(ELEVATION, parts[0] + "ft");
+                        airports[i] = new Airport(params, lon, lat);
+                        airports[i].setLongestRunway(index.getRunway(ids[i]));
+                        break;
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+        closes(cursor);
+
+        /*
+         * Remove holes if a row was not found
+         */
+        int id = 0;
+        for(int i = 0; i < airports.length; i++) {
+            if(null != airports[i]) {
+                airports[id++] = airports[i];
+            }
+        }
+        for(; id < airports.length; id++) {
+            airports[id] = null;
+        }
+        return airports;
+    }
+
+    /**
+     * Find airports in an particular area when the spatial index is not available
      * @param name
      * @param params
      */
-    public Airport[] findClosestAirports(double lon, double lat, String minRunwayLength) {
+    private Airport[] findClosestAirportsSql(double lon, double lat, String minRunwayLength, int k) {
 
         Airport airports[] = null;
         
@@ -470,21 +594,21 @@ public class DataBaseHelper  {
         		TABLE_AIRPORT_RUNWAYS + "." + LOCATION_ID_DB;
         
         // runway length > certain length
-        qry += " and " + "CAST(" + TABLE_AIRPORT_RUNWAYS + ".Length AS INTEGER) >= " + minRunwayLength;
+        qry += " and " + "CAST(" + TABLE_AIRPORT_RUNWAYS + ".Length AS INTEGER) >= CAST(?3 AS INTEGER)";
         
         // order by distance then by runway length, and limit by max * 4 (to remove duplicate runways)
         qry += " order by ((" + 
-                lon + " - " + TABLE_AIRPORTS + "." + LONGITUDE_DB + ") * (" + lon + "- " + TABLE_AIRPORTS + "." + LONGITUDE_DB +") + (" + 
-                lat + " - " + TABLE_AIRPORTS + "." + LATITUDE_DB + ") * (" + lat + "- " + TABLE_AIRPORTS + "." + LATITUDE_DB + ")) ASC " +
+                "?1 - " + TABLE_AIRPORTS + "." + LONGITUDE_DB + ") * (?1 - " + TABLE_AIRPORTS + "." + LONGITUDE_DB +") + (" + 
+                "?2 - " + TABLE_AIRPORTS + "." + LATITUDE_DB + ") * (?2 - " + TABLE_AIRPORTS + "." + LATITUDE_DB + ")) ASC " +
                 ", " + "CAST(" + TABLE_AIRPORT_RUNWAYS + ".Length AS INTEGER) DESC " +
-                " limit " + Preferences.MAX_AREA_AIRPORTS * 2 + ";";
+                " limit ?4;";
 
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, getMainDb(), lon, lat, minRunwayLength, k * 2);
 
         try {
             int id = 0;
             if(cursor != null) {
-                airports = new Airport[Preferences.MAX_AREA_AIRPORTS];
+                airports = new Airport[k];
                 if(cursor.moveToFirst()) {
                     do {
                         LinkedHashMap<String, String> params = new LinkedHashMap<String, String>();
@@ -507,7 +631,7 @@ public class DataBaseHelper  {
                         	}
                         }
                         id++;
-                        if(id >= Preferences.MAX_AREA_AIRPORTS) {
+                        if(id >= k) {
                         	break;
                         }
                     }
@@ -532,8 +656,8 @@ public class DataBaseHelper  {
         String types = TABLE_AIRPORTS;
         Coordinate c = null;
 
-        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "=='" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "==?;";
+        cursor = doQuery(qry, getMainDb(), name);
 
         try {
             if(cursor != null) {
@@ -561,11 +685,11 @@ public class DataBaseHelper  {
         
         Cursor cursor;
 
-        String qry = "select * from " + table + " where " + LOCATION_ID_DB + "=='" + name + "' and Type != 'VOT' limit 1;";
+        String qry = "select * from " + table + " where " + LOCATION_ID_DB + "==? and Type != 'VOT' limit 1;";
         /*
          * NAV
          */
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, getMainDb(), name);
         
         try {
             if(cursor != null) {
@@ -719,8 +843,8 @@ public class DataBaseHelper  {
         String chopname = name.substring(0, len - 6).toUpperCase(Locale.getDefault());
         if(chop.matches("[0-9][0-9][0-9][0-9][0-9][0-9]")) {
 
-            String qry = "select * from " + TABLE_NAV + " where (" + LOCATION_ID_DB + "=='" + chopname + "') and Type != 'VOT';";
-            cursor = doQuery(qry, getMainDb());
+            String qry = "select * from " + TABLE_NAV + " where (" + LOCATION_ID_DB + "==?) and Type != 'VOT';";
+            cursor = doQuery(qry, getMainDb(), chopname);
             
             try {
                 if(cursor != null) {
@@ -754,8 +878,8 @@ public class DataBaseHelper  {
                          */
                         closes(cursor);
 
-                        String qry2 = "select * from " + TABLE_FIX + " where " + LOCATION_ID_DB + "=='" + chopname + "';";
-                        cursor = doQuery(qry2, getMainDb());
+                        String qry2 = "select * from " + TABLE_FIX + " where " + LOCATION_ID_DB + "==?;";
+                        cursor = doQuery(qry2, getMainDb(), chopname);
 
                         if(cursor != null) {
                             if(cursor.moveToFirst()) {
@@ -808,8 +932,8 @@ public class DataBaseHelper  {
          */
         String uname = name.toUpperCase(Locale.getDefault());
 
-        String qry = "select " + LOCATION_ID_DB + "," + FACILITY_NAME_DB + "," + TYPE_DB + " from " + TABLE_AIRPORTS + " where City=='" + uname + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select " + LOCATION_ID_DB + "," + FACILITY_NAME_DB + "," + TYPE_DB + " from " + TABLE_AIRPORTS + " where City==?;";
+        cursor = doQuery(qry, getMainDb(), uname);
 
         try {
             if(cursor != null) {
@@ -831,9 +955,19 @@ public class DataBaseHelper  {
      * @param params
      */
     public void search(String name, LinkedHashMap<String, String> params, boolean exact) {
-        
-        Cursor cursor;
+        search(name, params, exact, Double.NaN, Double.NaN);
+    }
 
+    /**
+     * Search something in database, nearest to lon, lat first
+     * @param name
+     * @param params
+     * @param exact
+     * @param lon NaN to not rank by distance
+     * @param lat
+     */
+    public void search(String name, LinkedHashMap<String, String> params, boolean exact, double lon, double lat) {
+        
         /*
          * This is a radial search?
          */
@@ -846,6 +980,30 @@ public class DataBaseHelper  {
             }
         }
         
+        DataBaseIndexes.FacilityIndex index = mIndexes.getFacilities(mPref.mapsFolder() + "/" + getMainDb());
+        if(null == index) {
+            searchSql(name, params, exact);
+            return;
+        }
+        
+        /*
+         * City first, then all identifiers in one lookup
+         */
+        String uname = name.toUpperCase(Locale.getDefault());
+        index.findCity(uname, params);
+        index.search(uname, exact, mPref.shouldShowAllFacilities(), lon, lat, params);
+    }
+
+    /**
+     * Search something in database when the search index is not available
+     * @param name
+     * @param params
+     */
+    private void searchSql(String name, LinkedHashMap<String, String> params, boolean exact) {
+        
+        Cursor cursor;
+        int len = name.length();
+        
         // Search city first
         searchCity(name, params);
         
@@ -856,21 +1014,24 @@ public class DataBaseHelper  {
          * We don't want to throw in too many results, but we also want to allow K as a prefix for airport names
          * If the user has typed enough, let's start looking for K prefixed airports as well
          */
-        if(len > 2 && name.charAt(0) == 'K' || name.charAt(0) == 'k') {
+        if(len > 2 && (name.charAt(0) == 'K' || name.charAt(0) == 'k')) {
         	
         	String qendK = "";
+        	String argK;
         	if(exact) {
-                qendK = " (" + LOCATION_ID_DB + "=='" + name.substring(1) + "'" + ") order by " + LOCATION_ID_DB + " asc";
+                qendK = " (" + LOCATION_ID_DB + "==?" + ") order by " + LOCATION_ID_DB + " asc";
+                argK = name.substring(1);
         	}
         	else {
-        		qendK = " (" + LOCATION_ID_DB + " like '" + name.substring(1) + "%' " + ") order by " + LOCATION_ID_DB + " asc";
+        		qendK = " (" + LOCATION_ID_DB + " like ? " + ") order by " + LOCATION_ID_DB + " asc";
+        		argK = name.substring(1) + "%";
         	}
             qry = qbasic + TABLE_AIRPORTS + " where ";
             if(!mPref.shouldShowAllFacilities()) {
                 qry += TYPE_DB + "=='AIRPORT' and ";
             }
             qry += qendK;
-            cursor = doQuery(qry, getMainDb());
+            cursor = doQuery(qry, getMainDb(), argK);
             try {
                 if(cursor != null) {
                     while(cursor.moveToNext()) {
@@ -888,14 +1049,17 @@ public class DataBaseHelper  {
          * All queries for airports, navaids, fixes
          */
         String qend = "";
+        String arg;
         if(exact) {
-            qend = " (" + LOCATION_ID_DB + "=='" + name + "'" + ") and Type != 'VOT' order by " + LOCATION_ID_DB + " asc";         	
+            qend = " (" + LOCATION_ID_DB + "==?" + ") and Type != 'VOT' order by " + LOCATION_ID_DB + " asc";         	
+            arg = name;
         }
         else {
-        	qend = " (" + LOCATION_ID_DB + " like '" + name + "%' " + ") and Type != 'VOT' order by " + LOCATION_ID_DB + " asc";
+        	qend = " (" + LOCATION_ID_DB + " like ? " + ") and Type != 'VOT' order by " + LOCATION_ID_DB + " asc";
+        	arg = name + "%";
         }
         qry = qbasic + TABLE_NAV + " where " + qend;
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, getMainDb(), arg);
 
         try {
             if(cursor != null) {
@@ -915,7 +1079,7 @@ public class DataBaseHelper  {
         }
         qry += qend;
 
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, getMainDb(), arg);
         try {
             if(cursor != null) {
                 while(cursor.moveToNext()) {
@@ -930,7 +1094,7 @@ public class DataBaseHelper  {
 
 
         qry = qbasic + TABLE_FIX + " where " + qend;
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, getMainDb(), arg);
         try {
             if(cursor != null) {
                 while(cursor.moveToNext()) {
@@ -951,371 +1115,547 @@ public class DataBaseHelper  {
      * @return
      */
     public void findDestination(String name, String type, String dbType, LinkedHashMap<String, String> params, LinkedList<Runway> runways, LinkedHashMap<String, String> freq, LinkedList<Awos> awos) {
-        
-        Cursor cursor;
-        
-        String types = "";
-        if(type.equals(Destination.BASE)) {
-            types = TABLE_AIRPORTS;
+        DestinationCache.Entry found = findDestination(name, type, dbType);
+        if(null != found) {
+            found.copyTo(params, runways, freq, awos);
         }
-        else if(type.equals(Destination.NAVAID)) {
-            types = TABLE_NAV;
+    }
+
+    /**
+     * Find a facility / destination with its runways, frequencies, AWOS and A/FD
+     * @param name
+     * @param type
+     * @param dbType
+     * @return null if not found
+     */
+    public DestinationCache.Entry findDestination(String name, String type, String dbType) {
+        return findDestinations(new String[] {name}, new String[] {type}, new String[] {dbType})[0];
+    }
+
+    /**
+     * Find many facilities / destinations at once, like all waypoints of a plan.
+     * Those not in the cache are looked up together, with one query on each table.
+     * @param names
+     * @param types
+     * @param dbTypes
+     * @return for each name, null if not found
+     */
+    public DestinationCache.Entry[] findDestinations(String names[], String types[], String dbTypes[]) {
+        DestinationCache.Entry ret[] = new DestinationCache.Entry[names.length];
+
+        /*
+         * Hold on to the database so it is not swapped while we are looking
+         */
+        DataBaseConnections.Connection conn = mConnections.acquire(mPref.mapsFolder() + "/" + getMainDb());
+        if(null == conn) {
+            return ret;
+        }
+        int generation = conn.getGeneration();
+
+        try {
+            String all[] = {Destination.BASE, Destination.NAVAID, Destination.FIX};
+            for(String type : all) {
+                int idx[] = new int[MAX_DESTINATIONS_QUERY];
+                int num = 0;
+                for(int i = 0; i < names.length; i++) {
+                    if(null == names[i] || !type.equals(types[i])) {
+                        continue;
+                    }
+                    ret[i] = mDestinations.get(names[i], type, dbTypes[i], generation);
+                    if(null != ret[i]) {
+                        continue;
+                    }
+                    idx[num++] = i;
+                    if(num == MAX_DESTINATIONS_QUERY) {
+                        findDestinations(names, type, dbTypes, idx, num, ret, generation);
+                        num = 0;
+                    }
+                }
+                if(num > 0) {
+                    findDestinations(names, type, dbTypes, idx, num, ret, generation);
+                }
+            }
+        }
+        finally {
+            mConnections.release(conn);
+        }
+        return ret;
+    }
+
+    /**
+     * Look up some facilities of one type, and cache them
+     * @param names
+     * @param type
+     * @param dbTypes
+     * @param idx which of names to look up
+     * @param num how many in idx
+     * @param ret where found ones go
+     * @param generation
+     */
+    private void findDestinations(String names[], String type, String dbTypes[], int idx[], int num,
+            DestinationCache.Entry ret[], int generation) {
+
+        String qry = QUERY_AIRPORTS_BY_ID;
+        if(type.equals(Destination.NAVAID)) {
+            qry = QUERY_NAVAIDS_BY_ID;
         }
         else if(type.equals(Destination.FIX)) {
-            types = TABLE_FIX;
+            qry = QUERY_FIXES_BY_ID;
         }
 
-        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "=='" + name + "'";
-        if(null != dbType && dbType.length() > 0) {
-            qry += " and " + TYPE_DB + "=='" + dbType + "'";
+        /*
+         * Unused parameters stay null, which matches nothing
+         */
+        Object args[] = new Object[MAX_DESTINATIONS_QUERY];
+        for(int k = 0; k < num; k++) {
+            args[k] = names[idx[k]];
         }
-        // Order by type desc will cause VOR to be ahead of NDB if both are available.
-        // This is a bit of a hack, but the user probably wants the VOR more than the NDB
-        qry += " and Type != 'VOT' order by " + TYPE_DB + " desc;";
-        
-        cursor = doQuery(qry, getMainDb());
 
+        DestinationCache.Entry found[] = new DestinationCache.Entry[num];
+        Cursor cursor = doQuery(qry, getMainDb(), args);
         try {
             if(cursor != null) {
-                if(cursor.moveToFirst()) {
-                    
-                    /*
-                     * Put ID and name first
-                     */
-                    params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
-                    params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
-                    params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
-                    params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
-                    params.put(TYPE, cursor.getString(TYPE_COL).trim());
-                    if(type.equals(Destination.BASE)) {
-                        String use = cursor.getString(5).trim();
-                        if(use.equals("PU")) {
-                            use = "PUBLIC";
-                        }
-                        else if(use.equals("PR")) {
-                            use = "PRIVATE";                            
-                        }
-                        else  {
-                            use = "MILITARY";                            
-                        }
-                        params.put("Use", use);
-                        params.put("Manager", cursor.getString(7).trim());
-                        params.put(MANAGER_PHONE, cursor.getString(8).trim());
-                        params.put(ELEVATION, cursor.getString(9).trim());
-                        String customs = cursor.getString(CUSTOMS_COL);
-                        if(customs.equals("YN")) {
-                            params.put(CUSTOMS, "Intl. Entry");
-                        }
-                        else if(customs.equals("NY")) {
-                            params.put(CUSTOMS, "Lndg. Rights");
-                        }
-                        else if(customs.equals("YY")) {
-                            params.put(CUSTOMS, "Lndg. Rights, Intl. Entry");
-                        }
-                        else {
-                            params.put(CUSTOMS, mContext.getString(R.string.No));                            
-                        }
-                        String bcn = cursor.getString(BEACON_COL);
-                        if(bcn.equals("")) {
-                            bcn = mContext.getString(R.string.No);
-                        }
-                        params.put(BEACON, bcn);
-                        String sc = cursor.getString(SEGCIRCLE_COL);
-                        if(sc.equals("Y")) {
-                            params.put(SEGCIRCLE, mContext.getString(R.string.Yes));
-                        }
-                        else {
-                            params.put(SEGCIRCLE, mContext.getString(R.string.No));                            
-                        }
-                        String pa = cursor.getString(11).trim();
-                        String paout = "";
-                        if(pa.equals("")) {
-                            try {
-                                paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 1000);
-                            }
-                            catch (Exception e) {
-                                
-                            }
-                        }
-                        else {
-                            try {
-                                paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 
-                                        (Double.parseDouble(pa)));
-                            }
-                            catch (Exception e) {
-                                
-                            }                            
-                        }
-                        params.put("Pattern Altitude", paout);
-                        String fuel = cursor.getString(FUEL_TYPES_COL).trim();
-                        if(fuel.equals("")) {
-                            fuel = mContext.getString(R.string.No);
-                        }
-                        params.put(FUEL_TYPES, fuel);
-                        String ct = cursor.getString(17).trim();
-                        if(ct.equals("Y")) {
-                            ct = mContext.getString(R.string.Yes);
-                        }
-                        else {
-                            ct = mContext.getString(R.string.No);
-                        }
-                        params.put("Control Tower", ct);
-                        
-                        String unicom = cursor.getString(18).trim();
-                        if(!unicom.equals("")) {
-                            freq.put("UNICOM", unicom);
+                while(cursor.moveToNext()) {
+                    String id = cursor.getString(LOCATION_ID_COL);
+                    String dbType = cursor.getString(TYPE_COL);
+                    for(int k = 0; k < num; k++) {
+                        int i = idx[k];
+                        /*
+                         * Rows come in order of type desc, first one is taken.
+                         * This is a bit of a hack, but the user probably wants the VOR more than the NDB
+                         */
+                        if(null != found[k] || !names[i].equals(id)) {
+                            continue;
                         }
-                        String ctaf = cursor.getString(19).trim();
-                        if(!ctaf.equals("")) {
-                            freq.put("CTAF", ctaf);
+                        if(null != dbTypes[i] && dbTypes[i].length() > 0 && !dbTypes[i].equals(dbType)) {
+                            continue;
                         }
-                        
-                        String fee = cursor.getString(20).trim();
-                        if(fee.equals("Y")) {
-                            fee = mContext.getString(R.string.Yes);
+                        found[k] = new DestinationCache.Entry();
+                        try {
+                            readDestination(cursor, type, found[k].mParams, found[k].mFreq);
                         }
-                        else {
-                            fee = mContext.getString(R.string.No);
+                        catch (Exception e) {
                         }
-                        params.put("Landing Fee", fee);
-                        String fss = cursor.getString(FSSPHONE_COL);
-						if (fss.equals("1-800-WX-BRIEF")) {
-							fss = "1-800-992-7433";
-						}
-                        params.put(FSSPHONE, fss);
-
                     }
                 }
             }
         }
         catch (Exception e) {
         }
-        
         closes(cursor);
 
-        if(!type.equals(Destination.BASE)) {
-            return;
-        }
-        
-        /*
-         * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS    
-         */
-        
-        qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "=='" + name                            
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        if(type.equals(Destination.BASE)) {
+            /*
+             * Only look further for airports found
+             */
+            for(int k = 0; k < num; k++) {
+                if(null == found[k]) {
+                    args[k] = null;
+                }
+            }
 
-        try {
             /*
-             * Add all of them
+             * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS
              */
-            if(cursor != null) {
-                while(cursor.moveToNext()) {
-                    String typeof = cursor.getString(1);
-                    typeof = typeof.replace("LCL", "TWR");
-                    /*
-                     * Filter out silly frequencies
-                     */
-                    if(typeof.equals("EMERG") || typeof.contains("GATE") || typeof.equals("EMERGENCY")) {
-                        continue;
-                    }
-                    /*
-                     * Filter out UHF
-                     */
-                    try {
-                        double frequency = Double.parseDouble(cursor.getString(2));
-                        if(Helper.isFrequencyUHF(frequency)) {
-                            continue;
+            cursor = doQuery(QUERY_FREQUENCIES_BY_ID, getMainDb(), args);
+            try {
+                if(cursor != null) {
+                    while(cursor.moveToNext()) {
+                        String id = cursor.getString(cursor.getColumnIndex(LOCATION_ID_DB));
+                        for(int k = 0; k < num; k++) {
+                            if(isAirport(found[k], names[idx[k]], id)) {
+                                try {
+                                    readFrequency(cursor, found[k].mFreq);
+                                }
+                                catch (Exception e) {
+                                }
+                            }
                         }
                     }
-                    catch (Exception e) {
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+
+            /*
+             * Get AWOS info
+             */
+            cursor = doQuery(QUERY_AWOS_BY_ID, getMainDb(), args);
+            try {
+                if(cursor != null) {
+                    while(cursor.moveToNext()) {
+                        String id = cursor.getString(cursor.getColumnIndex(LOCATION_ID_DB));
+                        Awos a = readAwos(cursor);
+                        for(int k = 0; k < num; k++) {
+                            if(isAirport(found[k], names[idx[k]], id)) {
+                                found[k].mAwos.add(a);
+                            }
+                        }
                     }
-                    
-                    if(freq.containsKey(typeof)) {
-                        /*
-                         * Append this string to the existing one if duplicate key
-                         */
-                        freq.put(typeof, freq.get(typeof)+"\n\n"+cursor.getString(2));                                
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+
+            /*
+             * Find runways
+             */
+            cursor = doQuery(QUERY_RUNWAYS_BY_ID, getMainDb(), args);
+            try {
+                if(cursor != null) {
+                    while(cursor.moveToNext()) {
+                        String id = cursor.getString(cursor.getColumnIndex(LOCATION_ID_DB));
+                        for(int k = 0; k < num; k++) {
+                            if(isAirport(found[k], names[idx[k]], id)) {
+                                try {
+                                    readRunways(cursor, found[k].mParams, found[k].mRunways);
+                                }
+                                catch (Exception e) {
+                                }
+                            }
+                        }
                     }
-                    else {
-                        freq.put(typeof, cursor.getString(2));
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+
+            /*
+             * Find A/FD
+             */
+            cursor = doQuery(QUERY_AFD_BY_ID, getMainDb(), args);
+            try {
+                if(cursor != null) {
+                    while(cursor.moveToNext()) {
+                        String id = cursor.getString(0);
+                        for(int k = 0; k < num; k++) {
+                            if(null != found[k] && null == found[k].mAfd && names[idx[k]].equals(id)) {
+                                found[k].mAfd = cursor.getString(1);
+                            }
+                        }
                     }
                 }
             }
+            catch (Exception e) {
+            }
+            closes(cursor);
         }
-        catch (Exception e) {
+
+        for(int k = 0; k < num; k++) {
+            int i = idx[k];
+            ret[i] = found[k];
+            if(null != found[k]) {
+                mDestinations.put(names[i], type, dbTypes[i], generation, found[k]);
+            }
         }
-        closes(cursor);
-        
-		/*
-		 * Get AWOS info
-		 */
+    }
 
-		qry = "select * from " + TABLE_AIRPORT_AWOS + " where "
-				+ LOCATION_ID_DB + "=='" + name + "' or " + LOCATION_ID_DB
-				+ "=='K" + name + "';";
-		cursor = doQuery(qry, getMainDb());
-		// 0     1    2          3  4  5    6     7     8    9    10
-		// ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
-		try {
-			/*
-			 * Add each AWOS
-			 */
-			if (cursor != null) {
-				while (cursor.moveToNext()) {
+    /**
+     * Airport tables have some IDs with K in front
+     * @param found
+     * @param name
+     * @param id
+     * @return
+     */
+    private static boolean isAirport(DestinationCache.Entry found, String name, String id) {
+        return null != found && null != id && (id.equals(name) || id.equals("K" + name));
+    }
+
+    /**
+     * Read a facility row
+     * @param cursor
+     * @param type
+     * @param params
+     * @param freq
+     */
+    private void readDestination(Cursor cursor, String type, LinkedHashMap<String, String> params, LinkedHashMap<String, String> freq) {
+        /*
+         * Put ID and name first
+         */
+        params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
+        params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
+        params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
+        params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
+        params.put(TYPE, cursor.getString(TYPE_COL).trim());
+        if(type.equals(Destination.BASE)) {
+            String use = cursor.getString(5).trim();
+            if(use.equals("PU")) {
+                use = "PUBLIC";
+            }
+            else if(use.equals("PR")) {
+                use = "PRIVATE";                            
+            }
+            else  {
+                use = "MILITARY";                            
+            }
+            params.put("Use", use);
+            params.put("Manager", cursor.getString(7).trim());
+            params.put(MANAGER_PHONE, cursor.getString(8).trim());
+            params.put(ELEVATION, cursor.getString(9).trim());
+            String customs = cursor.getString(CUSTOMS_COL);
+            if(customs.equals("YN")) {
+                params.put(CUSTOMS, "Intl. Entry");
+            }
+            else if(customs.equals("NY")) {
+                params.put(CUSTOMS, "Lndg. Rights");
+            }
+            else if(customs.equals("YY")) {
+                params.put(CUSTOMS, "Lndg. Rights, Intl. Entry");
+            }
+            else {
+                params.put(CUSTOMS, mContext.getString(R.string.No));                            
+            }
+            String bcn = cursor.getString(BEACON_COL);
+            if(bcn.equals("")) {
+                bcn = mContext.getString(R.string.No);
+            }
+            params.put(BEACON, bcn);
+            String sc = cursor.getString(SEGCIRCLE_COL);
+            if(sc.equals("Y")) {
+                params.put(SEGCIRCLE, mContext.getString(R.string.Yes));
+            }
+            else {
+                params.put(SEGCIRCLE, mContext.getString(R.string.No));                            
+            }
+            String pa = cursor.getString(11).trim();
+            String paout = "";
+            if(pa.equals("")) {
+                try {
+                    paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 1000);
+                }
+                catch (Exception e) {
 
-					Awos a = new Awos(cursor.getString(0)); // New AWOS instance
+                }
+            }
+            else {
+                try {
+                    paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 
+                            (Double.parseDouble(pa)));
+                }
+                catch (Exception e) {
 
-					a.setType(cursor.getString(1));
+                }                            
+            }
+            params.put("Pattern Altitude", paout);
+            String fuel = cursor.getString(FUEL_TYPES_COL).trim();
+            if(fuel.equals("")) {
+                fuel = mContext.getString(R.string.No);
+            }
+            params.put(FUEL_TYPES, fuel);
+            String ct = cursor.getString(17).trim();
+            if(ct.equals("Y")) {
+                ct = mContext.getString(R.string.Yes);
+            }
+            else {
+                ct = mContext.getString(R.string.No);
+            }
+            params.put("Control Tower", ct);
 
-					a.setLat(Helper.removeLeadingZeros(cursor.getString(3)));
-					a.setLon(Helper.removeLeadingZeros(cursor.getString(4)));
-					a.setFreq1(cursor.getString(6));
-					a.setFreq2(cursor.getString(7));
-					a.setPhone1(cursor.getString(8));
-					a.setPhone2(cursor.getString(9));
-					a.setRemark(cursor.getString(10));
+            String unicom = cursor.getString(18).trim();
+            if(!unicom.equals("")) {
+                freq.put("UNICOM", unicom);
+            }
+            String ctaf = cursor.getString(19).trim();
+            if(!ctaf.equals("")) {
+                freq.put("CTAF", ctaf);
+            }
 
-					awos.add(a);
+            String fee = cursor.getString(20).trim();
+            if(fee.equals("Y")) {
+                fee = mContext.getString(R.string.Yes);
+            }
+            else {
+                fee = mContext.getString(R.string.No);
+            }
+            params.put("Landing Fee", fee);
+            String fss = cursor.getString(FSSPHONE_COL);
+            if (fss.equals("1-800-WX-BRIEF")) {
+                fss = "1-800-992-7433";
+            }
+            params.put(FSSPHONE, fss);
 
-				}
-			}
-		} catch (Exception e) {
-		}
-		closes(cursor);
+        }
+    }
 
+    /**
+     * Read a frequency row
+     * @param cursor
+     * @param freq
+     */
+    private void readFrequency(Cursor cursor, LinkedHashMap<String, String> freq) {
+        String typeof = cursor.getString(1);
+        typeof = typeof.replace("LCL", "TWR");
         /*
-         *Find runways        
+         * Filter out silly frequencies
+         */
+        if(typeof.equals("EMERG") || typeof.contains("GATE") || typeof.equals("EMERGENCY")) {
+            return;
+        }
+        /*
+         * Filter out UHF
          */
-
-        qry = "select * from " + TABLE_AIRPORT_RUNWAYS + " where " + LOCATION_ID_DB + "=='" + name
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
-        
         try {
+            double frequency = Double.parseDouble(cursor.getString(2));
+            if(Helper.isFrequencyUHF(frequency)) {
+                return;
+            }
+        }
+        catch (Exception e) {
+        }
+
+        if(freq.containsKey(typeof)) {
             /*
-             * Add all of them
+             * Append this string to the existing one if duplicate key
              */
-            if(cursor != null) {
-                while(cursor.moveToNext()) {
-                    
-                    String Length = cursor.getString(1);
-                    String Width = cursor.getString(2);
-                    String Surface = cursor.getString(3);
-                    String Variation = params.get(MAGNETIC_VARIATION);
-                    
-                    String run = Helper.removeLeadingZeros(cursor.getString(4));
-                    String lat = Helper.removeLeadingZeros(cursor.getString(6));
-                    String lon = Helper.removeLeadingZeros(cursor.getString(8));
-                    
-                    String Elevation = cursor.getString(10);
-                    if(Elevation.equals("")) {
-                        Elevation = params.get(ELEVATION);
-                    }
-                    String Heading = cursor.getString(12);
-                    String DT = cursor.getString(14);
-                    if(DT.equals("")) {
-                        DT = "0";
-                    }
-                    String Lighted = cursor.getString(16);
-                    if(Lighted.equals("0") || Lighted.equals("")) {
-                        Lighted = mContext.getString(R.string.No);
-                    }
-                    String ILS = cursor.getString(18);
-                    if(ILS.equals("")) {
-                        ILS = mContext.getString(R.string.No);
-                    }
-                    String VGSI = cursor.getString(20);
-                    if(VGSI.equals("")) {
-                        VGSI = mContext.getString(R.string.No);
-                    }
-                    String Pattern = cursor.getString(22);
-                    if(Pattern.equals("Y")) {
-                        Pattern = "Right";
-                    }
-                    else {
-                        Pattern = "Left";                        
-                    }
-                    
-                    Runway r = new Runway(run);
-                    r.setElevation(Elevation);
-                    r.setHeading(Heading);
-                    r.setSurface(Surface);
-                    r.setLength(Length);
-                    r.setWidth(Width);
-                    r.setThreshold(DT);
-                    r.setLights(Lighted);
-                    r.setPattern(Pattern);
-                    r.setLongitude(lon);
-                    r.setLatitude(lat);
-                    r.setVariation(Variation);
-                    r.setILS(ILS);
-                    r.setVGSI(VGSI);
-                    
-                    runways.add(r);
-                   
-                    /*
-                     * If the first runway is a helipad, don't add a second end
-                     */
-					if(!(run.startsWith("H") || run.startsWith("h"))) {
-						run = Helper.removeLeadingZeros(cursor.getString(5));
-						lat = Helper.removeLeadingZeros(cursor.getString(7));
-						lon = Helper.removeLeadingZeros(cursor.getString(9));
-
-						Elevation = cursor.getString(11);
-						if(Elevation.equals("")) {
-							Elevation = params.get(ELEVATION);
-						}
-						Heading = cursor.getString(13);
-						DT = cursor.getString(15);
-						if(DT.equals("")) {
-							DT = "0";
-						}
-						Lighted = cursor.getString(17);
-						if(Lighted.equals("0") || Lighted.equals("")) {
-							Lighted = mContext.getString(R.string.No);
-						}
-						ILS = cursor.getString(19);
-						if(ILS.equals("")) {
-							ILS = mContext.getString(R.string.No);
-						}
-						VGSI = cursor.getString(21);
-						if(VGSI.equals("")) {
-							VGSI = mContext.getString(R.string.No);
-						}
-						Pattern = cursor.getString(23);
-						if(Pattern.equals("Y")) {
-							Pattern = "Right";
-						}else {
-							Pattern = "Left";
-						}
+            freq.put(typeof, freq.get(typeof)+"\n\n"+cursor.getString(2));                                
+        }
+        else {
+            freq.put(typeof, cursor.getString(2));
+        }
+    }
 
-						r = new Runway(run);
-						r.setElevation(Elevation);
-						r.setHeading(Heading);
-						r.setSurface(Surface);
-						r.setLength(Length);
-						r.setWidth(Width);
-						r.setThreshold(DT);
-						r.setLights(Lighted);
-						r.setPattern(Pattern);
-						r.setLongitude(lon);
-						r.setLatitude(lat);
-						r.setVariation(Variation);
-						r.setILS(ILS);
-						r.setVGSI(VGSI);
-
-						runways.add(r);
+    /**
+     * Read an AWOS row
+     * @param cursor
+     * @return
+     */
+    private Awos readAwos(Cursor cursor) {
+        // 0     1    2          3  4  5    6     7     8    9    10
+        // ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
+        Awos a = new Awos(cursor.getString(0)); // New AWOS instance
+
+        a.setType(cursor.getString(1));
+
+        a.setLat(Helper.removeLeadingZeros(cursor.getString(3)));
+        a.setLon(Helper.removeLeadingZeros(cursor.getString(4)));
+        a.setFreq1(cursor.getString(6));
+        a.setFreq2(cursor.getString(7));
+        a.setPhone1(cursor.getString(8));
+        a.setPhone2(cursor.getString(9));
+        a.setRemark(cursor.getString(10));
+
+        return a;
+    }
 
-					}
-    
-                }
-            }
+    /**
+     * Read a runway row, which has both ends of the runway
+     * @param cursor
+     * @param params of airport
+     * @param runways
+     */
+    private void readRunways(Cursor cursor, LinkedHashMap<String, String> params, LinkedList<Runway> runways) {
+        String Length = cursor.getString(1);
+        String Width = cursor.getString(2);
+        String Surface = cursor.getString(3);
+        String Variation = params.get(MAGNETIC_VARIATION);
+
+        String run = Helper.removeLeadingZeros(cursor.getString(4));
+        String lat = Helper.removeLeadingZeros(cursor.getString(6));
+        String lon = Helper.removeLeadingZeros(cursor.getString(8));
+
+        String Elevation = cursor.getString(10);
+        if(Elevation.equals("")) {
+            Elevation = params.get(ELEVATION);
         }
-        catch (Exception e) {
+        String Heading = cursor.getString(12);
+        String DT = cursor.getString(14);
+        if(DT.equals("")) {
+            DT = "0";
+        }
+        String Lighted = cursor.getString(16);
+        if(Lighted.equals("0") || Lighted.equals("")) {
+            Lighted = mContext.getString(R.string.No);
+        }
+        String ILS = cursor.getString(18);
+        if(ILS.equals("")) {
+            ILS = mContext.getString(R.string.No);
+        }
+        String VGSI = cursor.getString(20);
+        if(VGSI.equals("")) {
+            VGSI = mContext.getString(R.string.No);
         }
+        String Pattern = cursor.getString(22);
+        if(Pattern.equals("Y")) {
+            Pattern = "Right";
+        }
+        else {
+            Pattern = "Left";                        
+        }
+
+        Runway r = new Runway(run);
+        r.setElevation(Elevation);
+        r.setHeading(Heading);
+        r.setSurface(Surface);
+        r.setLength(Length);
+        r.setWidth(Width);
+        r.setThreshold(DT);
+        r.setLights(Lighted);
+        r.setPattern(Pattern);
+        r.setLongitude(lon);
+        r.setLatitude(lat);
+        r.setVariation(Variation);
+        r.setILS(ILS);
+        r.setVGSI(VGSI);
+
+        runways.add(r);
+
+        /*
+         * If the first runway is a helipad, don't add a second end
+         */
+        if(!(run.startsWith("H") || run.startsWith("h"))) {
+            run = Helper.removeLeadingZeros(cursor.getString(5));
+            lat = Helper.removeLeadingZeros(cursor.getString(7));
+            lon = Helper.removeLeadingZeros(cursor.getString(9));
+
+            Elevation = cursor.getString(11);
+            if(Elevation.equals("")) {
+                Elevation = params.get(ELEVATION);
+            }
+            Heading = cursor.getString(13);
+            DT = cursor.getString(15);
+            if(DT.equals("")) {
+                DT = "0";
+            }
+            Lighted = cursor.getString(17);
+            if(Lighted.equals("0") || Lighted.equals("")) {
+                Lighted = mContext.getString(R.string.No);
+            }
+            ILS = cursor.getString(19);
+            if(ILS.equals("")) {
+                ILS = mContext.getString(R.string.No);
+            }
+            VGSI = cursor.getString(21);
+            if(VGSI.equals("")) {
+                VGSI = mContext.getString(R.string.No);
+            }
+            Pattern = cursor.getString(23);
+            if(Pattern.equals("Y")) {
+                Pattern = "Right";
+            }else {
+                Pattern = "Left";
+            }
+
+            r = new Runway(run);
+            r.setElevation(Elevation);
+            r.setHeading(Heading);
+            r.setSurface(Surface);
+            r.setLength(Length);
+            r.setWidth(Width);
+            r.setThreshold(DT);
+            r.setLights(Lighted);
+            r.setPattern(Pattern);
+            r.setLongitude(lon);
+            r.setLatitude(lat);
+            r.setVariation(Variation);
+            r.setILS(ILS);
+            r.setVGSI(VGSI);
+
+            runways.add(r);
 
-        closes(cursor);        
+        }
     }
 
 
@@ -1334,9 +1674,9 @@ public class DataBaseHelper  {
          * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS    
          */
         
-        String qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "=='" + name                            
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "==?1"
+                + " or " + LOCATION_ID_DB + "=='K' || ?1;";
+        cursor = doQuery(qry, getMainDb(), name);
 
         try {
             /*
@@ -1377,9 +1717,9 @@ public class DataBaseHelper  {
 		 */
 
 		qry = "select * from " + TABLE_AIRPORT_AWOS + " where "
-				+ LOCATION_ID_DB + "=='" + name + "' or " + LOCATION_ID_DB
-				+ "=='K" + name + "';";
-		cursor = doQuery(qry, getMainDb());
+				+ LOCATION_ID_DB + "==?1 or " + LOCATION_ID_DB
+				+ "=='K' || ?1;";
+		cursor = doQuery(qry, getMainDb(), name);
 		// 0     1    2          3  4  5    6     7     8    9    10
 		// ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
 		try {
@@ -1412,9 +1752,8 @@ public class DataBaseHelper  {
 		 * Get CTAF and UNICOM info
 		 */
 		qry = "select * from " + TABLE_AIRPORTS + " where " + LOCATION_ID_DB
-				+ "=='" + name + "' or " + LOCATION_ID_DB + "=='K" + name
-				+ "';";
-		cursor = doQuery(qry, getMainDb());
+				+ "==?1 or " + LOCATION_ID_DB + "=='K' || ?1;";
+		cursor = doQuery(qry, getMainDb(), name);
 
 		try {
 			if (cursor != null) {
@@ -1477,9 +1816,9 @@ public class DataBaseHelper  {
          * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS    
          */
         
-        String qry = "select * from " + TABLE_AIRPORT_RUNWAYS + " where " + LOCATION_ID_DB + "=='" + name                            
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + TABLE_AIRPORT_RUNWAYS + " where " + LOCATION_ID_DB + "==?1"
+                + " or " + LOCATION_ID_DB + "=='K' || ?1;";
+        cursor = doQuery(qry, getMainDb(), name);
 
         try {
             /*
@@ -1522,9 +1861,9 @@ public class DataBaseHelper  {
          * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS    
          */
         
-        String qry = "select ARPElevation from " + TABLE_AIRPORTS + " where " + LOCATION_ID_DB + "=='" + name                            
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select ARPElevation from " + TABLE_AIRPORTS + " where " + LOCATION_ID_DB + "==?1"
+                + " or " + LOCATION_ID_DB + "=='K' || ?1;";
+        cursor = doQuery(qry, getMainDb(), name);
 
         try {
             /*
@@ -1581,8 +1920,8 @@ public class DataBaseHelper  {
          * Find with sqlite query
          */
         double corrFactor = Math.pow(Math.cos(Math.toRadians(lat)),2);
-        String asDist = ", ((" + LONGITUDE_DB + " - " + lon + ") * (" + LONGITUDE_DB  + " - " + lon + ") * " + corrFactor + " + "
-                + " (" + LATITUDE_DB + " - " + lat + ") * (" + LATITUDE_DB + " - " + lat + ")"
+        String asDist = ", ((" + LONGITUDE_DB + " - ?1) * (" + LONGITUDE_DB  + " - ?1) * ?3 + "
+                + " (" + LATITUDE_DB + " - ?2) * (" + LATITUDE_DB + " - ?2)"
                 + ") as dist";
         String qry = "select " + LOCATION_ID_DB + asDist + " from " + TABLE_AIRPORTS;
         if(!mPref.shouldShowAllFacilities()) {
@@ -1594,7 +1933,7 @@ public class DataBaseHelper  {
 
         qry += "dist < " + Preferences.MIN_TOUCH_MOVEMENT_SQ_DISTANCE + " order by dist limit 1;";
         
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, getMainDb(), lon, lat, corrFactor);
         String ret = null;
 
         try {
@@ -1624,11 +1963,11 @@ public class DataBaseHelper  {
          * Find with sqlite query
          */
         String qry = "select * from " + TABLE_SUA + " where ((";
-        qry += "(" + "lon" + " - " + lon + ") * (" + "lon"  + " - " + lon + ") + "
-                + "(" + "lat" + " - " + lat + ") * (" + "lat" + " - " + lat + ")"
+        qry += "(" + "lon" + " - ?1) * (" + "lon"  + " - ?1) + "
+                + "(" + "lat" + " - ?2) * (" + "lat" + " - ?2)"
                 + ") < 1);";
         
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, getMainDb(), lon, lat);
         String ret = "";
 
         try {
@@ -1673,10 +2012,11 @@ public class DataBaseHelper  {
         /*
          * Find with sqlite query
          */
-        String qry = "select * from " + TABLE_OBSTACLES + " where Height =='" + height + "' and " + 
-                "(" + LATITUDE_DB  + " > " + (lat - Obstacle.RADIUS) + ") and (" + LATITUDE_DB  + " < " + (lat + Obstacle.RADIUS) + ") and " +
-                "(" + LONGITUDE_DB + " > " + (lon - Obstacle.RADIUS) + ") and (" + LONGITUDE_DB + " < " + (lon + Obstacle.RADIUS) + ");";
-        Cursor cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + TABLE_OBSTACLES + " where Height ==? and " + 
+                "(" + LATITUDE_DB  + " > ?) and (" + LATITUDE_DB  + " < ?) and " +
+                "(" + LONGITUDE_DB + " > ?) and (" + LONGITUDE_DB + " < ?);";
+        Cursor cursor = doQuery(qry, getMainDb(), height,
+                lat - Obstacle.RADIUS, lat + Obstacle.RADIUS, lon - Obstacle.RADIUS, lon + Obstacle.RADIUS);
 
         try {
             if(cursor != null) {
@@ -1718,8 +2058,8 @@ public class DataBaseHelper  {
          * Find with sqlite query
          */
         String qry = "select * from " + table + 
-                " where " + LOCATION_ID_DB + "=='" + name + "';";
-        Cursor cursor = doQuery(qry, getMainDb());
+                " where " + LOCATION_ID_DB + "==?;";
+        Cursor cursor = doQuery(qry, getMainDb(), name);
         String ret = null;
 
         try {
@@ -1749,11 +2089,11 @@ public class DataBaseHelper  {
         /*
          * Silly that FAA gives K and P for some airports as ICAO
          */
-        String qry = "select File from " + TABLE_ALT + " where " + LOCATION_ID_DB + "==" + "'" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'K" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'P" + airportId + "'";
+        String qry = "select File from " + TABLE_ALT + " where " + LOCATION_ID_DB + "==?1" +
+                " or " + LOCATION_ID_DB + "=='K' || ?1" +
+                " or " + LOCATION_ID_DB + "=='P' || ?1";
         
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, getMainDb(), airportId);
 
         try {
             if(cursor != null) {
@@ -1767,11 +2107,11 @@ public class DataBaseHelper  {
         }
         closes(cursor);
 
-        qry = "select File from " + TABLE_TO + " where " + LOCATION_ID_DB + "==" + "'" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'K" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'P" + airportId + "'";
+        qry = "select File from " + TABLE_TO + " where " + LOCATION_ID_DB + "==?1" +
+                " or " + LOCATION_ID_DB + "=='K' || ?1" +
+                " or " + LOCATION_ID_DB + "=='P' || ?1";
         
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, getMainDb(), airportId);
 
         try {
             if(cursor != null) {
@@ -1799,32 +2139,6 @@ public class DataBaseHelper  {
     }
 
     
-    /**
-     * Search A/FD name for this airport
-     * @param airportId
-     * @return A/FD
-     */
-    public String findAFD(String airportId) {
-        
-        String ret = null;
-        String qry = "select File from " + TABLE_AFD + " where " + LOCATION_ID_DB + "==" + "'" + airportId + "'";
-        
-        Cursor cursor = doQuery(qry, getMainDb());
-
-        try {
-            if(cursor != null) {
-                if(cursor.moveToNext()) {
-                    ret = cursor.getString(0);
-                }
-            }
-        }
-        catch (Exception e) {
-        }
-        closes(cursor);
-        
-        return ret;
-    }
-
     /**
      *
      * @param lon
@@ -1835,15 +2149,31 @@ public class DataBaseHelper  {
     public LinkedList<Obstacle> findObstacles(double lon, double lat, int height) {
         
         LinkedList<Obstacle> list = new LinkedList<Obstacle>();
+
+        final DataBaseIndexes.ObstacleIndex index = mIndexes.getObstacles(mPref.mapsFolder() + "/" + getMainDb());
+        if(null != index) {
+            final int below = height - (int)Obstacle.HEIGHT_BELOW;
+            int ids[] = DataBaseIndexes.box(index.getIndex(), lon, lat, Obstacle.RADIUS, new SpatialIndex.Filter() {
+                @Override
+                public boolean accept(int id) {
+                    return index.getHeight(id) > below;
+                }
+            });
+            for(int id : ids) {
+                list.add(new Obstacle(index.getLongitude(id), index.getLatitude(id), index.getHeight(id)));
+            }
+            return list;
+        }
         
-        String qry = "select * from " + TABLE_OBSTACLES + " where (Height > " + (height - (int)Obstacle.HEIGHT_BELOW) + ") and " +
-                "(" + LATITUDE_DB  + " > " + (lat - Obstacle.RADIUS) + ") and (" + LATITUDE_DB  + " < " + (lat + Obstacle.RADIUS) + ") and " +
-                "(" + LONGITUDE_DB + " > " + (lon - Obstacle.RADIUS) + ") and (" + LONGITUDE_DB + " < " + (lon + Obstacle.RADIUS) + ");";
+        String qry = "select * from " + TABLE_OBSTACLES + " where (Height > ?) and " +
+                "(" + LATITUDE_DB  + " > ?) and (" + LATITUDE_DB  + " < ?) and " +
+                "(" + LONGITUDE_DB + " > ?) and (" + LONGITUDE_DB + " < ?);";
         /*
          * Find obstacles at below or higher in lon/lat radius
          * We ignore all obstacles 500 AGL below in our script
          */
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, getMainDb(), height - (int)Obstacle.HEIGHT_BELOW,
+                lat - Obstacle.RADIUS, lat + Obstacle.RADIUS, lon - Obstacle.RADIUS, lon + Obstacle.RADIUS);
         
         try {
             if(cursor != null) {
@@ -1870,126 +2200,64 @@ public class DataBaseHelper  {
     }
 
     /**
-     * 
-     * @param statement
+     * Find the closets tiles to current position
+     * @param lon
+     * @param lat
+     * @param offset
+     * @param p
+     * @param names
      * @return
      */
-    private Cursor doQueryFiles(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
+    public Tile findClosest(double lon, double lat, double offset[], double p[], int factor) {
 
-        /*
-         * 
-         */
-        synchronized(mUsersFiles) {
-            if(mDataBaseFiles == null) {
-                mUsersFiles = 0;
-                try {
-                    
-                    mDataBaseFiles = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseFiles = null;
-                }
-            }
-            if(mDataBaseFiles == null) {
-                return c;
-            }
-            mUsersFiles++;
-        }
-        
         /*
          * In case we fail
          */
-        
-        if(mDataBaseFiles == null) {
-            return c;
-        }
-        
-        if(!mDataBaseFiles.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseFiles.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
+        offset[0] = 0;
+        offset[1] = 0;
 
-    /**
-     * Close database
-     */
-    private void closesFiles(Cursor c) {
-        
-        try {
-            c.close();
-        }
-        catch (Exception e) {
-            
-        }
+        Tile t = findTile(lon, lat, factor);
+        if(null != t) {
+            /*
+             * Database only return center tile, we find tiles around it using arithmetic
+             */
+            mCenterTile = t;
 
-        synchronized(mUsersFiles) {
-            mUsersFiles--;
-            if((mDataBaseFiles != null) && (mUsersFiles <= 0)) {
-                try {
-                    mDataBaseFiles.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBaseFiles = null;
-                mUsersFiles = 0;
-            }
+            /*
+             * Position on tile
+             */
+            offset[0] = mCenterTile.getOffsetX(lon);
+            offset[1] = mCenterTile.getOffsetY(lat);
+            p[0] = mCenterTile.getPx();
+            p[1] = mCenterTile.getPy();
         }
+        return mCenterTile;        
     }
 
-    
     /**
-     * Find the closets tiles to current position
+     * Find the tile at a position, without changing the center tile
      * @param lon
      * @param lat
-     * @param offset
-     * @param p
-     * @param names
-     * @return
+     * @param factor
+     * @return null if none
      */
-    public Tile findClosest(double lon, double lat, double offset[], double p[], int factor) {
+    public Tile findTile(double lon, double lat, int factor) {
       
         String qry =
                 "select * from " + TABLE_FILES + " where " + 
-                "((latul - " + lat + ") > 0) and " +
-                "((latll - " + lat + ") < 0) and " + 
-                "((lonul - " + lon + ") < 0) and " + 
-                "((lonur - " + lon + ") > 0) and " +
-                "level like '%" + factor + "%';";
-        
-        /*
-         * In case we fail
-         */
-        offset[0] = 0;
-        offset[1] = 0;
+                "((latul - ?1) > 0) and " +
+                "((latll - ?1) < 0) and " + 
+                "((lonul - ?2) < 0) and " + 
+                "((lonur - ?2) > 0) and " +
+                "level like '%' || ?3 || '%';";
         
-        Cursor cursor = doQueryFiles(qry, getFilesDb());
+        Cursor cursor = doQuery(qry, getFilesDb(), lat, lon, Integer.toString(factor));
+        Tile tile = null;
         
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
-    
-                    /*
-                     * Database only return center tile, we find tiles around it using arithmetic
-                     */
-                    mCenterTile = new Tile(
+                    tile = new Tile(
                             mPref,
                             cursor.getString(0),
                             cursor.getDouble(1),
@@ -2003,22 +2271,14 @@ public class DataBaseHelper  {
                             cursor.getDouble(9),
                             cursor.getDouble(10),
                             cursor.getString(11));
-                  
-                    /*
-                     * Position on tile
-                     */
-                    offset[0] = mCenterTile.getOffsetX(lon);
-                    offset[1] = mCenterTile.getOffsetY(lat);
-                    p[0] = mCenterTile.getPx();
-                    p[1] = mCenterTile.getPy();
                 }
             }
         }
         catch (Exception e) {
         }
         
-        closesFiles(cursor);
-        return mCenterTile;        
+        closes(cursor);
+        return tile;
     }
 
     
@@ -2028,8 +2288,8 @@ public class DataBaseHelper  {
      * @return
      */
     public Tile findTile(String name) {
-        String query = "select * from " + TABLE_FILES + " where " + TILE_NAME + "=='" + name +"'";
-        Cursor cursor = doQueryFiles(query, getFilesDb());
+        String query = "select * from " + TABLE_FILES + " where " + TILE_NAME + "==?";
+        Cursor cursor = doQuery(query, getFilesDb(), name);
         Tile tile = null;
         try {
             if(cursor != null) {
@@ -2061,7 +2321,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesFiles(cursor);
+        closes(cursor);
         return tile;            
 
     }
@@ -2075,94 +2335,6 @@ public class DataBaseHelper  {
         return "weather.db";
     }
 
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryWeather(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersWeather) {
-            if(mDataBaseWeather == null) {
-                mUsersWeather = 0;
-                try {
-                    
-                    mDataBaseWeather = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseWeather = null;
-                }
-            }
-            if(mDataBaseWeather == null) {
-                return c;
-            }
-            mUsersWeather++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseWeather == null) {
-            return c;
-        }
-        
-        if(!mDataBaseWeather.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseWeather.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    /**
-     * Close database
-     */
-    private void closesWeather(Cursor c) {
-
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersWeather) {
-            mUsersWeather--;
-            if((mDataBaseWeather != null) && (mUsersWeather <= 0)) {
-                try {
-                    mDataBaseWeather.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBaseWeather = null;
-                mUsersWeather = 0;
-            }
-        }
-    }
-
-
     /**
      * 
      * @param station
@@ -2172,9 +2344,9 @@ public class DataBaseHelper  {
       
         Taf taf = null;
         String qry =
-                "select * from tafs where station_id='K" + station + "';";
+                "select * from tafs where station_id='K' || ?;";
         
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
+        Cursor cursor = doQuery(qry, getWeatherDb(), station);
         
         try {
             if(cursor != null) {
@@ -2190,7 +2362,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesWeather(cursor);
+        closes(cursor);
         return taf;        
     }
 
@@ -2203,9 +2375,9 @@ public class DataBaseHelper  {
       
         Metar metar = null;
         String qry =
-                "select * from metars where station_id='K" + station + "';";
+                "select * from metars where station_id='K' || ?;";
         
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
+        Cursor cursor = doQuery(qry, getWeatherDb(), station);
         
         try {
             if(cursor != null) {
@@ -2222,7 +2394,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesWeather(cursor);
+        closes(cursor);
         return metar;        
     }
 
@@ -2238,10 +2410,10 @@ public class DataBaseHelper  {
         WindsAloft wa = null;
         String qry =
                 "select * from wa order by " +
-                "((longitude - " + lon + ")*" + "(longitude - " + lon + ") + " +    
-                "(latitude - " + lat + ")*" + "(latitude - " + lat + ")) limit 1;";
+                "((longitude - ?1)*" + "(longitude - ?1) + " +    
+                "(latitude - ?2)*" + "(latitude - ?2)) limit 1;";
 
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
+        Cursor cursor = doQuery(qry, getWeatherDb(), lon, lat);
         
         try {
             if(cursor != null) {
@@ -2267,7 +2439,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesWeather(cursor);
+        closes(cursor);
         return wa;        
     }
 
@@ -2280,16 +2452,26 @@ public class DataBaseHelper  {
 
         LinkedList<Airep> airep = new LinkedList<Airep>();
 
+        DataBaseIndexes.AirepIndex index = mIndexes.getAireps(mPref.mapsFolder() + "/" + getWeatherDb());
+        if(null != index) {
+            int ids[] = DataBaseIndexes.box(index.getIndex(), lon, lat, Airep.RADIUS, null);
+            for(int id : ids) {
+                airep.add(index.getAirep(id));
+            }
+            return airep;
+        }
+
         /*
          * All aireps/pireps sep by \n
          */
         
         String qry =
                 "select * from apirep where " +                
-                "(" + "latitude"  + " > " + (lat - Airep.RADIUS) + ") and (" + "latitude"  + " < " + (lat + Airep.RADIUS) + ") and " +
-                "(" + "longitude" + " > " + (lon - Airep.RADIUS) + ") and (" + "longitude" + " < " + (lon + Airep.RADIUS) + ");";
+                "(" + "latitude"  + " > ?) and (" + "latitude"  + " < ?) and " +
+                "(" + "longitude" + " > ?) and (" + "longitude" + " < ?);";
      
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
+        Cursor cursor = doQuery(qry, getWeatherDb(),
+                lat - Airep.RADIUS, lat + Airep.RADIUS, lon - Airep.RADIUS, lon + Airep.RADIUS);
         
         try {
             if(cursor != null) {
@@ -2307,7 +2489,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesWeather(cursor);
+        closes(cursor);
         return airep;
     }
 
@@ -2327,7 +2509,7 @@ public class DataBaseHelper  {
         String qry =
                 "select * from airsig"; 
      
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
+        Cursor cursor = doQuery(qry, getWeatherDb());
         
         try {
             if(cursor != null) {
@@ -2351,98 +2533,11 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesWeather(cursor);
+        closes(cursor);
         return airsig;
     }
     
     
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryElev(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersElev) {
-            if(mDataBaseElev == null) {
-                mUsersElev = 0;
-                try {
-                    
-                    mDataBaseElev = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseElev = null;
-                }
-            }
-            if(mDataBaseElev == null) {
-                return c;
-            }
-            mUsersElev++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseElev == null) {
-            return c;
-        }
-        
-        if(!mDataBaseElev.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseElev.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    /**
-     * Close database
-     */
-    private void closesElev(Cursor c) {
-
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersElev) {
-            mUsersElev--;
-            if((mDataBaseElev != null) && (mUsersElev <= 0)) {
-                try {
-                    mDataBaseElev.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBaseElev = null;
-                mUsersElev = 0;
-            }
-        }
-    }
-
     /**
      * Find the closets tiles to current position
      * @param lon
@@ -2456,14 +2551,14 @@ public class DataBaseHelper  {
       
         String qry =
                 "select * from " + TABLE_FILES + " where " + 
-                "((latul - " + lat + ") > 0) and " +
-                "((latll - " + lat + ") < 0) and " + 
-                "((lonul - " + lon + ") < 0) and " + 
-                "((lonur - " + lon + ") > 0) and " +
-                "level like '%" + factor + "%';"; /* Get highest level tile for elev */
+                "((latul - ?1) > 0) and " +
+                "((latll - ?1) < 0) and " + 
+                "((lonul - ?2) < 0) and " + 
+                "((lonur - ?2) > 0) and " +
+                "level like '%' || ?3 || '%';"; /* Get highest level tile for elev */
         
         Tile t = null;
-        Cursor cursor = doQueryElev(qry, "maps.elv.db");
+        Cursor cursor = doQuery(qry, "maps.elv.db", lat, lon, Integer.toString(factor));
         
         try {
             if(cursor != null) {
@@ -2499,98 +2594,11 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesElev(cursor);
+        closes(cursor);
         return t;        
     }
 
 
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryProcedures(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersProcedures) {
-            if(mDataBaseProcedures == null) {
-                mUsersProcedures = 0;
-                try {
-                    
-                    mDataBaseProcedures = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseProcedures = null;
-                }
-            }
-            if(mDataBaseProcedures == null) {
-                return c;
-            }
-            mUsersProcedures++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseProcedures == null) {
-            return c;
-        }
-        
-        if(!mDataBaseProcedures.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseProcedures.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    /**
-     * Close database
-     */
-    private void closesProcedures(Cursor c) {
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersProcedures) {
-            mUsersProcedures--;
-            if((mDataBaseProcedures != null) && (mUsersProcedures <= 0)) {
-                try {
-                    mDataBaseProcedures.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBaseProcedures = null;
-                mUsersProcedures = 0;
-            }
-        }
-    }
-
-
     /**
      * 
      * @param name
@@ -2603,9 +2611,9 @@ public class DataBaseHelper  {
         LinkedList<String> ret = new LinkedList<String>();
         
         String qry =
-                "select * from " + TABLE_PROCEDURE + " where Airport='" + name + "' and AppType='" + type + "' and runway='"  + runway  + "';";
+                "select * from " + TABLE_PROCEDURE + " where Airport=? and AppType=? and runway=?;";
         
-        Cursor cursor = doQueryProcedures(qry, "procedures.db");
+        Cursor cursor = doQuery(qry, "procedures.db", name, type, runway);
         
         try {
             if(cursor != null) {
@@ -2628,7 +2636,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesProcedures(cursor);
+        closes(cursor);
         
         if(ret.size() > 0) {
             return ret;      
@@ -2637,93 +2645,6 @@ public class DataBaseHelper  {
         return null;
     }
     
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryPlates(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersPlates) {
-            if(mDataBasePlates == null) {
-                mUsersPlates = 0;
-                try {
-                    
-                    mDataBasePlates = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBasePlates = null;
-                }
-            }
-            if(mDataBasePlates == null) {
-                return c;
-            }
-            mUsersPlates++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBasePlates == null) {
-            return c;
-        }
-        
-        if(!mDataBasePlates.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBasePlates.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    /**
-     * Close database
-     */
-    private void closesPlates(Cursor c) {
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersPlates) {
-            mUsersPlates--;
-            if((mDataBasePlates != null) && (mUsersPlates <= 0)) {
-                try {
-                    mDataBasePlates.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBasePlates = null;
-                mUsersPlates = 0;
-            }
-        }
-    }
-
-    
     /**
      * 
      * @param name
@@ -2734,9 +2655,9 @@ public class DataBaseHelper  {
         HashMap<String, float[]> ret = new HashMap<String, float[]>();
         
         String qry =
-                "select * from VisionFix" + " where AirportID='" + name + "';";
+                "select * from VisionFix" + " where AirportID=?;";
         
-        Cursor cursor = doQueryPlates(qry, "geoplates.db");
+        Cursor cursor = doQuery(qry, "geoplates.db", name);
         
         try {
             if(cursor != null) {
@@ -2779,7 +2700,7 @@ public class DataBaseHelper  {
         catch (Exception e) {
         }
         
-        closesPlates(cursor);
+        closes(cursor);
         
         if(ret.size() > 0) {
             return ret;      
@@ -2788,95 +2709,6 @@ public class DataBaseHelper  {
         return null;
     }
 
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryGeoPlates(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersGeoPlates) {
-            if(mDataBaseGeoPlates == null) {
-                mUsersGeoPlates = 0;
-                try {
-                    
-                    mDataBaseGeoPlates = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseGeoPlates = null;
-                }
-            }
-            if(mDataBaseGeoPlates == null) {
-                return c;
-            }
-            mUsersGeoPlates++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseGeoPlates == null) {
-            return c;
-        }
-        
-        if(!mDataBaseGeoPlates.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseGeoPlates.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    
-    /**
-     * Close database
-     */
-    private void closesGeoPlates(Cursor c) {
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersGeoPlates) {
-            mUsersGeoPlates--;
-            if((mDataBaseGeoPlates != null) && (mUsersGeoPlates <= 0)) {
-                try {
-                    mDataBaseGeoPlates.close();
-                }
-                
-                
-                catch (Exception e) {
-                }
-                mDataBaseGeoPlates = null;
-                mUsersGeoPlates = 0;
-            }
-        }
-    }
-
     /**
      * 
      * @param name
@@ -2886,8 +2718,8 @@ public class DataBaseHelper  {
         float ret[] = new float[4];
         boolean found = false;
         
-        String qry = "select * from " + TABLE_GEOPLATES + " where " + PROC + "=='" + name +"'";
-        Cursor cursor = doQueryGeoPlates(qry, "geoplates.db");
+        String qry = "select * from " + TABLE_GEOPLATES + " where " + PROC + "==?";
+        Cursor cursor = doQuery(qry, "geoplates.db", name);
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
@@ -2905,7 +2737,7 @@ public class DataBaseHelper  {
         }
         catch (Exception e) {
         }
-        closesGeoPlates(cursor);
+        closes(cursor);
 
         if(found == false) {
             return null;
@@ -2921,11 +2753,11 @@ public class DataBaseHelper  {
      */
     public Coordinate findNavaid(String name) {
     	Coordinate coord = null;
-	    String qry = "select * from " + TABLE_NAV + " where " + LOCATION_ID_DB + "=='" + name + "' and Type != 'VOT' limit 1;";
+	    String qry = "select * from " + TABLE_NAV + " where " + LOCATION_ID_DB + "==? and Type != 'VOT' limit 1;";
 	    /*
 	     * NAV
 	     */
-	    Cursor cursor = doQuery(qry, getMainDb());
+	    Cursor cursor = doQuery(qry, getMainDb(), name);
 	    
 	    try {
 	        if(cursor != null) {
@@ -2943,11 +2775,11 @@ public class DataBaseHelper  {
 	    	return coord;
 	    }
 	    
-	    qry = "select * from " + TABLE_FIX + " where " + LOCATION_ID_DB + "=='" + name + "' limit 1;";
+	    qry = "select * from " + TABLE_FIX + " where " + LOCATION_ID_DB + "==? limit 1;";
 	    /*
 	     * Fix
 	     */
-	    cursor = doQuery(qry, getMainDb());
+	    cursor = doQuery(qry, getMainDb(), name);
 	    
 	    try {
 	        if(cursor != null) {
@@ -2959,6 +2791,8 @@ public class DataBaseHelper  {
 	    catch (Exception e) {
 	    }
 
+	    closes(cursor);
+
 	    return coord;
     }
 
@@ -2974,9 +2808,9 @@ public class DataBaseHelper  {
         /*
          * Limit to airports taken by array airports
          */
-        String qry = "select * from " + TABLE_AIRWAYS + " where name='" + name + "'" +
+        String qry = "select * from " + TABLE_AIRWAYS + " where name=?" +
         		" order by cast(sequence as integer)";
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, getMainDb(), name);
 
         try {
             if(cursor != null) {
@@ -2999,95 +2833,6 @@ public class DataBaseHelper  {
 
 	
 	
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryFuel(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersFuel) {
-            if(mDataBaseFuel == null) {
-                mUsersFuel = 0;
-                try {
-                    
-                    mDataBaseFuel = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseFuel = null;
-                }
-            }
-            if(mDataBaseFuel == null) {
-                return c;
-            }
-            mUsersFuel++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseFuel == null) {
-            return c;
-        }
-        
-        if(!mDataBaseFuel.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseFuel.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    
-    /**
-     * Close database
-     */
-    private void closesFuel(Cursor c) {
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersFuel) {
-            mUsersFuel--;
-            if((mDataBaseFuel != null) && (mUsersFuel <= 0)) {
-                try {
-                    mDataBaseFuel.close();
-                }
-                
-                
-                catch (Exception e) {
-                }
-                mDataBaseFuel = null;
-                mUsersFuel = 0;
-            }
-        }
-    }
-
     /**
      * 
      * @param name
@@ -3097,9 +2842,9 @@ public class DataBaseHelper  {
 
     	LinkedList<String> ret = new LinkedList<String>();
     	
-        String qry = "select * from " + TABLE_FUEL + " where airport =='" + name +"'" + 
+        String qry = "select * from " + TABLE_FUEL + " where airport ==?" + 
         		" order by reported desc limit 6";
-        Cursor cursor = doQueryFuel(qry, "fuel.db");
+        Cursor cursor = doQuery(qry, "fuel.db", name);
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
@@ -3117,101 +2862,11 @@ public class DataBaseHelper  {
         }
         catch (Exception e) {
         }
-        closesFuel(cursor);
+        closes(cursor);
         return ret;
     }
 
     
-    /**
-     * 
-     * @param statement
-     * @return
-     */
-    private Cursor doQueryRatings(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
-        if(!(new File(path).exists())) {
-            return null;
-        }
-
-        /*
-         * 
-         */
-        synchronized(mUsersRatings) {
-            if(mDataBaseRatings == null) {
-                mUsersRatings = 0;
-                try {
-                    
-                    mDataBaseRatings = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseRatings = null;
-                }
-            }
-            if(mDataBaseRatings == null) {
-                return c;
-            }
-            mUsersRatings++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseRatings == null) {
-            return c;
-        }
-        
-        if(!mDataBaseRatings.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBaseRatings.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
-        }
-
-        return c;
-    }
-
-    
-    /**
-     * Close database
-     */
-    private void closesRatings(Cursor c) {
-        try {
-            if(null != c) {
-                c.close();
-            }
-        }
-        catch (Exception e) {
-            
-        }
-
-        synchronized(mUsersRatings) {
-            mUsersRatings--;
-            if((mDataBaseRatings != null) && (mUsersRatings <= 0)) {
-                try {
-                    mDataBaseRatings.close();
-                }
-                
-                
-                catch (Exception e) {
-                }
-                mDataBaseRatings = null;
-                mUsersRatings = 0;
-            }
-        }
-    }
-
-    
     /**
      * 
      * @param name
@@ -3220,9 +2875,9 @@ public class DataBaseHelper  {
 	public LinkedList<String> findRatings(String name) {
     	LinkedList<String> ret = new LinkedList<String>();
     	
-        String qry = "select * from " + TABLE_RATINGS + " where airport =='" + name +"'" + 
+        String qry = "select * from " + TABLE_RATINGS + " where airport ==?" + 
         		" order by reported desc";
-        Cursor cursor = doQueryRatings(qry, "ratings.db");
+        Cursor cursor = doQuery(qry, "ratings.db", name);
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
@@ -3240,7 +2895,7 @@ public class DataBaseHelper  {
         }
         catch (Exception e) {
         }
-        closesRatings(cursor);
+        closes(cursor);
         return ret;
 	}
 
@@ -0,0 +1,703 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+import com.ds.avare.place.Destination;
+import com.ds.avare.weather.Airep;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * @author zkhan
+ * Spatial indexes of airports, obstacles and PIREPs, and the search index of facility names.
+ * Each is built in the background from its database on first use and built again when the database file changes.
+ * A null index means it is not ready or could not be built, and the caller should fall back to SQL.
+ */
+public class DataBaseIndexes {
+
+    private DataBaseConnections mConnections;
+
+    private Holder<AirportIndex> mAirports;
+    private Holder<ObstacleIndex> mObstacles;
+    private Holder<AirepIndex> mAireps;
+    private Holder<FacilityIndex> mFacilities;
+
+    /**
+     *
+     * @param connections
+     */
+    public DataBaseIndexes(DataBaseConnections connections) {
+        mConnections = connections;
+
+        mAirports = new Holder<AirportIndex>() {
+            @Override
+            protected AirportIndex build(SQLiteDatabase db, int generation) {
+                return new AirportIndex(db, generation);
+            }
+        };
+
+        mObstacles = new Holder<ObstacleIndex>() {
+            @Override
+            protected ObstacleIndex build(SQLiteDatabase db, int generation) {
+                return new ObstacleIndex(db, generation);
+            }
+        };
+
+        mAireps = new Holder<AirepIndex>() {
+            @Override
+            protected AirepIndex build(SQLiteDatabase db, int generation) {
+                return new AirepIndex(db, generation);
+            }
+        };
+
+        mFacilities = new Holder<FacilityIndex>() {
+            @Override
+            protected FacilityIndex build(SQLiteDatabase db, int generation) {
+                return new FacilityIndex(db, generation);
+            }
+        };
+    }
+
+    /**
+     *
+     * @param path of main database
+     * @return
+     */
+    public AirportIndex getAirports(String path) {
+        return mAirports.get(path);
+    }
+
+    /**
+     *
+     * @param path of main database
+     * @return
+     */
+    public ObstacleIndex getObstacles(String path) {
+        return mObstacles.get(path);
+    }
+
+    /**
+     *
+     * @param path of weather database
+     * @return
+     */
+    public AirepIndex getAireps(String path) {
+        return mAireps.get(path);
+    }
+
+    /**
+     *
+     * @param path of main database
+     * @return
+     */
+    public FacilityIndex getFacilities(String path) {
+        return mFacilities.get(path);
+    }
+
+    /**
+     * Find all points in a box
+     * @param index
+     * @param lon
+     * @param lat
+     * @param radius half size of box in degrees
+     * @param filter
+     * @return ids of points, trimmed
+     */
+    public static int[] box(SpatialIndex index, double lon, double lat, double radius, SpatialIndex.Filter filter) {
+        int out[] = new int[256];
+        while(true) {
+            int found = index.box(lon - radius, lat - radius, lon + radius, lat + radius, filter, out);
+            if(found < out.length || out.length >= index.size()) {
+                int ret[] = new int[found];
+                System.arraycopy(out, 0, ret, 0, found);
+                return ret;
+            }
+            out = new int[out.length * 2];
+        }
+    }
+
+    /**
+     * Keeps one index up to date with its database.
+     * The index is built in the background, callers use SQL until it is ready.
+     * A database that an index cannot be built from is not tried again until it changes.
+     */
+    private abstract class Holder<T extends Built> {
+        private T mIndex;
+        private boolean mBuilding;
+        private int mFailedGeneration;
+
+        protected abstract T build(SQLiteDatabase db, int generation);
+
+        private T get(String path) {
+            DataBaseConnections.Connection conn = mConnections.acquire(path);
+            if(null == conn) {
+                return null;
+            }
+            int generation = conn.getGeneration();
+            mConnections.release(conn);
+
+            synchronized(this) {
+                if(null != mIndex && mIndex.mGeneration == generation) {
+                    return mIndex;
+                }
+                /*
+                 * Old one is of no use, let it go
+                 */
+                mIndex = null;
+                if(generation != mFailedGeneration && !mBuilding) {
+                    mBuilding = true;
+                    Thread t = new Thread(new Builder(path, generation), "Index");
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    t.start();
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Builds from one generation of the database
+         */
+        private class Builder implements Runnable {
+            private String mPath;
+            private int mGeneration;
+
+            private Builder(String path, int generation) {
+                mPath = path;
+                mGeneration = generation;
+            }
+
+            @Override
+            public void run() {
+                T index = null;
+                boolean failed = false;
+                DataBaseConnections.Connection conn = mConnections.acquire(mPath);
+                if(null != conn) {
+                    try {
+                        /*
+                         * If changed meanwhile, next get() builds the new one
+                         */
+                        if(conn.getGeneration() == mGeneration) {
+                            index = build(conn.getDataBase(), mGeneration);
+                            index.mGeneration = mGeneration;
+                        }
+                    }
+                    catch (Exception e) {
+                        /*
+                         * Table missing or old database. Use SQL.
+                         */
+                        index = null;
+                        failed = true;
+                    }
+                    mConnections.release(conn);
+                }
+                synchronized(Holder.this) {
+                    mBuilding = false;
+                    if(failed) {
+                        mFailedGeneration = mGeneration;
+                    }
+                    else if(null != index) {
+                        mIndex = index;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Base of all indexes
+     */
+    static class Built {
+        /*
+         * Null for indexes that are not spatial
+         */
+        protected SpatialIndex mIndex;
+
+        /*
+         * Of the database this was built from
+         */
+        protected int mGeneration;
+
+        public SpatialIndex getIndex() {
+            return mIndex;
+        }
+    }
+
+    /**
+     * Airports with their longest runway
+     */
+    public static class AirportIndex extends Built {
+        private long mRowId[];
+        private boolean mIsAirport[];
+        private int mRunwayLength[];
+        private String mRunway[];
+
+        private AirportIndex(SQLiteDatabase db, int generation) {
+            Cursor c = db.rawQuery(
+                    "select " + DataBaseHelper.TABLE_AIRPORTS + ".rowid," +
+                    DataBaseHelper.TABLE_AIRPORTS + "." + DataBaseHelper.LONGITUDE_DB + "," +
+                    DataBaseHelper.TABLE_AIRPORTS + "." + DataBaseHelper.LATITUDE_DB + "," +
+                    DataBaseHelper.TABLE_AIRPORTS + "." + DataBaseHelper.TYPE_DB + "," +
+                    "max(CAST(" + DataBaseHelper.TABLE_AIRPORT_RUNWAYS + ".Length AS INTEGER))," +
+                    DataBaseHelper.TABLE_AIRPORT_RUNWAYS + ".Length," +
+                    DataBaseHelper.TABLE_AIRPORT_RUNWAYS + ".Width" +
+                    " from " + DataBaseHelper.TABLE_AIRPORTS + "," + DataBaseHelper.TABLE_AIRPORT_RUNWAYS +
+                    " where " + DataBaseHelper.TABLE_AIRPORTS + "." + DataBaseHelper.LOCATION_ID_DB + "=" +
+                    DataBaseHelper.TABLE_AIRPORT_RUNWAYS + "." + DataBaseHelper.LOCATION_ID_DB +
+                    " group by " + DataBaseHelper.TABLE_AIRPORTS + "." + DataBaseHelper.LOCATION_ID_DB, null);
+            try {
+                int num = c.getCount();
+                float lon[] = new float[num];
+                float lat[] = new float[num];
+                mRowId = new long[num];
+                mIsAirport = new boolean[num];
+                mRunwayLength = new int[num];
+                mRunway = new String[num];
+                int i = 0;
+                while(c.moveToNext() && i < num) {
+                    mRowId[i] = c.getLong(0);
+                    lon[i] = c.getFloat(1);
+                    lat[i] = c.getFloat(2);
+                    mIsAirport[i] = "AIRPORT".equals(c.getString(3));
+                    mRunwayLength[i] = c.getInt(4);
+                    mRunway[i] = c.getString(5) + "X" + c.getString(6);
+                    i++;
+                }
+                mIndex = new SpatialIndex(lon, lat, i, generation);
+            }
+            finally {
+                c.close();
+            }
+        }
+
+        public long getRowId(int id) {
+            return mRowId[id];
+        }
+
+        public boolean isAirport(int id) {
+            return mIsAirport[id];
+        }
+
+        public int getRunwayLength(int id) {
+            return mRunwayLength[id];
+        }
+
+        /**
+         * @return longest runway as length X width
+         */
+        public String getRunway(int id) {
+            return mRunway[id];
+        }
+    }
+
+    /**
+     * Obstacles, all in memory
+     */
+    public static class ObstacleIndex extends Built {
+        private float mLon[];
+        private float mLat[];
+        private int mHeight[];
+
+        private ObstacleIndex(SQLiteDatabase db, int generation) {
+            Cursor c = db.rawQuery(
+                    "select " + DataBaseHelper.LATITUDE_DB + "," + DataBaseHelper.LONGITUDE_DB + ",Height from " +
+                    DataBaseHelper.TABLE_OBSTACLES, null);
+            try {
+                int num = c.getCount();
+                mLon = new float[num];
+                mLat = new float[num];
+                mHeight = new int[num];
+                int i = 0;
+                while(c.moveToNext() && i < num) {
+                    mLat[i] = c.getFloat(0);
+                    mLon[i] = c.getFloat(1);
+                    mHeight[i] = (int)c.getFloat(2);
+                    i++;
+                }
+                mIndex = new SpatialIndex(mLon, mLat, i, generation);
+            }
+            finally {
+                c.close();
+            }
+        }
+
+        public double getLongitude(int id) {
+            return mLon[id];
+        }
+
+        public double getLatitude(int id) {
+            return mLat[id];
+        }
+
+        public int getHeight(int id) {
+            return mHeight[id];
+        }
+    }
+
+    /**
+     * PIREPs, all in memory
+     */
+    public static class AirepIndex extends Built {
+        private Airep mAireps[];
+
+        private AirepIndex(SQLiteDatabase db, int generation) {
+            Cursor c = db.rawQuery("select * from apirep", null);
+            try {
+                int num = c.getCount();
+                mAireps = new Airep[num];
+                float lon[] = new float[num];
+                float lat[] = new float[num];
+                int i = 0;
+                while(c.moveToNext() && i < num) {
+                    Airep a = new Airep();
+                    a.rawText = c.getString(0);
+                    a.time = c.getString(1);
+                    a.lon = c.getFloat(2);
+                    a.lat = c.getFloat(3);
+                    a.reportType = c.getString(4);
+                    mAireps[i] = a;
+                    lon[i] = a.lon;
+                    lat[i] = a.lat;
+                    i++;
+                }
+                mIndex = new SpatialIndex(lon, lat, i, generation);
+            }
+            finally {
+                c.close();
+            }
+        }
+
+        /**
+         * @return a copy, as callers change the text
+         */
+        public Airep getAirep(int id) {
+            return new Airep(mAireps[id]);
+        }
+    }
+
+    /**
+     * Identifiers of airports, navaids and fixes sorted for prefix search, and airport cities.
+     * Made once a cycle, a search is a binary search instead of a query per table.
+     */
+    public static class FacilityIndex extends Built {
+        private static final int BASE = 0;
+        private static final int NAVAID = 1;
+        private static final int FIX = 2;
+        private static final String DESTINATION[] = {Destination.BASE, Destination.NAVAID, Destination.FIX};
+        
+        private String mId[];
+        private String mName[];
+        private String mDbType[];
+        private String mCity[];
+        private byte mDest[];
+        private float mLon[];
+        private float mLat[];
+        private int mNum;
+        private int mById[];
+        private int mByCity[];
+        
+        /*
+         * Matches of last prefix search, before ranking
+         */
+        private String mLastName;
+        private String mLastUnprefixed;
+        private boolean mLastAll;
+        private int mLast[];
+        private int mLastNum;
+
+        private FacilityIndex(SQLiteDatabase db, int generation) {
+            mNum = 0;
+            mId = new String[1024];
+            mName = new String[1024];
+            mDbType = new String[1024];
+            mCity = new String[1024];
+            mDest = new byte[1024];
+            mLon = new float[1024];
+            mLat = new float[1024];
+            
+            /*
+             * Few types, keep one copy of each
+             */
+            HashMap<String, String> types = new HashMap<String, String>();
+            String cols = DataBaseHelper.LOCATION_ID_DB + "," + DataBaseHelper.FACILITY_NAME_DB + "," +
+                    DataBaseHelper.TYPE_DB + "," + DataBaseHelper.LONGITUDE_DB + "," + DataBaseHelper.LATITUDE_DB;
+            load(db, "select " + cols + ",City from " + DataBaseHelper.TABLE_AIRPORTS, BASE, types);
+            load(db, "select " + cols + " from " + DataBaseHelper.TABLE_NAV + " where Type != 'VOT'", NAVAID, types);
+            load(db, "select " + cols + " from " + DataBaseHelper.TABLE_FIX, FIX, types);
+            
+            mById = sort(mId, mNum);
+            mByCity = sort(mCity, mNum);
+        }
+
+        /**
+         * Add all rows of a query
+         */
+        private void load(SQLiteDatabase db, String qry, int dest, HashMap<String, String> types) {
+            Cursor c = db.rawQuery(qry, null);
+            try {
+                boolean city = c.getColumnCount() > 5;
+                while(c.moveToNext()) {
+                    if(mNum == mId.length) {
+                        grow();
+                    }
+                    String id = c.getString(0);
+                    if(null == id) {
+                        continue;
+                    }
+                    String type = c.getString(2);
+                    String t = types.get(type);
+                    if(null == t) {
+                        types.put(type, type);
+                        t = type;
+                    }
+                    mId[mNum] = id.toUpperCase(Locale.getDefault());
+                    mName[mNum] = c.getString(1);
+                    mDbType[mNum] = t;
+                    mCity[mNum] = city ? c.getString(5) : null;
+                    mDest[mNum] = (byte)dest;
+                    mLon[mNum] = c.getFloat(3);
+                    mLat[mNum] = c.getFloat(4);
+                    mNum++;
+                }
+            }
+            finally {
+                c.close();
+            }
+        }
+
+        private void grow() {
+            int len = mId.length * 2;
+            String id[] = new String[len];
+            String name[] = new String[len];
+            String type[] = new String[len];
+            String city[] = new String[len];
+            byte dest[] = new byte[len];
+            float lon[] = new float[len];
+            float lat[] = new float[len];
+            System.arraycopy(mId, 0, id, 0, mNum);
+            System.arraycopy(mName, 0, name, 0, mNum);
+            System.arraycopy(mDbType, 0, type, 0, mNum);
+            System.arraycopy(mCity, 0, city, 0, mNum);
+            System.arraycopy(mDest, 0, dest, 0, mNum);
+            System.arraycopy(mLon, 0, lon, 0, mNum);
+            System.arraycopy(mLat, 0, lat, 0, mNum);
+            mId = id;
+            mName = name;
+            mDbType = type;
+            mCity = city;
+            mDest = dest;
+            mLon = lon;
+            mLat = lat;
+        }
+
+        /**
+         * Ids of non null keys in order of key
+         */
+        private static int[] sort(final String keys[], int num) {
+            int count = 0;
+            for(int i = 0; i < num; i++) {
+                if(null != keys[i]) {
+                    count++;
+                }
+            }
+            Integer order[] = new Integer[count];
+            count = 0;
+            for(int i = 0; i < num; i++) {
+                if(null != keys[i]) {
+                    order[count++] = i;
+                }
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return keys[a].compareTo(keys[b]);
+                }
+            });
+            int ret[] = new int[count];
+            for(int i = 0; i < count; i++) {
+                ret[i] = order[i];
+            }
+            return ret;
+        }
+
+        /**
+         * 
+         * @return position of first key not less than key
+         */
+        private static int lowerBound(String keys[], int sorted[], String key) {
+            int lo = 0;
+            int hi = sorted.length;
+            while(lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if(keys[sorted[mid]].compareTo(key) < 0) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Airports in a city
+         * @param city upper case
+         * @param params
+         */
+        public void findCity(String city, LinkedHashMap<String, String> params) {
+            for(int i = lowerBound(mCity, mByCity, city); i < mByCity.length; i++) {
+                int id = mByCity[i];
+                if(!mCity[id].equals(city)) {
+                    break;
+                }
+                put(id, params);
+            }
+        }
+
+        /**
+         * Facilities whose identifier starts with name, or is name when exact.
+         * With enough letters, airports are also found without a leading K.
+         * Ranked exact match first, then airports, other bases, navaids, fixes, each nearest first.
+         * @param name upper case
+         * @param exact
+         * @param all include bases that are not airports
+         * @param lon where we are, NaN to not rank by distance
+         * @param lat
+         * @param params
+         */
+        public synchronized void search(String name, boolean exact, boolean all, double lon, double lat, LinkedHashMap<String, String> params) {
+            String unprefixed = name.length() > 2 && name.charAt(0) == 'K' ? name.substring(1) : null;
+            int found[] = new int[64];
+            int num = 0;
+            
+            /*
+             * Typing more letters only narrows the last matches, unless K is now dropped for airports
+             */
+            boolean refine = !exact && null != mLastName && mLastAll == all && name.startsWith(mLastName) &&
+                    (null == unprefixed || null != mLastUnprefixed);
+            if(refine) {
+                found = new int[Math.max(1, mLastNum)];
+                for(int i = 0; i < mLastNum; i++) {
+                    int id = mLast[i];
+                    if(mId[id].startsWith(name) || (null != unprefixed && mDest[id] == BASE && mId[id].startsWith(unprefixed))) {
+                        found[num++] = id;
+                    }
+                }
+            }
+            for(int pass = 0; pass < 2 && !refine; pass++) {
+                String key = name;
+                if(1 == pass) {
+                    if(null == unprefixed) {
+                        break;
+                    }
+                    key = unprefixed;
+                }
+                for(int i = lowerBound(mId, mById, key); i < mById.length; i++) {
+                    int id = mById[i];
+                    if(exact ? !mId[id].equals(key) : !mId[id].startsWith(key)) {
+                        break;
+                    }
+                    if(mDest[id] == BASE) {
+                        if(!all && !isAirport(id)) {
+                            continue;
+                        }
+                    }
+                    else if(1 == pass) {
+                        continue;
+                    }
+                    if(num == found.length) {
+                        int f[] = new int[num * 2];
+                        System.arraycopy(found, 0, f, 0, num);
+                        found = f;
+                    }
+                    found[num++] = id;
+                }
+            }
+            
+            if(!exact) {
+                mLastName = name;
+                mLastUnprefixed = unprefixed;
+                mLastAll = all;
+                mLast = found;
+                mLastNum = num;
+            }
+            
+            /*
+             * Rank
+             */
+            double cos = Math.cos(Math.toRadians(lat));
+            final double dist[] = new double[num];
+            final int rank[] = new int[num];
+            Integer order[] = new Integer[num];
+            for(int i = 0; i < num; i++) {
+                int id = found[i];
+                order[i] = i;
+                rank[i] = rank(id, name, unprefixed);
+                if(!Double.isNaN(lon) && !Double.isNaN(lat)) {
+                    double dx = (mLon[id] - lon) * cos;
+                    double dy = mLat[id] - lat;
+                    dist[i] = dx * dx + dy * dy;
+                }
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    if(rank[a] != rank[b]) {
+                        return rank[a] < rank[b] ? -1 : 1;
+                    }
+                    return Double.compare(dist[a], dist[b]);
+                }
+            });
+            
+            for(int i = 0; i < num; i++) {
+                put(found[order[i]], params);
+            }
+        }
+
+        /**
+         * 
+         * @return smaller is shown first
+         */
+        private int rank(int id, String name, String unprefixed) {
+            int rank;
+            if(mDest[id] == BASE) {
+                rank = isAirport(id) ? 0 : 1;
+            }
+            else {
+                rank = mDest[id] + 1;
+            }
+            if(!mId[id].equals(name) && !(mDest[id] == BASE && mId[id].equals(unprefixed))) {
+                rank += 4;
+            }
+            return rank;
+        }
+
+        private boolean isAirport(int id) {
+            return "AIRPORT".equals(mDbType[id]);
+        }
+
+        /**
+         * Put as search does
+         */
+        private void put(int id, LinkedHashMap<String, String> params) {
+            new StringPreference(DESTINATION[mDest[id]], mDbType[id], mName[id], mId[id]).putInHash(params);
+        }
+    }
+}
@@ -59,6 +59,21 @@ public class DataSource {
         return(dbHelper.isPresent());
     }
     
+    /**
+     * Close all open databases, for when database files are being replaced
+     */
+    public void closeDataBases() {
+        dbHelper.closeDataBases();
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public String getDataBaseStats() {
+        return dbHelper.getDataBaseStats();
+    }
+
     /**
      * @param lon
      * @param lat
@@ -78,6 +93,17 @@ public class DataSource {
         return(dbHelper.findTile(name));
     }
 
+    /**
+     * Tile at a position, the center tile is not changed
+     * @param lon
+     * @param lat
+     * @param factor
+     * @return
+     */
+    public Tile findTile(double lon, double lat, int factor) {
+        return(dbHelper.findTile(lon, lat, factor));
+    }
+
     /**
      * @param lon
      * @param lat
@@ -96,6 +122,28 @@ public class DataSource {
     public void findDestination(String name, String type, String dbType, LinkedHashMap<String, String> params, LinkedList<Runway> runways, LinkedHashMap<String, String> freq,  LinkedList<Awos> awos) {
         dbHelper.findDestination(name, type, dbType, params, runways, freq, awos);
     }
+
+    /**
+     * 
+     * @param name
+     * @param type
+     * @param dbType
+     * @return null if not found
+     */
+    public DestinationCache.Entry findDestination(String name, String type, String dbType) {
+        return dbHelper.findDestination(name, type, dbType);
+    }
+
+    /**
+     * 
+     * @param names
+     * @param types
+     * @param dbTypes
+     * @return for each name, null if not found
+     */
+    public DestinationCache.Entry[] findDestinations(String names[], String types[], String dbTypes[]) {
+        return dbHelper.findDestinations(names, types, dbTypes);
+    }
     
     /**
      */
@@ -112,6 +160,19 @@ public class DataSource {
     public Airport[] findClosestAirports(double lon, double lat, String minRunwayLength) {
         return dbHelper.findClosestAirports(lon, lat, minRunwayLength);        
     }
+
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @param minRunwayLength
+     * @param k
+     * @param indexed
+     * @return
+     */
+    public Airport[] findClosestAirports(double lon, double lat, String minRunwayLength, int k, boolean indexed[]) {
+        return dbHelper.findClosestAirports(lon, lat, minRunwayLength, k, indexed);
+    }
     
     /**
      * 
@@ -160,6 +221,18 @@ public class DataSource {
         dbHelper.search(name, params, exact);    
     }
 
+    /**
+     * 
+     * @param name
+     * @param params
+     * @param exact
+     * @param lon where we are, to show nearest first
+     * @param lat
+     */
+    public void search(String name, LinkedHashMap<String, String> params, boolean exact, double lon, double lat) {
+        dbHelper.search(name, params, exact, lon, lat);    
+    }
+
     /**
      * 
      * @param name
@@ -179,15 +252,6 @@ public class DataSource {
         return dbHelper.findMinimums(airportId);
     }
 
-    /**
-     * 
-     * @param airportId
-     * @return Name of AFD file
-     */
-    public String findAFD(String airportId) {
-        return dbHelper.findAFD(airportId);
-    }
-
     /**
      * 
      * @param lon
@@ -0,0 +1,165 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+package com.ds.avare.storage;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.ds.avare.place.Awos;
+import com.ds.avare.place.Runway;
+
+/**
+ * @author zkhan
+ * Recently found facilities with their runways, frequencies, AWOS and A/FD, so a destination
+ * visited again or a plan loaded again does not go to the database.
+ * Everything is dropped when the database is opened again, like after a chart cycle download.
+ */
+public class DestinationCache {
+
+    /*
+     * Facilities kept, least recently used goes first
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    private LinkedHashMap<String, Entry> mEntries;
+
+    /*
+     * Generation of the database the entries came from
+     */
+    private int mGeneration;
+
+    /**
+     *
+     */
+    public DestinationCache() {
+        mEntries = new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+        mGeneration = 0;
+    }
+
+    /**
+     *
+     * @param name
+     * @param type
+     * @param dbType
+     * @return
+     */
+    private static String getKey(String name, String type, String dbType) {
+        return type + "," + (null == dbType ? "" : dbType) + "," + name;
+    }
+
+    /**
+     * Drop entries from an older database
+     * @param generation
+     * @return false if generation itself is older than the entries
+     */
+    private boolean check(int generation) {
+        if(generation < mGeneration) {
+            return false;
+        }
+        if(generation > mGeneration) {
+            mEntries.clear();
+            mGeneration = generation;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param name
+     * @param type
+     * @param dbType
+     * @param generation of the database now open
+     * @return null if not cached
+     */
+    public synchronized Entry get(String name, String type, String dbType, int generation) {
+        if(!check(generation)) {
+            return null;
+        }
+        return mEntries.get(getKey(name, type, dbType));
+    }
+
+    /**
+     *
+     * @param name
+     * @param type
+     * @param dbType
+     * @param generation of the database this was found in
+     * @param entry
+     */
+    public synchronized void put(String name, String type, String dbType, int generation, Entry entry) {
+        if(!check(generation)) {
+            return;
+        }
+        mEntries.put(getKey(name, type, dbType), entry);
+    }
+
+    /**
+     *
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * One facility as found in the database.
+     * Not changed once cached, callers get copies of the lists.
+     */
+    public static class Entry {
+        LinkedHashMap<String, String> mParams;
+        LinkedList<Runway> mRunways;
+        LinkedHashMap<String, String> mFreq;
+        LinkedList<Awos> mAwos;
+        String mAfd;
+
+        Entry() {
+            mParams = new LinkedHashMap<String, String>();
+            mRunways = new LinkedList<Runway>();
+            mFreq = new LinkedHashMap<String, String>();
+            mAwos = new LinkedList<Awos>();
+            mAfd = null;
+        }
+
+        /**
+         * Add everything found to these
+         * @param params
+         * @param runways
+         * @param freq
+         * @param awos
+         */
+        public void copyTo(LinkedHashMap<String, String> params, LinkedList<Runway> runways,
+                LinkedHashMap<String, String> freq, LinkedList<Awos> awos) {
+            params.putAll(mParams);
+            runways.addAll(mRunways);
+            freq.putAll(mFreq);
+            awos.addAll(mAwos);
+        }
+
+        /**
+         *
+         * @return Name of A/FD file, null if none
+         */
+        public String getAfd() {
+            return mAfd;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.List;
 
 import com.ds.avare.MainActivity;
 import com.ds.avare.R;
+import com.ds.avare.utils.BitmapHolder;
 
 import android.app.Activity;
 import android.content.Context;
@@ -299,6 +300,18 @@ public class Preferences {
         return ret;  
     }
 
+    /**
+     * Tiles kept in memory besides the ones on screen, so panning back or zooming back does not decode again.
+     * One eighth of heap, but no more than the tiles on screen.
+     * @return
+     */
+    public static int getTilesCacheNumber() {
+        int[] tiles = getTilesNumber();
+        long mem = Runtime.getRuntime().maxMemory();
+        long tile = BitmapHolder.WIDTH * BitmapHolder.HEIGHT * 2;
+        return (int)Math.min(mem / 8 / tile, tiles[0] * tiles[1]);
+    }
+
     /**
      * 
      * @return
@@ -633,6 +646,18 @@ public class Preferences {
         return(mPref.getBoolean(mContext.getString(R.string.ADSBTraffic), true));
     }
 
+    /**
+     * Traffic alert sensitivity, 0 is off
+     * @return
+     */
+    public int getTrafficAlert() {
+        try {
+            return(Integer.parseInt(mPref.getString(mContext.getString(R.string.TrafficAlert), "2")));
+        } catch (Exception x) {
+            return 2;
+        }
+    }
+
     /**
      * 
      * @return
@@ -821,6 +846,14 @@ public class Preferences {
         return mPref.getBoolean(mContext.getString(R.string.GameTFR), false);
     }
 
+    /**
+     * 
+     * @return
+     */
+    public boolean showDiagnostics() {
+        return mPref.getBoolean(mContext.getString(R.string.Diagnostics), false);
+    }
+
     /**
      * 
      * @return
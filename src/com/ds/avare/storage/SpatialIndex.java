@@ -0,0 +1,509 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.storage;
+
+import java.util.ArrayList;
+
+/**
+ * @author zkhan
+ * Static R-tree over lon/lat points, packed with Sort-Tile-Recursive.
+ * Built once from database rows, then answers box and k nearest queries without touching the database.
+ * Points are identified by their index in the arrays the tree was built from.
+ */
+public class SpatialIndex {
+
+    /*
+     * Entries per node
+     */
+    private static final int NODE_SIZE = 16;
+
+    private float mLon[];
+    private float mLat[];
+    private int mCount;
+
+    /*
+     * Point indexes in leaf order
+     */
+    private int mOrder[];
+
+    /*
+     * Levels from leaves (0) to root
+     */
+    private ArrayList<Level> mLevels;
+
+    /*
+     * Database generation this was built from
+     */
+    private int mGeneration;
+
+    /**
+     * Decides if a point takes part in a query
+     */
+    public interface Filter {
+        boolean accept(int id);
+    }
+
+    /**
+     * Distance from a point to a point or to a box, used to order nearest search.
+     * Box distance must never be more than the distance to any point in the box.
+     */
+    public interface Metric {
+        double point(double lon, double lat, double plon, double plat);
+        double box(double lon, double lat, double minLon, double minLat, double maxLon, double maxLat);
+    }
+
+    /**
+     * Squared distance in degrees, same as ordering done in SQL before
+     */
+    public static final Metric DEGREES = new Metric() {
+        @Override
+        public double point(double lon, double lat, double plon, double plat) {
+            double dx = lon - plon;
+            double dy = lat - plat;
+            return dx * dx + dy * dy;
+        }
+
+        @Override
+        public double box(double lon, double lat, double minLon, double minLat, double maxLon, double maxLat) {
+            double dx = lon < minLon ? minLon - lon : (lon > maxLon ? lon - maxLon : 0);
+            double dy = lat < minLat ? minLat - lat : (lat > maxLat ? lat - maxLat : 0);
+            return dx * dx + dy * dy;
+        }
+    };
+
+    /**
+     * Great circle distance as angle in radians.
+     * For boxes this is the larger of the latitude gap and the cross track distance to the nearest
+     * meridian of the box, both of which are never more than the distance to any point in the box.
+     */
+    public static final Metric GREAT_CIRCLE = new Metric() {
+        @Override
+        public double point(double lon, double lat, double plon, double plat) {
+            double lat1 = Math.toRadians(lat);
+            double lat2 = Math.toRadians(plat);
+            double dLat = lat2 - lat1;
+            double dLon = Math.toRadians(plon - lon);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                    Math.cos(lat1) * Math.cos(lat2) *
+                    Math.sin(dLon / 2) * Math.sin(dLon / 2);
+            return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        }
+
+        @Override
+        public double box(double lon, double lat, double minLon, double minLat, double maxLon, double maxLat) {
+            double dLat = lat < minLat ? minLat - lat : (lat > maxLat ? lat - maxLat : 0);
+            double dLon = lon < minLon ? minLon - lon : (lon > maxLon ? lon - maxLon : 0);
+            double cross = 0;
+            if(dLon > 0) {
+                cross = Math.asin(Math.cos(Math.toRadians(lat)) * Math.sin(Math.toRadians(Math.min(dLon, 90))));
+            }
+            return Math.max(Math.toRadians(dLat), cross);
+        }
+    };
+
+    /**
+     * @param lon longitudes of points
+     * @param lat latitudes of points
+     * @param count number of points in arrays
+     * @param generation of the database these came from
+     */
+    public SpatialIndex(float lon[], float lat[], int count, int generation) {
+        mLon = lon;
+        mLat = lat;
+        mCount = count;
+        mGeneration = generation;
+        mLevels = new ArrayList<Level>();
+        mOrder = new int[count];
+        for(int i = 0; i < count; i++) {
+            mOrder[i] = i;
+        }
+        build();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Find points in a box
+     * @param minLon
+     * @param minLat
+     * @param maxLon
+     * @param maxLat
+     * @param filter can be null
+     * @param out ids of points found
+     * @return number of points in out, never more than out.length
+     */
+    public int box(double minLon, double minLat, double maxLon, double maxLat, Filter filter, int out[]) {
+        if(mLevels.size() == 0) {
+            return 0;
+        }
+        int top = mLevels.size() - 1;
+        int found = 0;
+        Level root = mLevels.get(top);
+        for(int node = 0; node < root.mCount && found < out.length; node++) {
+            found = box(top, node, minLon, minLat, maxLon, maxLat, filter, out, found);
+        }
+        return found;
+    }
+
+    /**
+     * Find k nearest points. Results are sorted by distance.
+     * @param lon
+     * @param lat
+     * @param metric
+     * @param filter can be null
+     * @param out ids of points found, its length is k
+     * @param dist distances of points found, same length as out
+     * @return number of points found
+     */
+    public int nearest(double lon, double lat, Metric metric, Filter filter, int out[], double dist[]) {
+        if(mLevels.size() == 0 || out.length == 0) {
+            return 0;
+        }
+        Nearest n = new Nearest(lon, lat, metric, filter, out, dist);
+        int top = mLevels.size() - 1;
+        Level root = mLevels.get(top);
+        for(int node = 0; node < root.mCount; node++) {
+            nearest(top, node, n);
+        }
+        return n.mFound;
+    }
+
+    /**
+     *
+     */
+    private int box(int level, int node, double minLon, double minLat, double maxLon, double maxLat,
+            Filter filter, int out[], int found) {
+        Level l = mLevels.get(level);
+        if(l.mMinLon[node] > maxLon || l.mMaxLon[node] < minLon ||
+                l.mMinLat[node] > maxLat || l.mMaxLat[node] < minLat) {
+            return found;
+        }
+        if(level == 0) {
+            for(int i = l.mStart[node]; i < l.mEnd[node] && found < out.length; i++) {
+                int id = mOrder[i];
+                if(mLon[id] < minLon || mLon[id] > maxLon || mLat[id] < minLat || mLat[id] > maxLat) {
+                    continue;
+                }
+                if(null != filter && !filter.accept(id)) {
+                    continue;
+                }
+                out[found++] = id;
+            }
+            return found;
+        }
+        for(int child = l.mStart[node]; child < l.mEnd[node] && found < out.length; child++) {
+            found = box(level - 1, child, minLon, minLat, maxLon, maxLat, filter, out, found);
+        }
+        return found;
+    }
+
+    /**
+     * Branch and bound, nodes farther than the k-th best so far are skipped
+     */
+    private void nearest(int level, int node, Nearest n) {
+        Level l = mLevels.get(level);
+        double d = n.mMetric.box(n.mLon, n.mLat, l.mMinLon[node], l.mMinLat[node], l.mMaxLon[node], l.mMaxLat[node]);
+        if(n.mFound == n.mOut.length && d >= n.mDist[n.mFound - 1]) {
+            return;
+        }
+        if(level == 0) {
+            for(int i = l.mStart[node]; i < l.mEnd[node]; i++) {
+                int id = mOrder[i];
+                if(null != n.mFilter && !n.mFilter.accept(id)) {
+                    continue;
+                }
+                n.add(id, n.mMetric.point(n.mLon, n.mLat, mLon[id], mLat[id]));
+            }
+            return;
+        }
+
+        /*
+         * Visit closest children first so pruning starts early
+         */
+        Level c = mLevels.get(level - 1);
+        int start = l.mStart[node];
+        int num = l.mEnd[node] - start;
+        int idx[] = new int[num];
+        float key[] = new float[num];
+        for(int i = 0; i < num; i++) {
+            idx[i] = i;
+            key[i] = (float)n.mMetric.box(n.mLon, n.mLat, c.mMinLon[start + i], c.mMinLat[start + i],
+                    c.mMaxLon[start + i], c.mMaxLat[start + i]);
+        }
+        sort(idx, key, 0, num);
+        for(int i = 0; i < num; i++) {
+            nearest(level - 1, start + idx[i], n);
+        }
+    }
+
+    /**
+     * Sort-Tile-Recursive packing, bottom up
+     */
+    private void build() {
+        if(mCount == 0) {
+            return;
+        }
+
+        /*
+         * Leaves over points
+         */
+        float cLon[] = new float[mCount];
+        float cLat[] = new float[mCount];
+        for(int i = 0; i < mCount; i++) {
+            cLon[i] = mLon[i];
+            cLat[i] = mLat[i];
+        }
+        int order[] = pack(mOrder, cLon, cLat, mCount);
+        mOrder = order;
+        Level leaves = new Level(nodes(mCount));
+        for(int node = 0; node < leaves.mCount; node++) {
+            int start = node * NODE_SIZE;
+            int end = Math.min(start + NODE_SIZE, mCount);
+            leaves.set(node, start, end);
+            for(int i = start; i < end; i++) {
+                int id = mOrder[i];
+                leaves.extend(node, mLon[id], mLat[id], mLon[id], mLat[id]);
+            }
+        }
+        mLevels.add(leaves);
+
+        /*
+         * Upper levels over nodes of level below
+         */
+        Level below = leaves;
+        while(below.mCount > 1) {
+            int num = below.mCount;
+            int idx[] = new int[num];
+            cLon = new float[num];
+            cLat = new float[num];
+            for(int i = 0; i < num; i++) {
+                idx[i] = i;
+                cLon[i] = (below.mMinLon[i] + below.mMaxLon[i]) / 2;
+                cLat[i] = (below.mMinLat[i] + below.mMaxLat[i]) / 2;
+            }
+            idx = pack(idx, cLon, cLat, num);
+            below.reorder(idx);
+
+            Level up = new Level(nodes(num));
+            for(int node = 0; node < up.mCount; node++) {
+                int start = node * NODE_SIZE;
+                int end = Math.min(start + NODE_SIZE, num);
+                up.set(node, start, end);
+                for(int i = start; i < end; i++) {
+                    up.extend(node, below.mMinLon[i], below.mMinLat[i], below.mMaxLon[i], below.mMaxLat[i]);
+                }
+            }
+            mLevels.add(up);
+            below = up;
+        }
+    }
+
+    /**
+     *
+     * @param num
+     * @return
+     */
+    private static int nodes(int num) {
+        return (num + NODE_SIZE - 1) / NODE_SIZE;
+    }
+
+    /**
+     * Order entries in vertical slices by longitude, then each slice by latitude
+     * @return ids in packed order
+     */
+    private static int[] pack(int ids[], float cLon[], float cLat[], int num) {
+        int idx[] = new int[num];
+        for(int i = 0; i < num; i++) {
+            idx[i] = i;
+        }
+        sort(idx, cLon, 0, num);
+        int slices = (int)Math.ceil(Math.sqrt(nodes(num)));
+        int perSlice = slices * NODE_SIZE;
+        for(int start = 0; start < num; start += perSlice) {
+            sort(idx, cLat, start, Math.min(start + perSlice, num));
+        }
+        int ret[] = new int[num];
+        for(int i = 0; i < num; i++) {
+            ret[i] = ids[idx[i]];
+        }
+        return ret;
+    }
+
+    /**
+     * Sort idx[from, to) by key[idx]
+     */
+    private static void sort(int idx[], float key[], int from, int to) {
+        while(to - from > 8) {
+            float pivot = key[idx[(from + to) >>> 1]];
+            int i = from;
+            int j = to - 1;
+            while(i <= j) {
+                while(key[idx[i]] < pivot) {
+                    i++;
+                }
+                while(key[idx[j]] > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    int t = idx[i];
+                    idx[i] = idx[j];
+                    idx[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            /*
+             * Recurse on smaller part, loop on larger
+             */
+            if(j - from < to - i) {
+                sort(idx, key, from, j + 1);
+                from = i;
+            }
+            else {
+                sort(idx, key, i, to);
+                to = j + 1;
+            }
+        }
+        for(int i = from + 1; i < to; i++) {
+            int t = idx[i];
+            float k = key[t];
+            int j = i - 1;
+            while(j >= from && key[idx[j]] > k) {
+                idx[j + 1] = idx[j];
+                j--;
+            }
+            idx[j + 1] = t;
+        }
+    }
+
+    /**
+     * Nodes of one level of the tree
+     */
+    private static class Level {
+        private int mCount;
+        private float mMinLon[];
+        private float mMinLat[];
+        private float mMaxLon[];
+        private float mMaxLat[];
+        private int mStart[];
+        private int mEnd[];
+
+        private Level(int count) {
+            mCount = count;
+            mMinLon = new float[count];
+            mMinLat = new float[count];
+            mMaxLon = new float[count];
+            mMaxLat = new float[count];
+            mStart = new int[count];
+            mEnd = new int[count];
+        }
+
+        private void set(int node, int start, int end) {
+            mStart[node] = start;
+            mEnd[node] = end;
+            mMinLon[node] = Float.MAX_VALUE;
+            mMinLat[node] = Float.MAX_VALUE;
+            mMaxLon[node] = -Float.MAX_VALUE;
+            mMaxLat[node] = -Float.MAX_VALUE;
+        }
+
+        private void extend(int node, float minLon, float minLat, float maxLon, float maxLat) {
+            mMinLon[node] = Math.min(mMinLon[node], minLon);
+            mMinLat[node] = Math.min(mMinLat[node], minLat);
+            mMaxLon[node] = Math.max(mMaxLon[node], maxLon);
+            mMaxLat[node] = Math.max(mMaxLat[node], maxLat);
+        }
+
+        /**
+         * Put node order[i] at i
+         */
+        private void reorder(int order[]) {
+            mMinLon = permute(mMinLon, order);
+            mMinLat = permute(mMinLat, order);
+            mMaxLon = permute(mMaxLon, order);
+            mMaxLat = permute(mMaxLat, order);
+            int start[] = new int[mCount];
+            int end[] = new int[mCount];
+            for(int i = 0; i < mCount; i++) {
+                start[i] = mStart[order[i]];
+                end[i] = mEnd[order[i]];
+            }
+            mStart = start;
+            mEnd = end;
+        }
+
+        private static float[] permute(float in[], int order[]) {
+            float out[] = new float[in.length];
+            for(int i = 0; i < in.length; i++) {
+                out[i] = in[order[i]];
+            }
+            return out;
+        }
+    }
+
+    /**
+     * State of one nearest search, best k kept sorted by distance
+     */
+    private static class Nearest {
+        private double mLon;
+        private double mLat;
+        private Metric mMetric;
+        private Filter mFilter;
+        private int mOut[];
+        private double mDist[];
+        private int mFound;
+
+        private Nearest(double lon, double lat, Metric metric, Filter filter, int out[], double dist[]) {
+            mLon = lon;
+            mLat = lat;
+            mMetric = metric;
+            mFilter = filter;
+            mOut = out;
+            mDist = dist;
+            mFound = 0;
+        }
+
+        private void add(int id, double d) {
+            if(mFound == mOut.length) {
+                if(d >= mDist[mFound - 1]) {
+                    return;
+                }
+                mFound--;
+            }
+            int i = mFound - 1;
+            while(i >= 0 && mDist[i] > d) {
+                mOut[i + 1] = mOut[i];
+                mDist[i + 1] = mDist[i];
+                i--;
+            }
+            mOut[i + 1] = id;
+            mDist[i + 1] = d;
+            mFound++;
+        }
+    }
+}
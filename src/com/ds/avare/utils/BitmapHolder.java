@@ -20,7 +20,9 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.os.Build;
 
 /**
  * @author zkhan
@@ -60,6 +62,11 @@ public class BitmapHolder {
 	 * 
 	 */
 	private boolean mFound = false;
+
+	/**
+	 * When this was last used, for LRU
+	 */
+	private long mUsed = 0;
 	
     /**
      * Transform for scale/translate
@@ -192,6 +199,101 @@ public class BitmapHolder {
         }
     }
 
+    /**
+     * Decode a tile file straight into the bitmap of this holder so no new bitmap is allocated.
+     * When the file cannot be decoded in place (older Android, different size), it is decoded into a
+     * bitmap from the pool and drawn here.
+     * @param pref
+     * @param name of tile
+     * @param pool
+     * @return false if the file is missing or could not be decoded
+     */
+    public boolean decodeInBitmap(Preferences pref, String name, BitmapPool pool) {
+        if(null == mBitmap || null == mCanvas || null == name) {
+            return false;
+        }
+        String path = pref.mapsFolder() + "/" + name;
+        if(!(new File(path)).exists()) {
+            return false;
+        }
+
+        /*
+         * Newer Android can decode a smaller file into our bitmap by changing its size,
+         * which would leave it out of step with our size and canvas. Only decode in place on a match.
+         */
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB &&
+                bounds.outWidth == mWidth && bounds.outHeight == mHeight) {
+            BitmapFactory.Options opt = new BitmapFactory.Options();
+            opt.inPreferredConfig = mBitmap.getConfig();
+            opt.inSampleSize = 1;
+            opt.inMutable = true;
+            opt.inBitmap = mBitmap;
+            try {
+                Bitmap b = BitmapFactory.decodeFile(path, opt);
+                if(b == mBitmap) {
+                    pool.hit();
+                    mName = name;
+                    return true;
+                }
+                if(null != b) {
+                    b.recycle();
+                }
+            }
+            catch(IllegalArgumentException e) {
+                /*
+                 * Cannot reuse our bitmap for this file
+                 */
+            }
+            catch(OutOfMemoryError e) {
+            }
+        }
+
+        int dims[] = new int[2];
+        dims[0] = bounds.outWidth > 0 ? bounds.outWidth : WIDTH;
+        dims[1] = bounds.outHeight > 0 ? bounds.outHeight : HEIGHT;
+        BitmapFactory.Options opt = new BitmapFactory.Options();
+        opt.inPreferredConfig = Bitmap.Config.RGB_565;
+        opt.inSampleSize = 1;
+        Bitmap scratch = null;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            scratch = pool.get(dims[0], dims[1], Bitmap.Config.RGB_565);
+            opt.inMutable = true;
+            opt.inBitmap = scratch;
+        }
+        Bitmap b = null;
+        try {
+            b = BitmapFactory.decodeFile(path, opt);
+        }
+        catch(IllegalArgumentException e) {
+        }
+        catch(OutOfMemoryError e) {
+        }
+        if(null == b) {
+            pool.put(scratch);
+            return false;
+        }
+        if(b != scratch) {
+            pool.allocated();
+        }
+
+        if(b.getWidth() < mWidth || b.getHeight() < mHeight) {
+            mBitmap.eraseColor(Color.GRAY);
+        }
+        mTransform.setTranslate(0, 0);
+        mCanvas.drawBitmap(b, mTransform, null);
+        mName = name;
+
+        if(b != scratch) {
+            b.recycle();
+        }
+        pool.put(scratch);
+        return true;
+    }
+
     /**
      * @param name
      * Get bitmap from a diagram / plate file
@@ -311,6 +413,22 @@ public class BitmapHolder {
         mFree = free;
     }
     
+    /**
+     * 
+     * @param used
+     */
+    public void setUsed(long used) {
+        mUsed = used;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public long getUsed() {
+        return mUsed;
+    }
+    
     /**
      * 
      * @param nothing in it?
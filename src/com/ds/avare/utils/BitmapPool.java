@@ -0,0 +1,144 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import java.util.LinkedList;
+
+import android.graphics.Bitmap;
+
+/**
+ * @author zkhan
+ * Keeps decoded bitmaps around so they can be decoded into again instead of allocating new ones.
+ * Counts how often a bitmap was reused, how often none was free, and how many were allocated.
+ */
+public class BitmapPool {
+
+    private LinkedList<Bitmap> mFree;
+    private int mMax;
+
+    private int mHits;
+    private int mMisses;
+    private int mAllocations;
+
+    /**
+     * 
+     * @param max bitmaps kept free
+     */
+    public BitmapPool(int max) {
+        mFree = new LinkedList<Bitmap>();
+        mMax = max;
+        mHits = 0;
+        mMisses = 0;
+        mAllocations = 0;
+    }
+
+    /**
+     * Get a free bitmap of this size and config, or allocate one
+     * @param width
+     * @param height
+     * @param config
+     * @return null if out of memory
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        for(Bitmap b : mFree) {
+            if(b.getWidth() == width && b.getHeight() == height && b.getConfig() == config) {
+                mFree.remove(b);
+                mHits++;
+                return b;
+            }
+        }
+        mMisses++;
+        try {
+            Bitmap b = Bitmap.createBitmap(width, height, config);
+            b.setDensity(Bitmap.DENSITY_NONE);
+            mAllocations++;
+            return b;
+        }
+        catch(OutOfMemoryError e) {
+        }
+        return null;
+    }
+
+    /**
+     * Give back a bitmap taken with get(). Recycled if pool is full.
+     * @param b
+     */
+    public synchronized void put(Bitmap b) {
+        if(null == b || b.isRecycled()) {
+            return;
+        }
+        if(mFree.size() >= mMax || !b.isMutable()) {
+            b.recycle();
+            return;
+        }
+        mFree.add(b);
+    }
+
+    /**
+     * A decode went into a bitmap that was already there
+     */
+    public synchronized void hit() {
+        mHits++;
+    }
+
+    /**
+     * A decode had to allocate without the pool
+     */
+    public synchronized void allocated() {
+        mMisses++;
+        mAllocations++;
+    }
+
+    /**
+     * Free all kept bitmaps
+     */
+    public synchronized void clear() {
+        for(Bitmap b : mFree) {
+            b.recycle();
+        }
+        mFree.clear();
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public synchronized int getHits() {
+        return mHits;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public synchronized int getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public synchronized int getAllocations() {
+        return mAllocations;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public synchronized String getStats() {
+        return "hits " + mHits + " misses " + mMisses + " allocations " + mAllocations;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.LinkedList;
 import java.util.Locale;
 import java.util.TimeZone;
 
+import com.ds.avare.network.TFRParser;
 import com.ds.avare.shapes.TFRShape;
 import com.ds.avare.storage.Preferences;
 
@@ -583,32 +584,6 @@ public class Helper {
         return null;
     }
     
-    /**
-     * 
-     * @param data
-     */
-    private static String readFromFile(String filename) {
-        File file = new File(filename);
-        byte b[] = null;
-        try {
-            if(file.exists()) {
-                b = new byte[(int)file.length()];
-                InputStream fi = new FileInputStream(file);              
-                fi.read(b);
-                fi.close();
-            }
-        }
-        catch (Exception e) {
-            return null;
-        }
-        
-        if(null != b) {
-            return new String(b);
-        }
-        return null;
-    }
-    
-
     /**
      * 
      * @param airport
@@ -622,51 +597,31 @@ public class Helper {
         LinkedList<TFRShape> shapeList = new LinkedList<TFRShape>();
 
         String filename = new Preferences(ctx).mapsFolder() + "/tfr.txt";
-        String data = readFromFile(filename);
-        if(null != data) {
-            /*
-             * Find date of last file download
-             */
-            File file = new File(filename);
-            Date time = new Date(file.lastModified());
-   
-            /*
-             * Now read from file
-             */
-            String tokens[] = data.split(",");
-            TFRShape shape = null;
-            /*
-             * Add shapes from latitude, longitude
-             */
-            for(int id = 0; id < tokens.length; id++) {
-                if(tokens[id].contains("TFR:: ")) {
-                    if(null != shape) {
-                        shape.makePolygon();
-                        shapeList.add(shape);
-                    }                                 
-                    shape = new TFRShape(tokens[id].replace(
-                            "TFR:: ", "@ " + time.toString()).
-                            replace("Top", "\n" + "Top      ").
-                            replace("Low", "\n" + "Bottom   ").
-                            replace("Eff", "\n" + "Effective").
-                            replace("Exp", "\n" + "Expires  "));
-                    continue;
-                }
-                try {
-                    /*
-                     * If we get bad input from Govt. site. 
-                     */
-                    shape.add(Double.parseDouble(tokens[id + 1]),
-                            Double.parseDouble(tokens[id]), false);
-                }
-                catch (Exception e) {
-                    
-                }
-                id++;
+        File file = new File(filename);
+        if(!file.exists()) {
+            return shapeList;
+        }
+        
+        /*
+         * Find date of last file download
+         */
+        Date time = new Date(file.lastModified());
+
+        /*
+         * Now read from file, leaving out expired TFRs
+         */
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+            shapeList = TFRParser.parse(reader, "@ " + time.toString(), System.currentTimeMillis());
+        }
+        catch (Exception e) {
+        }
+        if(null != reader) {
+            try {
+                reader.close();
             }
-            if(null != shape) {
-                shape.makePolygon();
-                shapeList.add(shape);
+            catch (Exception e) {
             }
         }
         
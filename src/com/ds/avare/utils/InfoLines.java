@@ -112,7 +112,9 @@ public class InfoLines {
     static final int ID_FLD_CDI = 16;
     static final int ID_FLD_FPR = 17;
     static final int ID_FLD_FUL = 18;
-    static final int ID_FLD_MAX = 19;
+    static final int ID_FLD_TFR = 19;
+    static final int ID_FLD_TRF = 20;
+    static final int ID_FLD_MAX = 21;
     static final String NOVALUE = "     ";
 
     static final double TITLE_TO_TEXT_RATIO = 2.5;
@@ -796,6 +798,24 @@ public class InfoLines {
             break;
         }
 
+        case ID_FLD_TFR: {
+            if (null != mService) {
+                if (null != mService.getTFRMonitor()) {
+                    return mService.getTFRMonitor().getDisplay();
+                }
+            }
+            break;
+        }
+
+        case ID_FLD_TRF: {
+            if (null != mService) {
+                if (null != mService.getTrafficMonitor()) {
+                    return mService.getTrafficMonitor().getDisplay();
+                }
+            }
+            break;
+        }
+
         case ID_FLD_FUL: {
             if (null != mService) {
                 if (null != mService.getFuelTimer()) {
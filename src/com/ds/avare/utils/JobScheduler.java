@@ -0,0 +1,300 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * @author zkhan
+ * Runs background jobs by name. 
+ * A new request for a job replaces one that has not started, and interrupts one that is running.
+ * Only one request of a job runs at a time. Results are given back on the UI thread, unless a newer
+ * request came in meanwhile, in which case they are dropped.
+ */
+public class JobScheduler {
+
+    private LinkedHashMap<String, Slot> mSlots;
+    private ExecutorService mExecutor;
+    private Handler mHandler;
+    private volatile boolean mShutdown;
+
+    /**
+     * A background job
+     */
+    public static abstract class Job {
+        /**
+         * Runs in background
+         * @param request what was posted
+         * @return result to give to done()
+         * @throws InterruptedException when a newer request came in
+         */
+        protected abstract Object run(Object request) throws InterruptedException;
+
+        /**
+         * Runs on UI thread with result of latest request
+         * @param result
+         */
+        protected abstract void done(Object result);
+    }
+
+    /**
+     * 
+     */
+    public JobScheduler() {
+        mSlots = new LinkedHashMap<String, Slot>();
+        mHandler = new Handler(Looper.getMainLooper());
+        mShutdown = false;
+        mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "Job");
+            }
+        });
+    }
+
+    /**
+     * Add a job to run with post()
+     * @param name
+     * @param job
+     */
+    public synchronized void add(String name, Job job) {
+        mSlots.put(name, new Slot(name, job));
+    }
+
+    /**
+     * Ask a job to run
+     * @param name
+     * @param request passed to job
+     */
+    public void post(String name, Object request) {
+        Slot s;
+        synchronized(this) {
+            s = mSlots.get(name);
+            if(null == s || mShutdown) {
+                return;
+            }
+        }
+        synchronized(s) {
+            s.mSequence++;
+            if(s.mHasRequest) {
+                /*
+                 * Never started
+                 */
+                s.mDrops++;
+            }
+            s.mRequest = request;
+            s.mHasRequest = true;
+            if(null != s.mThread) {
+                s.mThread.interrupt();
+            }
+            if(s.mRunning) {
+                /*
+                 * Runner picks this up when done
+                 */
+                return;
+            }
+            s.mRunning = true;
+        }
+        try {
+            mExecutor.execute(new Runner(s));
+        }
+        catch(Exception e) {
+            synchronized(s) {
+                s.mRunning = false;
+            }
+        }
+    }
+
+    /**
+     * Drop a waiting request and stop a running one. Its result is not given back.
+     * @param name
+     */
+    public void cancel(String name) {
+        Slot s;
+        synchronized(this) {
+            s = mSlots.get(name);
+        }
+        if(null == s) {
+            return;
+        }
+        synchronized(s) {
+            s.mSequence++;
+            if(s.mHasRequest) {
+                s.mDrops++;
+            }
+            s.mHasRequest = false;
+            s.mRequest = null;
+            if(null != s.mThread) {
+                s.mThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stop all jobs for good
+     */
+    public void shutdown() {
+        synchronized(this) {
+            mShutdown = true;
+            Iterator<String> it = mSlots.keySet().iterator();
+            while(it.hasNext()) {
+                cancel(it.next());
+            }
+        }
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Runs, drops and run time of each job
+     * @return
+     */
+    public synchronized String getStats() {
+        String ret = "";
+        Iterator<Slot> it = mSlots.values().iterator();
+        while(it.hasNext()) {
+            Slot s = it.next();
+            synchronized(s) {
+                long avg = s.mRuns == 0 ? 0 : s.mTime / s.mRuns;
+                ret += s.mName + " runs " + s.mRuns + " drops " + s.mDrops + 
+                        " avg " + avg + "ms max " + s.mMaxTime + "ms\n";
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Runs requests of one job until there are none
+     */
+    private class Runner implements Runnable {
+        private Slot mSlot;
+
+        private Runner(Slot s) {
+            mSlot = s;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName(mSlot.mName);
+            while(true) {
+                Object request;
+                int sequence;
+                synchronized(mSlot) {
+                    if(!mSlot.mHasRequest) {
+                        mSlot.mRunning = false;
+                        break;
+                    }
+                    request = mSlot.mRequest;
+                    sequence = mSlot.mSequence;
+                    mSlot.mRequest = null;
+                    mSlot.mHasRequest = false;
+                    mSlot.mThread = Thread.currentThread();
+                    /*
+                     * Interrupt was for an older request
+                     */
+                    Thread.interrupted();
+                }
+
+                long start = SystemClock.elapsedRealtime();
+                Object result = null;
+                boolean ok = false;
+                try {
+                    result = mSlot.mJob.run(request);
+                    ok = true;
+                }
+                catch(InterruptedException e) {
+                }
+                catch(Exception e) {
+                }
+                long time = SystemClock.elapsedRealtime() - start;
+
+                synchronized(mSlot) {
+                    mSlot.mThread = null;
+                    Thread.interrupted();
+                    mSlot.mRuns++;
+                    mSlot.mTime += time;
+                    mSlot.mMaxTime = Math.max(mSlot.mMaxTime, time);
+                    if(!ok || sequence != mSlot.mSequence) {
+                        mSlot.mDrops++;
+                        continue;
+                    }
+                }
+                mHandler.post(new Done(mSlot, sequence, result));
+            }
+        }
+    }
+
+    /**
+     * Gives result on UI thread if still latest
+     */
+    private class Done implements Runnable {
+        private Slot mSlot;
+        private int mSequence;
+        private Object mResult;
+
+        private Done(Slot s, int sequence, Object result) {
+            mSlot = s;
+            mSequence = sequence;
+            mResult = result;
+        }
+
+        @Override
+        public void run() {
+            synchronized(mSlot) {
+                if(mSequence != mSlot.mSequence || mShutdown) {
+                    mSlot.mDrops++;
+                    return;
+                }
+            }
+            mSlot.mJob.done(mResult);
+        }
+    }
+
+    /**
+     * State of one job
+     */
+    private static class Slot {
+        private String mName;
+        private Job mJob;
+        private Object mRequest;
+        private boolean mHasRequest;
+        private boolean mRunning;
+        private Thread mThread;
+        private int mSequence;
+        private int mRuns;
+        private int mDrops;
+        private long mTime;
+        private long mMaxTime;
+
+        private Slot(String name, Job job) {
+            mName = name;
+            mJob = job;
+            mHasRequest = false;
+            mRunning = false;
+            mThread = null;
+            mSequence = 0;
+            mRuns = 0;
+            mDrops = 0;
+            mTime = 0;
+            mMaxTime = 0;
+        }
+    }
+}
@@ -15,9 +15,10 @@ package com.ds.avare.views;
 import java.util.LinkedList;
 import java.util.List;
 
-import com.ds.avare.adsb.NexradBitmap;
+import com.ds.avare.adsb.NexradMosaic;
 import com.ds.avare.adsb.Traffic;
 import com.ds.avare.gps.GpsParams;
+import com.ds.avare.instruments.TrafficMonitor;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.GameTFR;
 import com.ds.avare.place.Obstacle;
@@ -28,9 +29,13 @@ import com.ds.avare.position.Pan;
 import com.ds.avare.position.PixelCoordinate;
 import com.ds.avare.position.Projection;
 import com.ds.avare.position.Scale;
+import com.ds.avare.shapes.LayerCache;
 import com.ds.avare.shapes.MetShape;
+import com.ds.avare.shapes.ShapeIndex;
 import com.ds.avare.shapes.TFRShape;
 import com.ds.avare.shapes.Tile;
+import com.ds.avare.shapes.TileMap;
+import com.ds.avare.shapes.TilePrefetcher;
 import com.ds.avare.storage.DataSource;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.touch.GestureInterface;
@@ -41,9 +46,12 @@ import com.ds.avare.touch.MultiTouchController.PointInfo;
 import com.ds.avare.touch.MultiTouchController.PositionAndScale;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.DisplayIcon;
+import com.ds.avare.utils.GenericCallback;
 import com.ds.avare.utils.Helper;
 import com.ds.avare.utils.InfoLines.InfoLineFieldLoc;
+import com.ds.avare.utils.JobScheduler;
 import com.ds.avare.utils.NavComments;
+import com.ds.avare.utils.ShadowedText;
 import com.ds.avare.utils.WeatherHelper;
 import com.ds.avare.weather.AirSigMet;
 import com.ds.avare.weather.Airep;
@@ -54,6 +62,7 @@ import com.ds.avare.R;
 import com.ds.avare.StorageService;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -61,12 +70,11 @@ import android.graphics.Paint;
 import android.graphics.Paint.Style;
 import android.graphics.Point;
 import android.graphics.Typeface;
-import android.os.AsyncTask;
-import android.os.Handler;
-import android.os.Message;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.text.TextPaint;
 import android.util.AttributeSet;
-import android.util.SparseArray;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
@@ -124,22 +132,20 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     private String                      mErrorStatus;
    
     /**
-     * Task that would draw tiles on bitmap.
+     * Runs tile, elevation, prefetch and closest airport tasks in background
      */
-    private TileDrawTask                mTileDrawTask; 
-    private Thread                      mTileDrawThread;
-    
-    /**
-     * Task that would draw obstacles
-     */
-    private ElevationTask               mElevationTask; 
-    private Thread                      mElevationThread;
+    private JobScheduler                mScheduler;
     private long                        mElevationLastRun;
 
     /**
-     * Task that finds closets airport.
+     * TFRs, air/sigmets and obstacles, drawn into a bitmap that is kept till view or data changes
      */
-    private ClosestAirportTask          mClosestTask; 
+    private LayerCache                  mLayers;
+
+    private static final String         JOB_TILES = "Tile";
+    private static final String         JOB_ELEVATION = "Elevation";
+    private static final String         JOB_PREFETCH = "TilePrefetch";
+    private static final String         JOB_CLOSEST = "Closest";
 
     /**
      * Storage service that contains all the state
@@ -187,7 +193,53 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     /*
      * Obstacles
      */
-    private LinkedList<Obstacle>        mObstacles;
+    /*
+     * Obstacles to draw, as arrays so drawing does not allocate
+     */
+    private float                       mObstacleLon[];
+    private float                       mObstacleLat[];
+    private int                         mObstacleCount;
+
+    /*
+     * Runways of destination, as array so drawing does not allocate
+     */
+    private LinkedList<Runway>          mRunwayList;
+    private Runway                      mRunways[];
+
+    /*
+     * Text shown when there are no charts
+     */
+    private String                      mMissingMapsText;
+
+    /*
+     * Air/Sigmet types and their colors
+     */
+    private String                      mAirSigTypes[];
+    private int                         mAirSigColors[];
+
+    /*
+     * Preferences used while drawing, read when they change and not on every frame
+     */
+    private DrawPreferences             mDrawPref;
+    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener;
+    
+    /*
+     * Told once a frame at most when ADSB data comes in
+     */
+    private GenericCallback             mAdsbListener;
+
+    /*
+     * Count allocations in each frame, to catch code that allocates while drawing
+     */
+    private boolean                     mCountAllocations;
+    private int                         mFrameAllocations;
+
+    /*
+     * Counters shown for developers, made again once a second
+     */
+    private String                      mDiagnostics[];
+    private long                        mDiagnosticsTime;
+    private static final long           DIAGNOSTICS_TIME = 1000;
     
     /*
      * Is it drawing?
@@ -260,6 +312,32 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         mDraw = false;
         
         mPref = new Preferences(context);
+        mDrawPref = new DrawPreferences();
+        mDrawPref.load(mPref);
+        mPrefListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                mDrawPref.load(mPref);
+                if(mDrawPref.mShowDiagnostics != mCountAllocations) {
+                    setCountAllocations(mDrawPref.mShowDiagnostics);
+                }
+            }
+        };
+        PreferenceManager.getDefaultSharedPreferences(context).registerOnSharedPreferenceChangeListener(mPrefListener);
+        mAdsbListener = new GenericCallback() {
+            @Override
+            public Object callback(Object o, Object o1) {
+                if(mDrawPref.mShowAdsbTraffic || (mDrawPref.mUseAdsbWeather && 0 != mDrawPref.mShowRadar)) {
+                    invalidate();
+                }
+                return null;
+            }
+        };
+        mAirSigTypes = context.getResources().getStringArray(R.array.AirSig);
+        mAirSigColors = context.getResources().getIntArray(R.array.AirSigColor);
+        mObstacleCount = 0;
+        mCountAllocations = mDrawPref.mShowDiagnostics;
+        mFrameAllocations = 0;
         
         mFace = Typeface.createFromAsset(mContext.getAssets(), "LiberationMono-Bold.ttf");
         mPaint.setTypeface(mFace);
@@ -289,13 +367,52 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         mRunwayPaint.setTextSize(getResources().getDimension(R.dimen.runwayNumberTextSize));
 
         
-        mTileDrawTask = new TileDrawTask();
-        mTileDrawThread = new Thread(mTileDrawTask);
-        mTileDrawThread.start();
-        mElevationTask = new ElevationTask();
-        mElevationThread = new Thread(mElevationTask);
+        mScheduler = new JobScheduler();
+        mScheduler.add(JOB_TILES, new TileDrawTask());
+        mScheduler.add(JOB_ELEVATION, new ElevationTask());
+        mScheduler.add(JOB_PREFETCH, new TilePrefetcher(context));
+        mScheduler.add(JOB_CLOSEST, new ClosestAirportJob());
         mElevationLastRun = System.currentTimeMillis();
-        mElevationThread.start();
+        
+        mLayers = new LayerCache();
+        mLayers.add(new LayerCache.Layer("TFR", 4) {
+            @Override
+            protected void version(Object version[]) {
+                version[0] = null == mService ? null : mService.getTFRShapes();
+                version[1] = Boolean.valueOf(mDrawPref.mShowGameTFRs);
+                version[2] = Boolean.valueOf(mDrawPref.mNightMode);
+                version[3] = mPointProjection;
+            }
+            @Override
+            protected void draw(Canvas canvas) {
+                drawTFR(canvas);
+            }
+        });
+        mLayers.add(new LayerCache.Layer("AirSigMet", 4) {
+            @Override
+            protected void version(Object version[]) {
+                version[0] = (null == mService || mDrawPref.mUseAdsbWeather) ? null : mService.getInternetWeatherCache().getAirSigMet();
+                version[1] = mDrawPref.mAirSigMetType;
+                version[2] = Boolean.valueOf(mDrawPref.mNightMode);
+                version[3] = mPointProjection;
+            }
+            @Override
+            protected void draw(Canvas canvas) {
+                drawAirSigMet(canvas);
+            }
+        });
+        mLayers.add(new LayerCache.Layer("Obstacles", 3) {
+            @Override
+            protected void version(Object version[]) {
+                version[0] = mObstacleLon;
+                version[1] = Boolean.valueOf(mDrawPref.mShowObstacles);
+                version[2] = mPointProjection;
+            }
+            @Override
+            protected void draw(Canvas canvas) {
+                drawObstacles(canvas);
+            }
+        });
 
         setOnTouchListener(this);
         mAirplaneBitmap = DisplayIcon.getDisplayIcon(context, mPref);
@@ -356,9 +473,36 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     /* (non-Javadoc)
      * @see android.view.View#onDraw(android.graphics.Canvas)
      */
+    @SuppressWarnings("deprecation")
     @Override
     public void onDraw(Canvas canvas) {
+        if(mCountAllocations) {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+        }
         drawMap(canvas);
+        if(mCountAllocations) {
+            Debug.stopAllocCounting();
+            mFrameAllocations = Debug.getThreadAllocCount();
+        }
+    }
+
+    /**
+     * Count allocations done while drawing. Slows drawing, only for debugging.
+     * On with the Diagnostics preference.
+     * @param count
+     */
+    public void setCountAllocations(boolean count) {
+        mCountAllocations = count;
+        mFrameAllocations = 0;
+    }
+
+    /**
+     * 
+     * @return allocations in last frame drawn, when counting
+     */
+    public int getFrameAllocations() {
+        return mFrameAllocations;
     }
        
     /**
@@ -468,9 +612,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             if(e.getAction() == MotionEvent.ACTION_MOVE || e.getAction() == MotionEvent.ACTION_UP) {
                 mDownFocusPoint = null;
                 mPointProjection = null;
-                if(mClosestTask != null) {
-                    mClosestTask.cancel(true);
-                }
+                mScheduler.cancel(JOB_CLOSEST);
             }
             mGestureDetector.onTouchEvent(e);
         }
@@ -625,10 +767,8 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         // Do run run onbstacle task more frequenct than 10 seconds
         if(((System.currentTimeMillis() - mElevationLastRun) > 1000 * 10) || force) {
             mElevationLastRun = System.currentTimeMillis();
-	        mElevationTask.lat = mGpsParams.getLatitude();
-	        mElevationTask.lon = mGpsParams.getLongitude();
-	        mElevationTask.alt = mGpsParams.getAltitude();
-	        mElevationThread.interrupt();
+	        mScheduler.post(JOB_ELEVATION, new double[] {
+	                mGpsParams.getLongitude(), mGpsParams.getLatitude(), mGpsParams.getAltitude()});
         }
 
         /*
@@ -652,9 +792,14 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         /*
          * Find
          */
-        mTileDrawTask.lat = mGpsParams.getLatitude();
-        mTileDrawTask.lon = mGpsParams.getLongitude();
-        mTileDrawThread.interrupt();
+        mScheduler.post(JOB_TILES, new double[] {
+                mGpsParams.getLongitude(), mGpsParams.getLatitude(), mGpsParams.getBearing()});
+
+        /*
+         * New tile, look ahead on plan
+         */
+        mScheduler.post(JOB_PREFETCH, new TilePrefetcher.Request(mImageDataSource, mService.getPlan(), 
+                mGpsParams.getLongitude(), mGpsParams.getLatitude(), mGpsParams.getSpeed(), mScale.downSample()));
     }
 
     /**
@@ -713,13 +858,13 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
                     empty++;
                 }
 
-                if(mPref.isNightMode() && (mPref.getChartType().equals("3") || mPref.getChartType().equals("4"))) {
+                if(mDrawPref.mNightMode && mDrawPref.mIfrChart) {
                     /*
                      * IFR charts invert color at night
                      */
                     Helper.invertCanvasColors(mPaint);
                 }
-                else if(mPref.getChartType().equals("5")) {
+                else if(mDrawPref.mTerrainChart) {
                     /*
                      * Terrain
                      */
@@ -758,8 +903,10 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
              */
             if(empty >= tn) {
                 mMsgPaint.setColor(Color.WHITE);
-                mService.getShadowedText().draw(canvas, mMsgPaint,
-                        mContext.getString(R.string.MissingMaps) + "- " + mOnChart, 
+                if(null == mMissingMapsText) {
+                    mMissingMapsText = mContext.getString(R.string.MissingMaps) + "- " + mOnChart;
+                }
+                mService.getShadowedText().draw(canvas, mMsgPaint, mMissingMapsText, 
                         Color.RED, getWidth() / 2, getHeight() / 2);
             }
         }
@@ -785,14 +932,14 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             mPaint.setStrokeWidth(3 * mDipToPix);
             mPaint.setShadowLayer(0, 0, 0, 0);
             for(int shape = 0; shape < shapes.size(); shape++) {
-                shapes.get(shape).drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mPref.isNightMode(), true);
+                shapes.get(shape).drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mDrawPref.mNightMode, true);
             }
         }
         
         /*
          * Possible game TFRs, Orange
          */
-        if(null == mPointProjection && mPref.showGameTFRs()) {
+        if(null == mPointProjection && mDrawPref.mShowGameTFRs) {
             mPaint.setColor(0xFFFF4500); 
             mPaint.setStrokeWidth(3 * mDipToPix);
             mPaint.setShadowLayer(0, 0, 0, 0);
@@ -821,36 +968,33 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
          * Draw TFRs, TFR
          */            
         List<AirSigMet> mets = null;
-        if((null != mService) && (!mPref.useAdsbWeather())) {
+        if((null != mService) && (!mDrawPref.mUseAdsbWeather)) {
             mets = mService.getInternetWeatherCache().getAirSigMet();
         }
         
         if(null != mets && null == mPointProjection) {
             mPaint.setStrokeWidth(2 * mDipToPix); 
             mPaint.setShadowLayer(0, 0, 0, 0);
-            String typeArray[] = mContext.getResources().getStringArray(R.array.AirSig);
-            int colorArray[] = mContext.getResources().getIntArray(R.array.AirSigColor);
-            String storeType = mPref.getAirSigMetType();
+            String storeType = mDrawPref.mAirSigMetType;
             for(int i = 0; i < mets.size(); i++) {
                 AirSigMet met = mets.get(i);
                 int color = 0;
                 
-                String type = met.hazard + " " + met.reportType;
                 if(storeType.equals("ALL")) {
                     /*
                      * All draw all shapes
                      */
                 }
-                else if(!storeType.equals(type)) {
+                else if(!isAirSigMetType(storeType, met)) {
                     /*
                      * This should not be drawn.
                      */
                     continue;
                 }
                 
-                for(int j = 0; j < typeArray.length; j++) {
-                    if(typeArray[j].equals(type)) {
-                        color = colorArray[j];
+                for(int j = 0; j < mAirSigTypes.length; j++) {
+                    if(isAirSigMetType(mAirSigTypes[j], met)) {
+                        color = mAirSigColors[j];
                         break;
                     }
                 }
@@ -860,18 +1004,33 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
                  */
                 if(met.shape != null && color != 0) {
                     mPaint.setColor(color);
-                    met.shape.drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mPref.isNightMode(), true);
+                    met.shape.drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mDrawPref.mNightMode, true);
                 }
             }
         }
     }
 
+    /**
+     * Same as type.equals(met.hazard + " " + met.reportType) without making a string
+     * @param type
+     * @param met
+     * @return
+     */
+    private static boolean isAirSigMetType(String type, AirSigMet met) {
+        if(null == met.hazard || null == met.reportType) {
+            return false;
+        }
+        int hl = met.hazard.length();
+        return type.length() == hl + 1 + met.reportType.length() &&
+                type.startsWith(met.hazard) && type.charAt(hl) == ' ' && type.endsWith(met.reportType);
+    }
+
     /**
      * 
      * @param canvas
      */
     private void drawRadar(Canvas canvas) {
-        if(mService == null || (0 == mPref.showRadar()) || null != mPointProjection) {
+        if(mService == null || (0 == mDrawPref.mShowRadar) || null != mPointProjection) {
             return;
         }
         
@@ -885,11 +1044,11 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         /*
          * If using ADSB, then dont show
          */
-        if(mPref.useAdsbWeather()) {
+        if(mDrawPref.mUseAdsbWeather) {
             return;
         }
 
-        mPaint.setAlpha(mPref.showRadar());
+        mPaint.setAlpha(mDrawPref.mShowRadar);
         mService.getRadar().draw(canvas, mPaint, mOrigin, mScale, mPx, mPy);
         mPaint.setAlpha(255);
 
@@ -900,54 +1059,38 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * @param canvas
      */
     private void drawNexrad(Canvas canvas) {
-        if(mService == null || 0 == mPref.showRadar()) {
+        if(mService == null || 0 == mDrawPref.mShowRadar) {
             return;
         }
         
         /*
-         * Get nexrad bitmaps to draw.
+         * Get nexrad mosaic to draw.
          */
-        SparseArray<NexradBitmap> bitmaps = null;
+        NexradMosaic mosaic = null;
         if(mScale.getMacroFactor() > 4) {
             if(!mService.getAdsbWeather().getNexradConus().isOld()) {
                 /*
                  * CONUS for larger scales.
                  */
-                bitmaps = mService.getAdsbWeather().getNexradConus().getImages();                
+                mosaic = mService.getAdsbWeather().getNexradConus().getMosaic();
             }
         }
         else {
             if(!mService.getAdsbWeather().getNexrad().isOld()) {
-                bitmaps = mService.getAdsbWeather().getNexrad().getImages();
+                mosaic = mService.getAdsbWeather().getNexrad().getMosaic();
             }
         }
 
-        if(null == bitmaps || null != mPointProjection || (!mPref.useAdsbWeather())) {
+        if(null == mosaic || null != mPointProjection || (!mDrawPref.mUseAdsbWeather)) {
             return;
         }
 
-        for(int i = 0; i < bitmaps.size(); i++) {
-            int key = bitmaps.keyAt(i);
-            NexradBitmap b = bitmaps.get(key);
-            BitmapHolder bitmap = b.getBitmap();
-            if(null != bitmap) {          
-                /*
-                 * draw them scaled.
-                 */
-                float scalex = (float)(b.getScaleX() / mPx);
-                float scaley = (float)(b.getScaleY() / mPy);
-                float x = (float)mOrigin.getOffsetX(b.getLonTopLeft());
-                float y = (float)mOrigin.getOffsetY(b.getLatTopLeft());
-                bitmap.getTransform().setScale(scalex * mScale.getScaleFactor(), 
-                        scaley * mScale.getScaleCorrected());
-                bitmap.getTransform().postTranslate(x, y);
-                if(bitmap.getBitmap() != null) {
-                    mPaint.setAlpha(mPref.showRadar());
-                    canvas.drawBitmap(bitmap.getBitmap(), bitmap.getTransform(), mPaint);
-                    mPaint.setAlpha(255);
-                }
-            }
-        }
+        /*
+         * A few tiles in view, drawn scaled
+         */
+        mPaint.setAlpha(mDrawPref.mShowRadar);
+        mosaic.draw(canvas, mOrigin, mScale, mPx, mPy, mPaint);
+        mPaint.setAlpha(255);
     }
 
 
@@ -963,41 +1106,49 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         /*
          * Get traffic to draw.
          */
-        SparseArray<Traffic> traffic = mService.getTrafficCache().getTraffic();
+        Traffic traffic[] = mService.getTrafficCache().getTraffic();
 
-        if((!mPref.showAdsbTraffic()) || (null == traffic) || (null != mPointProjection)) {
+        if((!mDrawPref.mShowAdsbTraffic) || (null == traffic) || (null != mPointProjection)) {
             return;
         }
 
         mMsgPaint.setColor(Color.WHITE);
-        for(int i = 0; i < traffic.size(); i++) {
-            int key = traffic.keyAt(i);
-            Traffic t = traffic.get(key);
+        for(int i = 0; i < traffic.length; i++) {
+            Traffic t = traffic[i];
             if(t.isOld()) {
-                traffic.delete(key);
+                /*
+                 * Removed in background
+                 */
                 continue;
             }
-            
+        
             /*
              * Make traffic line and info
              */
             float x = (float)mOrigin.getOffsetX(t.mLon);
             float y = (float)mOrigin.getOffsetY(t.mLat);
-            
+        
             /*
              * Find color from altitude
              */
             int color = Traffic.getColorFromAltitude(mGpsParams.getAltitude(), t.mAltitude);
-            
-            
+        
+        
             float radius = mDipToPix * 8;
-            String text = t.mAltitude + "'"; 
+            String text = t.getAltitudeText(); 
+            if(TrafficMonitor.ALERT_NONE != t.mAlert) {
+                /*
+                 * Halo when closest approach is inside alert limits
+                 */
+                mPaint.setColor(TrafficMonitor.ALERT_CONFLICT == t.mAlert ? Color.RED : Color.YELLOW);
+                canvas.drawCircle(x, y, radius * 1.5f + 2, mPaint);
+            }
             /*
              * Draw outline to show it clearly
              */
             mPaint.setColor((~color) | 0xFF000000);
             canvas.drawCircle(x, y, radius + 2, mPaint);
-            
+        
             mPaint.setColor(color);
             canvas.drawCircle(x, y, radius, mPaint);
             /*
@@ -1013,7 +1164,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             canvas.drawLine(x, y, (float)xr, (float)yr, mPaint);
             mService.getShadowedText().draw(canvas, mMsgPaint,
                     text, Color.DKGRAY, (float)x, (float)y + radius + mMsgPaint.getTextSize());
-            
+        
         }
 
     }
@@ -1031,13 +1182,13 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             mPaint.setColor(Color.MAGENTA);
             mPaint.setStrokeWidth(5 * mDipToPix);
             mPaint.setAlpha(162);
-            if(mService.getDestination().isFound() && !mService.getPlan().isActive()  && (!mPref.isSimulationMode())) {
-                mService.getDestination().getTrackShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mPref.isNightMode(), mPref.isTrackEnabled());
+            if(mService.getDestination().isFound() && !mService.getPlan().isActive()  && (!mDrawPref.mSimulationMode)) {
+                mService.getDestination().getTrackShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mDrawPref.mNightMode, mDrawPref.mTrackEnabled);
             } else if (mService.getPlan().isActive()) {
-                mService.getPlan().getTrackShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mPref.isNightMode(), mPref.isTrackEnabled(), mService.getPlan());                    
+                mService.getPlan().getTrackShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mDrawPref.mNightMode, mDrawPref.mTrackEnabled, mService.getPlan());                    
             }
 
-            if(!mPref.isSimulationMode()) {
+            if(!mDrawPref.mSimulationMode) {
                 /*
                  * Draw actual track
                  */
@@ -1082,11 +1233,11 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * @param canvas
      */
     private void drawObstacles(Canvas canvas) {
-        if(mPref.shouldShowObstacles()) {
-            if((mObstacles != null) && (null == mPointProjection)) {
+        if(mDrawPref.mShowObstacles) {
+            if((mObstacleCount > 0) && (null == mPointProjection)) {
                 mPaint.setShadowLayer(0, 0, 0, 0);
-                for (Obstacle o : mObstacles) {
-                    rotateBitmapIntoPlace(mObstacleBitmap, 0, o.getLongitude(), o.getLatitude(), false);
+                for (int i = 0; i < mObstacleCount; i++) {
+                    rotateBitmapIntoPlace(mObstacleBitmap, 0, mObstacleLon[i], mObstacleLat[i], false);
                     canvas.drawBitmap(mObstacleBitmap.getBitmap(), mObstacleBitmap.getTransform(), mPaint);
                 }
             }
@@ -1117,7 +1268,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * @param canvas
      */
     private void drawRunways(Canvas canvas) {
-        if (!mPref.shouldExtendRunways()) {
+        if (!mDrawPref.mExtendRunways) {
             return;
         }
         if (null == mService) {
@@ -1126,14 +1277,22 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         if (null != mRunwayBitmap && null != mService.getDestination()
                 && null == mPointProjection) {
             LinkedList<Runway> runways = mService.getDestination().getRunways();
-            if (runways != null) {
+            if (runways != mRunwayList || (null != runways && runways.size() != mRunways.length)) {
+                /*
+                 * New destination
+                 */
+                mRunwayList = runways;
+                mRunways = null == runways ? null : runways.toArray(new Runway[runways.size()]);
+            }
+            if (mRunways != null) {
                 int xfactor;
                 int yfactor;
 
                 /*
                  * For all runways
                  */
-                for (Runway r : runways) {
+                for (int i = 0; i < mRunways.length; i++) {
+                    Runway r = mRunways[i];
                     float heading = r.getTrue();
                     if (Runway.INVALID == heading) {
                         continue;
@@ -1278,7 +1437,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         if(mService == null) {
             return;
         }
-        if(mPref.shouldDrawTracks() && (null == mPointProjection)) {
+        if(mDrawPref.mDrawTracks && (null == mPointProjection)) {
                 
             /*
              *  Set the brush color and width
@@ -1287,7 +1446,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             mPaint.setStrokeWidth(6 * mDipToPix);
             mPaint.setStyle(Paint.Style.FILL);
 
-            mService.getKMLRecorder().getShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mPref.isNightMode(), true);
+            mService.getKMLRecorder().getShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mDrawPref.mNightMode, true);
         }
     }
 
@@ -1298,7 +1457,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     private void drawCDI(Canvas canvas)
     {
         if(mService != null && mPointProjection == null && mErrorStatus == null) {
-        	if(mPref.getShowCDI()) {
+        	if(mDrawPref.mShowCDI) {
 	        	Destination dest = mService.getDestination();
 	        	if(dest != null) {
 	        		mService.getCDI().drawCDI(canvas, getWidth(), getHeight());
@@ -1315,7 +1474,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     private void drawVASI(Canvas canvas)
     {
         if(mService != null && mPointProjection == null && mErrorStatus == null) {
-        	if(mPref.getShowCDI()) {
+        	if(mDrawPref.mShowCDI) {
 	        	Destination dest = mService.getDestination();
 	        	if(dest != null) {
 	        		mService.getVNAV().drawVNAV(canvas, getWidth(), getHeight(), dest);
@@ -1330,7 +1489,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * @param canvas what to draw them on
      */
     private void drawEdgeMarkers(Canvas canvas) {
-    	if(mPref.shouldShowEdgeTape()) {
+    	if(mDrawPref.mShowEdgeTape) {
 	        if(mService != null && mPointProjection == null) {
 		        int x = (int)(mOrigin.getOffsetX(mGpsParams.getLongitude()));
 		        int y = (int)(mOrigin.getOffsetY(mGpsParams.getLatitude()));
@@ -1367,6 +1526,40 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         }
     }
     
+    /**
+     * Counters for developers, under the status lines
+     * @param canvas
+     */
+    private void drawDiagnostics(Canvas canvas) {
+        if(!mDrawPref.mShowDiagnostics || null == mService) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if(null == mDiagnostics || Math.abs(now - mDiagnosticsTime) > DIAGNOSTICS_TIME) {
+            mDiagnosticsTime = now;
+            mDiagnostics = getDiagnostics().split("\n");
+        }
+        mMsgPaint.setColor(Color.WHITE);
+        float x = mMsgPaint.getTextSize();
+        float y = getHeight() / 4;
+        for(int i = 0; i < mDiagnostics.length; i++) {
+            mService.getShadowedText().draw(canvas, mMsgPaint, mDiagnostics[i], Color.BLACK,
+                    ShadowedText.BELOW_RIGHT, x, y);
+            y += mMsgPaint.getTextSize() * 1.5f;
+        }
+    }
+
+    /**
+     * 
+     * @return Counters for developers, one on each line
+     */
+    private String getDiagnostics() {
+        return "alloc " + mFrameAllocations + "\n" + getLayerStats() + getTaskStats() +
+                "tiles " + mService.getTiles().getPoolStats() + "\n" +
+                mService.getAdsbIngest().getStats() + "\n" +
+                (null == mImageDataSource ? "" : mImageDataSource.getDataBaseStats());
+    }
+
     /**
      * @param canvas
      * Does pretty much all drawing on screen
@@ -1394,11 +1587,9 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         drawDrawing(canvas);
         drawRunways(canvas);
         drawTraffic(canvas);
-        drawTFR(canvas);
-        drawAirSigMet(canvas);
+        mLayers.draw(canvas, mOrigin, mScale, mMovement, getWidth(), getHeight(), !bRotated);
         drawTracks(canvas);
         drawTrack(canvas);
-        drawObstacles(canvas);
         drawRunways(canvas);
         drawAircraft(canvas);
       	drawUserDefinedWaypoints(canvas);
@@ -1415,6 +1606,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         drawStatusLines(canvas);
       	drawEdgeMarkers(canvas); // Must be after the infolines
       	drawNavComments(canvas);
+      	drawDiagnostics(canvas);
     }    
 
     /**
@@ -1486,6 +1678,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
          * but it will load previous combo on re-activation
          */
         mService = service;
+        mService.getAdsbIngest().setListener(mAdsbListener);
 
         mMovement = mService.getMovement();
         mImageDataSource = mService.getDBResource();
@@ -1543,128 +1736,169 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         postInvalidate();
     }
 
+    /**
+     * Draw tiles as they are decoded
+     */
+    private TileMap.TileListener mTileListener = new TileMap.TileListener() {
+        @Override
+        public void tileLoaded() {
+            postInvalidate();
+        }
+    };
+
     /**
      * @author zkhan
      *
      */
-    private class TileDrawTask implements Runnable {
-        private double offsets[] = new double[2];
-        private double p[] = new double[2];
-        public double lon;
-        public double lat;
-        private int     movex;
-        private int     movey;
-        private String   tileNames[];
-        private Tile centerTile;
-        private Tile gpsTile;
-        public boolean running = true;
-        private boolean runAgain = false;
+    private class TileDrawTask extends JobScheduler.Job {
 
         /* (non-Javadoc)
-         * @see android.os.AsyncTask#doInBackground(Params[])
+         * @see com.ds.avare.utils.JobScheduler.Job#run(java.lang.Object)
          */
         @Override
-        public void run() {
+        protected Object run(Object request) throws InterruptedException {
+            double params[] = (double[])request;
+            double lon = params[0];
+            double lat = params[1];
+            double bearing = params[2];
+            double offsets[] = new double[2];
+            double p[] = new double[2];
+            int movex;
+            int movey;
+            String tileNames[];
+            Tile centerTile;
+            Tile gpsTile;
+            
+            if(null == mService) {
+                return null;
+            }
             
-            Thread.currentThread().setName("Tile");
+            if(mImageDataSource == null) {
+                return null;
+            }
+            
+            /*
+             * Now draw in background
+             */
+            int level = mScale.downSample();
+            gpsTile = mImageDataSource.findClosest(lon, lat, offsets, p, level);
+            
+            if(gpsTile == null) {
+                return null;
+            }
+            
+            float factor = (float)mMacro / (float)mScale.getMacroFactor();
 
-            while(running) {
-                
-                if(!runAgain) {
-                    try {
-                        Thread.sleep(1000 * 3600);
-                    }
-                    catch(Exception e) {
-                        
-                    }
-                }
-                runAgain = false;
-                
-                if(null == mService) {
-                    continue;
-                }
-                
-                if(mImageDataSource == null) {
-                    continue;
-                }
-                
-                /*
-                 * Now draw in background
-                 */
-                int level = mScale.downSample();
-                gpsTile = mImageDataSource.findClosest(lon, lat, offsets, p, level);
-                
-                if(gpsTile == null) {
-                    continue;
-                }
-                
-                float factor = (float)mMacro / (float)mScale.getMacroFactor();
+            /*
+             * Make a copy of Pan to find next tile set in case this gets stopped, we do not 
+             * destroy our Pan information.
+             */
+            Pan pan = new Pan(mPan);
+            pan.setMove((float)(mPan.getMoveX() * factor), (float)(mPan.getMoveY() * factor));
+            movex = pan.getTileMoveXWithoutTear();
+            movey = pan.getTileMoveYWithoutTear();
+            
+            String newt = gpsTile.getNeighbor(movey, movex);
+            centerTile = mImageDataSource.findTile(newt);
+            if(null == centerTile) {
+                return null;
+            }
 
-                /*
-                 * Make a copy of Pan to find next tile set in case this gets stopped, we do not 
-                 * destroy our Pan information.
-                 */
-                Pan pan = new Pan(mPan);
-                pan.setMove((float)(mPan.getMoveX() * factor), (float)(mPan.getMoveY() * factor));
-                movex = pan.getTileMoveXWithoutTear();
-                movey = pan.getTileMoveYWithoutTear();
-                
-                String newt = gpsTile.getNeighbor(movey, movex);
-                centerTile = mImageDataSource.findTile(newt);
-                if(null == centerTile) {
-                    continue;
-                }
-    
-                /*
-                 * Neighboring tiles with center and pan
-                 */
-                int i = 0;
-                tileNames = new String[mService.getTiles().getTilesNum()];
-                int ty = (int)(mService.getTiles().getYTilesNum() / 2);
-                int tx = (int)(mService.getTiles().getXTilesNum() / 2);
-                for(int tiley = -ty; tiley <= ty; tiley++) {
-                    for(int tilex = -tx; tilex <= tx; tilex++) {
-                        tileNames[i++] = centerTile.getNeighbor(tiley, tilex);
-                    }
+            /*
+             * Neighboring tiles with center and pan
+             */
+            int i = 0;
+            tileNames = new String[mService.getTiles().getTilesNum()];
+            int ty = (int)(mService.getTiles().getYTilesNum() / 2);
+            int tx = (int)(mService.getTiles().getXTilesNum() / 2);
+            for(int tiley = -ty; tiley <= ty; tiley++) {
+                for(int tilex = -tx; tilex <= tx; tilex++) {
+                    tileNames[i++] = centerTile.getNeighbor(tiley, tilex);
                 }
+            }
 
-                /*
-                 * Load tiles, draw in UI thread
-                 */
-                try {
-                    mService.getTiles().reload(tileNames);
+            /*
+             * Ring of tiles just off screen towards where we are going
+             */
+            int stepx = (int)Math.round(Math.sin(Math.toRadians(bearing)));
+            int stepy = -(int)Math.round(Math.cos(Math.toRadians(bearing)));
+            String prefetchNames[] = new String[(2 * ty + 1) + (2 * tx + 1) + 1];
+            i = 0;
+            if(stepx != 0) {
+                for(int tiley = -ty; tiley <= ty; tiley++) {
+                    prefetchNames[i++] = centerTile.getNeighbor(tiley, stepx * (tx + 1));
                 }
-                catch(Exception e) {
-                    /*
-                     * We are interrupted for new movement. Try again to load new tiles.
-                     */
-                    runAgain = true;
-                    continue;
+            }
+            if(stepy != 0) {
+                for(int tilex = -tx; tilex <= tx; tilex++) {
+                    prefetchNames[i++] = centerTile.getNeighbor(stepy * (ty + 1), tilex);
                 }
-                
-                /*
-                 * UI thread
-                 */
-                TileUpdate t = new TileUpdate();
-                t.movex = movex;
-                t.movey = movey;
-                t.centerTile = centerTile;
-                t.offsets = offsets;
-                t.p = p;
-                t.factor = factor;
-                
-                Message m = mHandler.obtainMessage();
-                m.obj = t;
-                mHandler.sendMessage(m);
+            }
+            if(stepx != 0 && stepy != 0) {
+                prefetchNames[i++] = centerTile.getNeighbor(stepy * (ty + 1), stepx * (tx + 1));
+            }
+
+            /*
+             * Load tiles, draw in UI thread as each is ready. Aircraft is on tile before pan.
+             * Interrupted for new movement, the scheduler runs us again.
+             */
+            mService.getTiles().reload(tileNames, prefetchNames, tx - movex, ty - movey, mTileListener);
+            
+            /*
+             * UI thread
+             */
+            TileUpdate t = new TileUpdate();
+            t.movex = movex;
+            t.movey = movey;
+            t.centerTile = centerTile;
+            t.offsets = offsets;
+            t.p = p;
+            t.factor = factor;
+            return t;
+        }
+
+        /* (non-Javadoc)
+         * @see com.ds.avare.utils.JobScheduler.Job#done(java.lang.Object)
+         */
+        @Override
+        protected void done(Object result) {
+            if(null != result) {
+                updateTiles((TileUpdate)result);
             }
         }
     }    
 
+    /**
+     * Finds what is under a long press
+     */
+    private class ClosestAirportJob extends JobScheduler.Job {
+
+        /* (non-Javadoc)
+         * @see com.ds.avare.utils.JobScheduler.Job#run(java.lang.Object)
+         */
+        @Override
+        protected Object run(Object request) throws InterruptedException {
+            double params[] = (double[])request;
+            ClosestAirportTask task = new ClosestAirportTask();
+            task.airport = task.doInBackground(params[0], params[1]);
+            return task;
+        }
+
+        /* (non-Javadoc)
+         * @see com.ds.avare.utils.JobScheduler.Job#done(java.lang.Object)
+         */
+        @Override
+        protected void done(Object result) {
+            ClosestAirportTask task = (ClosestAirportTask)result;
+            task.onPostExecute(task.airport);
+        }
+    }
+
     /**
      * @author zkhan
      *
      */
-    private class ClosestAirportTask extends AsyncTask<Object, String, String> {
+    private class ClosestAirportTask {
         private Double lon;
         private Double lat;
         private String text = "";
@@ -1680,13 +1914,20 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         private String elev;
         private String fuel;
         private String ratings;
+        private String airport;
         
-        /* (non-Javadoc)
-         * @see android.os.AsyncTask#doInBackground(Params[])
+        /**
+         * Cancelled by a newer long press or by moving
+         * @return
+         */
+        private boolean isCancelled() {
+            return Thread.currentThread().isInterrupted();
+        }
+        
+        /**
+         * Runs in background
          */     
-        @Override
-        protected String doInBackground(Object... vals) {           
-            Thread.currentThread().setName("Closest");
+        private String doInBackground(Object... vals) {           
             if(null == mService) {
                 return null;
             }
@@ -1701,6 +1942,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
                 Thread.sleep(200);
             }
             catch(Exception e) {
+                return "";
             }
             
             if(isCancelled())
@@ -1709,17 +1951,16 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             /*
              * Get TFR text if touched on its top
              */
-            LinkedList<TFRShape> shapes = null;
-            List<AirSigMet> mets = null;
+            ShapeIndex<TFRShape> shapes = null;
+            ShapeIndex<MetShape> mets = null;
             if(null != mService) {
-                shapes = mService.getTFRShapes();
+                shapes = mService.getTFRShapeIndex();
                 if(!mPref.useAdsbWeather()) {
-                    mets = mService.getInternetWeatherCache().getAirSigMet();
+                    mets = mService.getInternetWeatherCache().getAirSigMetIndex();
                 }
             }
             if(null != shapes) {
-                for(int shape = 0; shape < shapes.size(); shape++) {
-                    TFRShape cshape = shapes.get(shape);
+                for(TFRShape cshape : shapes.findTouched(lon, lat)) {
                     /*
                      * Set TFR text
                      */
@@ -1733,16 +1974,13 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
              * Air/sigmets
              */
             if(null != mets) {
-                for(int i = 0; i < mets.size(); i++) {
-                    MetShape cshape = mets.get(i).shape;
-                    if(null != cshape) {
-                        /*
-                         * Set MET text
-                         */
-                        String txt = cshape.getTextIfTouched(lon, lat);
-                        if(null != txt) {
-                            textMets += txt + "\n--\n";
-                        }
+                for(MetShape cshape : mets.findTouched(lon, lat)) {
+                    /*
+                     * Set MET text
+                     */
+                    String txt = cshape.getTextIfTouched(lon, lat);
+                    if(null != txt) {
+                        textMets += txt + "\n--\n";
                     }
                 }
             }            
@@ -1832,11 +2070,10 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             return airport;
         }
         
-        /* (non-Javadoc)
-         * @see android.os.AsyncTask#onPostExecute(java.lang.Object)
+        /**
+         * Runs on UI thread
          */
-        @Override
-        protected void onPostExecute(String airport) {
+        private void onPostExecute(String airport) {
             if(null != mGestureCallBack && null != mPointProjection && null != airport) {
                 mLongTouchDestination = new LongTouchDestination();
                 mLongTouchDestination.airport = airport;
@@ -1905,84 +2142,84 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * Find obstacles
      */
     
-    private class ElevationTask implements Runnable {
-        public boolean running = true;
-        private boolean runAgain = false;
-        public double lon;
-        public double lat;
-        public double alt;
+    private class ElevationTask extends JobScheduler.Job {
 
         /* (non-Javadoc)
-         * @see android.os.AsyncTask#doInBackground(Params[])
+         * @see com.ds.avare.utils.JobScheduler.Job#run(java.lang.Object)
          */
         @Override
-        public void run() {
+        protected Object run(Object request) throws InterruptedException {
+            double params[] = (double[])request;
+            double lon = params[0];
+            double lat = params[1];
+            double alt = params[2];
             
-            Thread.currentThread().setName("Elevation");
-
-            while(running) {
-                
-                if(!runAgain) {
-                    try {
-                        Thread.sleep(1000 * 3600);
-                    }
-                    catch(Exception e) {
-                        
-                    }
-                }
-                runAgain = false;
-                
-                if(null == mService) {
-                    continue;
-                }
-                
-                if(mImageDataSource == null) {
-                    continue;
-                }
-                
-                /*
-                 * Find obstacles in background as well
-                 */
-                LinkedList<Obstacle> obs = null;
-                if(mPref.shouldShowObstacles()) {
-                    obs = mImageDataSource.findObstacles(lon, lat, (int)alt);
-                }
+            if(null == mService) {
+                return null;
+            }
+            
+            if(mImageDataSource == null) {
+                return null;
+            }
+            
+            /*
+             * Find obstacles in background as well
+             */
+            LinkedList<Obstacle> obs = null;
+            if(mPref.shouldShowObstacles()) {
+                obs = mImageDataSource.findObstacles(lon, lat, (int)alt);
+            }
 
-                /*
-                 * Elevation tile to find AGL and ground proximity warning
-                 */
-                double offsets[] = new double[2];
-                double p[] = new double[2];
-                Tile t = mImageDataSource.findElevTile(lon, lat, offsets, p, 0);
+            /*
+             * Elevation tile to find AGL and ground proximity warning
+             */
+            double offsets[] = new double[2];
+            double p[] = new double[2];
+            Tile t = mImageDataSource.findElevTile(lon, lat, offsets, p, 0);
 
-                mService.setElevationTile(t);
-                BitmapHolder elevBitmap = mService.getElevationBitmap();
-                double elev = -1;
-                /*
-                 * Load only if needed.
-                 */
-                if(null != elevBitmap) {
-                    int x = (int)Math.round(offsets[0]);
-                    int y = (int)Math.round(offsets[1]);
-                    if(elevBitmap.getBitmap() != null) {
+            mService.setElevationTile(t);
+            BitmapHolder elevBitmap = mService.getElevationBitmap();
+            double elev = -1;
+            /*
+             * Load only if needed.
+             */
+            if(null != elevBitmap) {
+                int x = (int)Math.round(offsets[0]);
+                int y = (int)Math.round(offsets[1]);
+                if(elevBitmap.getBitmap() != null) {
+                
+                    if(x < elevBitmap.getBitmap().getWidth()
+                        && y < elevBitmap.getBitmap().getHeight()
+                        && x >= 0 && y >= 0) {
                     
-                        if(x < elevBitmap.getBitmap().getWidth()
-                            && y < elevBitmap.getBitmap().getHeight()
-                            && x >= 0 && y >= 0) {
-                        
-                            int px = elevBitmap.getBitmap().getPixel(x, y);
-                            elev = Helper.findElevationFromPixel(px);
-                        }
+                        int px = elevBitmap.getBitmap().getPixel(x, y);
+                        elev = Helper.findElevationFromPixel(px);
                     }
                 }
+            }
 
-                ElevationUpdate ou = new ElevationUpdate();
-                ou.elev = elev;
-                ou.obs = obs;
+            ElevationUpdate ou = new ElevationUpdate();
+            ou.elev = elev;
+            ou.obsCount = 0;
+            if(null != obs) {
+                ou.obsLon = new float[obs.size()];
+                ou.obsLat = new float[obs.size()];
+                for(Obstacle o : obs) {
+                    ou.obsLon[ou.obsCount] = (float)o.getLongitude();
+                    ou.obsLat[ou.obsCount] = (float)o.getLatitude();
+                    ou.obsCount++;
+                }
+            }
+            return ou;
+        }
 
-                Message m = mHandler.obtainMessage();
-                m.obj = ou;
-                mHandler.sendMessage(m);
+        /* (non-Javadoc)
+         * @see com.ds.avare.utils.JobScheduler.Job#done(java.lang.Object)
+         */
+        @Override
+        protected void done(Object result) {
+            if(null != result) {
+                updateElevation((ElevationUpdate)result);
             }
         }
     }
@@ -2108,16 +2345,12 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             return;
         }
         
-        if(null != mClosestTask) {
-            mClosestTask.cancel(true);
-        }
         mLongTouchDestination = null;
-        mClosestTask = new ClosestAirportTask();        
         
         double lon2 = mOrigin.getLongitudeOf(x);
         double lat2 = mOrigin.getLatitudeOf(y);
         
-        mClosestTask.execute(lon2, lat2);
+        mScheduler.post(JOB_CLOSEST, new double[] {lon2, lat2});
     }
 
 
@@ -2173,15 +2406,33 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * 
      */
     public void cleanup() {
-        mTileDrawTask.running = false;
-        mTileDrawThread.interrupt();
-        mElevationTask.running = false;
-        mElevationThread.interrupt();
+        if(null != mService) {
+            mService.getAdsbIngest().setListener(null);
+        }
+        mScheduler.shutdown();
+        mLayers.recycle();
+        PreferenceManager.getDefaultSharedPreferences(mContext).unregisterOnSharedPreferenceChangeListener(mPrefListener);
+    }
+
+    /**
+     * Runs, drops and run time of background tasks
+     * @return
+     */
+    public String getTaskStats() {
+        return mScheduler.getStats();
+    }
+
+    /**
+     * Render time of cached overlay layers
+     * @return
+     */
+    public String getLayerStats() {
+        return mLayers.getStats();
     }
 
     
     /**
-     * Use this with handler to update tiles in UI thread
+     * Result of tile task, to update tiles in UI thread
      * @author zkhan
      *
      */
@@ -2197,57 +2448,101 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     }
 
     /**
-     * Use this with handler to update obstacles in UI thread
+     * Result of elevation task, to update obstacles in UI thread
      * @author zkhan
      *
      */
     private class ElevationUpdate {
-        private LinkedList<Obstacle> obs;
+        private float obsLon[];
+        private float obsLat[];
+        private int obsCount;
         private double elev;        
     }
 
     /**
-     * This leak warning is not an issue if we do not post delayed messages, which is true here.
-     */
-    private Handler mHandler = new Handler() {
-        @Override
-        public void handleMessage(Message msg) {
-
-        	if(msg.obj instanceof TileUpdate) {
-	            TileUpdate t = (TileUpdate)msg.obj;
-	            
-	            mService.getTiles().flip();
-	            
-	            /*
-	             * Set move with pan after new tiles are finally loaded
-	             */
-	            mPan.setMove((float)(mPan.getMoveX() * t.factor), (float)(mPan.getMoveY() * t.factor));
-	
-	            mScale.setScaleAt(t.centerTile.getLatitude());
-	            mOnChart = t.centerTile.getChart();
-	
-	            /*
-	             * And pan
-	             */
-	            mPan.setTileMove(t.movex, t.movey);
-	            mMovement = new Movement(t.offsets, t.p);
-	            mService.setMovement(mMovement);
-	            mMacro = mScale.getMacroFactor();
-	            mScale.updateMacro();
-	            mMultiTouchC.setMacro(mMacro);
-	            mPx = (float)t.centerTile.getPx();
-	            mPy = (float)t.centerTile.getPy();
-	            updateCoordinates();
-	
-	            invalidate();
-        	}
-        	else if(msg.obj instanceof ElevationUpdate) {
-        		ElevationUpdate o = (ElevationUpdate)msg.obj;
-        		mService.setElevation(o.elev);
-        		mObstacles = o.obs;
-        	}
+     * Preferences used in drawing
+     */
+    private static class DrawPreferences {
+        private boolean mNightMode;
+        private boolean mIfrChart;
+        private boolean mTerrainChart;
+        private boolean mShowGameTFRs;
+        private boolean mUseAdsbWeather;
+        private String mAirSigMetType;
+        private int mShowRadar;
+        private boolean mShowAdsbTraffic;
+        private boolean mSimulationMode;
+        private boolean mTrackEnabled;
+        private boolean mShowObstacles;
+        private boolean mExtendRunways;
+        private boolean mDrawTracks;
+        private boolean mShowCDI;
+        private boolean mShowEdgeTape;
+        private boolean mShowDiagnostics;
+
+        private void load(Preferences pref) {
+            String chart = pref.getChartType();
+            mNightMode = pref.isNightMode();
+            mIfrChart = chart.equals("3") || chart.equals("4");
+            mTerrainChart = chart.equals("5");
+            mShowGameTFRs = pref.showGameTFRs();
+            mUseAdsbWeather = pref.useAdsbWeather();
+            mAirSigMetType = pref.getAirSigMetType();
+            mShowRadar = pref.showRadar();
+            mShowAdsbTraffic = pref.showAdsbTraffic();
+            mSimulationMode = pref.isSimulationMode();
+            mTrackEnabled = pref.isTrackEnabled();
+            mShowObstacles = pref.shouldShowObstacles();
+            mExtendRunways = pref.shouldExtendRunways();
+            mDrawTracks = pref.shouldDrawTracks();
+            mShowCDI = pref.getShowCDI();
+            mShowEdgeTape = pref.shouldShowEdgeTape();
+            mShowDiagnostics = pref.showDiagnostics();
         }
-    };
+    }
+
+    /**
+     * Tiles loaded for a new position, on UI thread
+     * @param t
+     */
+    private void updateTiles(TileUpdate t) {
+        mService.getTiles().flip();
+        
+        /*
+         * Set move with pan after new tiles are finally loaded
+         */
+        mPan.setMove((float)(mPan.getMoveX() * t.factor), (float)(mPan.getMoveY() * t.factor));
+
+        mScale.setScaleAt(t.centerTile.getLatitude());
+        mOnChart = t.centerTile.getChart();
+        mMissingMapsText = null;
+
+        /*
+         * And pan
+         */
+        mPan.setTileMove(t.movex, t.movey);
+        mMovement = new Movement(t.offsets, t.p);
+        mService.setMovement(mMovement);
+        mMacro = mScale.getMacroFactor();
+        mScale.updateMacro();
+        mMultiTouchC.setMacro(mMacro);
+        mPx = (float)t.centerTile.getPx();
+        mPy = (float)t.centerTile.getPy();
+        updateCoordinates();
+
+        invalidate();
+    }
+
+    /**
+     * Obstacles and elevation found, on UI thread
+     * @param o
+     */
+    private void updateElevation(ElevationUpdate o) {
+        mService.setElevation(o.elev);
+        mObstacleLon = o.obsLon;
+        mObstacleLat = o.obsLat;
+        mObstacleCount = o.obsCount;
+    }
     
     /**
      * 
@@ -31,6 +31,7 @@ import com.ds.avare.storage.Preferences;
 /**
  * 
  * This is where all ADSB weather is collected.
+ * Filled from the ADSB ingest thread, read from the UI.
  * @author zkhan
  *
  */
@@ -82,7 +83,7 @@ public class AdsbWeatherCache {
      * @param location
      * @param data
      */
-    public void putMetar(long time, String location, String data) {
+    public synchronized void putMetar(long time, String location, String data) {
         if(!mPref.useAdsbWeather()) {
             return;
         }    
@@ -104,7 +105,7 @@ public class AdsbWeatherCache {
      * @param location
      * @param data
      */
-    public void putTaf(long time, String location, String data) {
+    public synchronized void putTaf(long time, String location, String data) {
         if(!mPref.useAdsbWeather()) {
             return;
         }    
@@ -125,7 +126,7 @@ public class AdsbWeatherCache {
      * @param location
      * @param data
      */
-    public void putAirep(long time, String location, String data, DataSource db) {
+    public synchronized void putAirep(long time, String location, String data, DataSource db) {
         if(!mPref.useAdsbWeather()) {
             return;
         }    
@@ -158,7 +159,7 @@ public class AdsbWeatherCache {
      * @param location
      * @param data
      */
-    public void putWinds(long time, String location, String data) {
+    public synchronized void putWinds(long time, String location, String data) {
         if(!mPref.useAdsbWeather()) {
             return;
         }    
@@ -210,7 +211,7 @@ public class AdsbWeatherCache {
      * @param cols
      * @param rows
      */
-    public void putImg(long time, int block, int empty[], boolean isConus, int data[], int cols, int rows) {
+    public synchronized void putImg(long time, int block, int empty[], boolean isConus, int data[], int cols, int rows) {
         if(!mPref.useAdsbWeather()) {
             return;
         }
@@ -227,7 +228,7 @@ public class AdsbWeatherCache {
      * @param airport
      * @return
      */
-    public Taf getTaf(String airport) {
+    public synchronized Taf getTaf(String airport) {
         Taf taf = mTaf.get("K" + airport);
         return taf;
     }
@@ -237,7 +238,7 @@ public class AdsbWeatherCache {
      * @param airport
      * @return
      */
-    public Metar getMETAR(String airport) {
+    public synchronized Metar getMETAR(String airport) {
         return mMetar.get("K" + airport);
     }
 
@@ -247,7 +248,7 @@ public class AdsbWeatherCache {
      * @param lat
      * @return
      */
-    public LinkedList<Airep> getAireps(double lon, double lat) {
+    public synchronized LinkedList<Airep> getAireps(double lon, double lat) {
         
         LinkedList<Airep> ret = new LinkedList<Airep>();
         
@@ -278,7 +279,7 @@ public class AdsbWeatherCache {
      * @param lat
      * @return
      */
-    public WindsAloft getWindsAloft(double lon, double lat) {
+    public synchronized WindsAloft getWindsAloft(double lon, double lat) {
         
         WindsAloft toret = null;
         double oldDistance = 1E10;
@@ -313,7 +314,7 @@ public class AdsbWeatherCache {
     /*
      * ALL ADSB weather should be kaput after 1 hour / timeout of timestamp 
      */
-    public void sweep() {
+    public synchronized void sweep() {
         long now = System.currentTimeMillis();
 
         /*
@@ -386,16 +387,18 @@ public class AdsbWeatherCache {
          * Nexrad
          */
         LinkedList<Integer>keyi = new LinkedList<Integer>();
-        SparseArray<NexradBitmap> img = mNexrad.getImages();
-        for(int i = 0; i < img.size(); i++) {
-            NexradBitmap n = img.valueAt(i);
-            long diff = (now - n.timestamp) - (EXPIRY_PERIOD);
-            if(diff > 0) {
-                keyi.add(img.keyAt(i));
+        synchronized(mNexrad.getMosaic()) {
+            SparseArray<NexradBitmap> img = mNexrad.getImages();
+            for(int i = 0; i < img.size(); i++) {
+                NexradBitmap n = img.valueAt(i);
+                long diff = (now - n.timestamp) - (EXPIRY_PERIOD);
+                if(diff > 0) {
+                    keyi.add(img.keyAt(i));
+                }
+            }
+            for(Integer key : keyi) {
+                mNexrad.remove(key);
             }
-        }
-        for(Integer key : keyi) {
-            img.remove(key);
         }
     }
 }
@@ -16,6 +16,7 @@ import java.util.LinkedList;
 
 import com.ds.avare.StorageService;
 import com.ds.avare.shapes.MetShape;
+import com.ds.avare.shapes.ShapeIndex;
 
 
 /**
@@ -31,6 +32,7 @@ public class InternetWeatherCache {
     private WeatherTask                mWeatherTask; 
     private Thread                     mWeatherThread;
     private LinkedList<AirSigMet>      mAirSig;
+    private ShapeIndex<MetShape>       mAirSigIndex;
     private StorageService             mService;
     
     /**
@@ -64,22 +66,34 @@ public class InternetWeatherCache {
         return mAirSig;
     }
 
+    /**
+     * Index of air/sigmet shapes for touch
+     * @return
+     */
+    public ShapeIndex<MetShape> getAirSigMetIndex() {
+        return mAirSigIndex;
+    }
+
     private class WeatherTask implements Runnable {
 
         @Override
         public void run() {
+            /*
+             * Shown only when done, so drawing never sees a list that is being made
+             */
+            LinkedList<AirSigMet> airSig = null;
             try {
                 
                 /*
                  * Create a list of air/sigmets
                  */
-                mAirSig = mService.getDBResource().getAirSigMets();
+                airSig = mService.getDBResource().getAirSigMets();
                 
                 /*
                  * Convert AIRMET/SIGMETS to shapes compatible coordinates
                  */
-                for(int i = 0; i < mAirSig.size(); i++) {
-                    AirSigMet asm = mAirSig.get(i);
+                for(int i = 0; i < airSig.size(); i++) {
+                    AirSigMet asm = airSig.get(i);
                     /*
                      * Discard none intensity
                      */
@@ -103,10 +117,25 @@ public class InternetWeatherCache {
                         asm.shape.add(lon, lat, false);
                     }
                     asm.shape.makePolygon();
+                    asm.shape.makeLevels();
                 }
             }
             catch(Exception e) {
             }
+            
+            /*
+             * Index shapes for touch
+             */
+            LinkedList<MetShape> shapes = new LinkedList<MetShape>();
+            if(null != airSig) {
+                for(AirSigMet asm : airSig) {
+                    if(null != asm.shape) {
+                        shapes.add(asm.shape);
+                    }
+                }
+            }
+            mAirSigIndex = new ShapeIndex<MetShape>(shapes);
+            mAirSig = airSig;
         }
     }
 }
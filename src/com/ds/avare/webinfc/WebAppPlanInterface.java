@@ -824,6 +824,9 @@ public class WebAppPlanInterface implements Observer {
             /*
              * Add each to the plan search
              */
+            Destination dests[] = new Destination[selection.size()];
+            String dbtypes[] = new String[selection.size()];
+            int num = 0;
             for (String val : selection) {
 	            String id = StringPreference.parseHashedNameId(val);
 	            String type = StringPreference.parseHashedNameDestType(val);
@@ -834,8 +837,14 @@ public class WebAppPlanInterface implements Observer {
 	        	 */
 	        	Destination d = new Destination(id, type, mPref, mService);
 	        	d.addObserver(WebAppPlanInterface.this);
-	        	d.find(dbtype);
+	        	dests[num] = d;
+	        	dbtypes[num] = dbtype;
+	        	num++;
             }
+            /*
+             * Find all together
+             */
+            Destination.findAll(dests, dbtypes);
         	mHandler.sendEmptyMessage(MSG_NOTBUSY);
         }
     }